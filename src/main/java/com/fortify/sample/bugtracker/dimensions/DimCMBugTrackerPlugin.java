@@ -15,10 +15,23 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import static com.fortify.pub.bugtracker.support.BugTrackerPluginConstants.DISPLAY_ONLY_SUPPORTED_VERSION;
 import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
@@ -30,11 +43,16 @@ import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
  * Logging is written to %FORTIFY_HOME%\ssc\plugin-framework\logs
  * A "Bug Filing" Template should be created for submitting into Dimensions CM (see Administration->Templates)
  *
+ * Change sets are discovered from the Dimensions CM streams of a product (or a single PRODUCT:STREAM) and kept
+ * in a local index which is updated incrementally.
+ *
  * @author Kevin A. Lee (kevin.lee@microfocus.com)
  * @version 1.0 01/01/2020
  */
 @BugTrackerPluginImplementation
-public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin implements BatchBugTrackerPlugin {
+@SuppressWarnings("deprecation") // SSC still discovers change sets through ChangesetDiscoveryPlugin
+public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin implements BatchBugTrackerPlugin,
+		com.fortify.pub.bugtracker.plugin.ChangesetDiscoveryPlugin {
 
 	private static final Log LOG = LogFactory.getLog(DimCMBugTrackerPlugin.class);
 
@@ -51,6 +69,38 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 	private String cmResolutionField;
 	private String cmSscStatusField;
 	private Map<String, String> config;
+	private DimCMMetadataCache metadataCache;
+	private DimCMRoleDirectory roleDirectory;
+	private int ownerChoiceLimit;
+	private DimCMIssueIndex issueIndex;
+	private DimCMIssueGrouper issueGrouper;
+	private DimCMIssueIndex groupIndex;
+	private DimCMOutbox outbox;
+	private DimCMChangesetIndex changesetIndex;
+	private DimCMLatencyGuard latencyGuard;
+	private DimCMEventLog eventLog;
+	private int sessionPoolSize;
+	private DimCMExecutors executors = DimCMExecutors.PLATFORM;
+	private int descriptionLimit;
+	private File sharedCacheDir;
+	private DimCMStateCache stateCache = new DimCMStateCache();
+	private String stateStoreLocation;
+	private DimCMEventListener eventListener;
+	private DimCMTraffic traffic;
+	private long safetyPollMillis;
+	private DimCMRefreshScheduler refreshScheduler;
+	private final Map<String, DimCMSessionPool> sessionPools = new ConcurrentHashMap<>();
+	private final AtomicLong lastPoolEviction = new AtomicLong(System.currentTimeMillis());
+	private DimCMRouter router;
+	private DimCMKeepalive keepalive;
+	private final Map<String, DimCMMetadataCache> routedCaches = new ConcurrentHashMap<>();
+	private final Object[] groupLocks = new Object[GROUP_LOCK_STRIPES];
+
+	{
+		for (int i = 0; i < groupLocks.length; i++) {
+			groupLocks[i] = new Object();
+		}
+	}
 
 	private enum BugParamType {
 		SINGLE_SELECT,
@@ -166,9 +216,175 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 				.setValue(DIMCM_SSC_STATUS_DEFAULT_VALUE)
 				.setRequired(false);
 
+		BugTrackerConfig cmCacheDirConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_CACHE_DIR_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_CACHE_DIR_LABEL)
+				.setDescription(DIMCM_CACHE_DIR_DESCRIPTION)
+				.setValue(DIMCM_CACHE_DIR_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmCacheTtlConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_CACHE_TTL_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_CACHE_TTL_LABEL)
+				.setDescription(DIMCM_CACHE_TTL_DESCRIPTION)
+				.setValue(DIMCM_CACHE_TTL_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmSharedCacheDirConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_SHARED_CACHE_DIR_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_SHARED_CACHE_DIR_LABEL)
+				.setDescription(DIMCM_SHARED_CACHE_DIR_DESCRIPTION)
+				.setValue(DIMCM_SHARED_CACHE_DIR_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmNegativeCacheTtlConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_NEGATIVE_CACHE_TTL_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_NEGATIVE_CACHE_TTL_LABEL)
+				.setDescription(DIMCM_NEGATIVE_CACHE_TTL_DESCRIPTION)
+				.setValue(DIMCM_NEGATIVE_CACHE_TTL_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmOwnerChoiceLimitConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_OWNER_CHOICE_LIMIT_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_OWNER_CHOICE_LIMIT_LABEL)
+				.setDescription(DIMCM_OWNER_CHOICE_LIMIT_DESCRIPTION)
+				.setValue(DIMCM_OWNER_CHOICE_LIMIT_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmAsyncFilingConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_ASYNC_FILING_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_ASYNC_FILING_LABEL)
+				.setDescription(DIMCM_ASYNC_FILING_DESCRIPTION)
+				.setValue(DIMCM_ASYNC_FILING_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmSessionPoolSizeConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_SESSION_POOL_SIZE_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_SESSION_POOL_SIZE_LABEL)
+				.setDescription(DIMCM_SESSION_POOL_SIZE_DESCRIPTION)
+				.setValue(DIMCM_SESSION_POOL_SIZE_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmDeadlinesConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_DEADLINES_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_DEADLINES_LABEL)
+				.setDescription(DIMCM_DEADLINES_DESCRIPTION)
+				.setValue(DIMCM_DEADLINES_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmHedgedReadsConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_HEDGED_READS_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_HEDGED_READS_LABEL)
+				.setDescription(DIMCM_HEDGED_READS_DESCRIPTION)
+				.setValue(DIMCM_HEDGED_READS_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmDescriptionLimitConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_DESCRIPTION_LIMIT_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_DESCRIPTION_LIMIT_LABEL)
+				.setDescription(DIMCM_DESCRIPTION_LIMIT_DESCRIPTION)
+				.setValue(DIMCM_DESCRIPTION_LIMIT_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmEventListenerConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_EVENT_LISTENER_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_EVENT_LISTENER_LABEL)
+				.setDescription(DIMCM_EVENT_LISTENER_DESCRIPTION)
+				.setValue(DIMCM_EVENT_LISTENER_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmEventTokenConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_EVENT_TOKEN_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_EVENT_TOKEN_LABEL)
+				.setDescription(DIMCM_EVENT_TOKEN_DESCRIPTION)
+				.setValue(DIMCM_EVENT_TOKEN_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmEventSafetyPollConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_EVENT_SAFETY_POLL_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_EVENT_SAFETY_POLL_LABEL)
+				.setDescription(DIMCM_EVENT_SAFETY_POLL_DESCRIPTION)
+				.setValue(DIMCM_EVENT_SAFETY_POLL_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmRefreshTiersConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_REFRESH_TIERS_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_REFRESH_TIERS_LABEL)
+				.setDescription(DIMCM_REFRESH_TIERS_DESCRIPTION)
+				.setValue(DIMCM_REFRESH_TIERS_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmGroupByConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_GROUP_BY_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_GROUP_BY_LABEL)
+				.setDescription(DIMCM_GROUP_BY_DESCRIPTION)
+				.setValue(DIMCM_GROUP_BY_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmKeepaliveConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_KEEPALIVE_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_KEEPALIVE_LABEL)
+				.setDescription(DIMCM_KEEPALIVE_DESCRIPTION)
+				.setValue(DIMCM_KEEPALIVE_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmSessionMaxAgeConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_SESSION_MAX_AGE_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_SESSION_MAX_AGE_LABEL)
+				.setDescription(DIMCM_SESSION_MAX_AGE_DESCRIPTION)
+				.setValue(DIMCM_SESSION_MAX_AGE_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmVirtualThreadsConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_VIRTUAL_THREADS_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_VIRTUAL_THREADS_LABEL)
+				.setDescription(DIMCM_VIRTUAL_THREADS_DESCRIPTION)
+				.setValue(DIMCM_VIRTUAL_THREADS_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmRoutesConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_ROUTES_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_ROUTES_LABEL)
+				.setDescription(DIMCM_ROUTES_DESCRIPTION)
+				.setValue(DIMCM_ROUTES_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmTrafficRecordConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_TRAFFIC_RECORD_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_TRAFFIC_RECORD_LABEL)
+				.setDescription(DIMCM_TRAFFIC_RECORD_DESCRIPTION)
+				.setValue(DIMCM_TRAFFIC_RECORD_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmSelfTestConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_SELF_TEST_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_SELF_TEST_LABEL)
+				.setDescription(DIMCM_SELF_TEST_DESCRIPTION)
+				.setValue(DIMCM_SELF_TEST_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmEventLogConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_EVENT_LOG_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_EVENT_LOG_LABEL)
+				.setDescription(DIMCM_EVENT_LOG_DESCRIPTION)
+				.setValue(DIMCM_EVENT_LOG_DEFAULT_VALUE)
+				.setRequired(false);
+
+		BugTrackerConfig cmEventLogSamplingConfig = new BugTrackerConfig()
+				.setIdentifier(DIMCM_EVENT_LOG_SAMPLING_CONFIG_NAME)
+				.setDisplayLabel(DIMCM_EVENT_LOG_SAMPLING_LABEL)
+				.setDescription(DIMCM_EVENT_LOG_SAMPLING_DESCRIPTION)
+				.setValue(DIMCM_EVENT_LOG_SAMPLING_DEFAULT_VALUE)
+				.setRequired(false);
+
 		List<BugTrackerConfig> configs = new ArrayList<>(Arrays.asList(supportedVersions, cmServerConfig, cmDbNameConfig,
 				cmDbConnConfig, cmSuppReqTypeConfig, cmSeverityFieldNameConfig, cmOwnerRoleConfig,
-				cmOwnerCapabilityConfig, cmResolutionFieldNameConfig, cmBugUrlConfig, cmSscStatusFieldNameConfig));
+				cmOwnerCapabilityConfig, cmResolutionFieldNameConfig, cmBugUrlConfig, cmSscStatusFieldNameConfig,
+				cmCacheDirConfig, cmCacheTtlConfig, cmSharedCacheDirConfig, cmNegativeCacheTtlConfig, cmOwnerChoiceLimitConfig,
+				cmAsyncFilingConfig, cmSessionPoolSizeConfig, cmDeadlinesConfig, cmHedgedReadsConfig,
+				cmDescriptionLimitConfig, cmEventListenerConfig, cmEventTokenConfig, cmEventSafetyPollConfig,
+				cmRefreshTiersConfig, cmGroupByConfig, cmKeepaliveConfig, cmSessionMaxAgeConfig, cmVirtualThreadsConfig, cmRoutesConfig, cmTrafficRecordConfig,
+				cmSelfTestConfig, cmEventLogConfig, cmEventLogSamplingConfig));
 
 		//configs.addAll(buildSscProxyConfiguration());
 		pluginHelper.populateWithDefaultsIfAvailable(configs);
@@ -217,11 +433,327 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 		cmResolutionField = config.get(DIMCM_RESOLUTION_FIELD_CONFIG_NAME);
 		cmOwnerCapabilities = config.get(DIMCM_OWNER_CAPABILITIES_CONFIG_NAME);
 		cmSscStatusField = config.get(DIMCM_SSC_STATUS_FIELD_CONFIG_NAME);
+		if (StringUtils.isNotBlank(cmOwnerCapabilities)) {
+			for (String capability : cmOwnerCapabilities.split(",")) {
+				try {
+					DimCMClient.toCapability(capability);
+				} catch (IllegalArgumentException ex) {
+					throw new IllegalArgumentException("Invalid value for " + DIMCM_OWNER_CAPABILITIES_LABEL + ": " + ex.getMessage(), ex);
+				}
+			}
+		}
+
+		final File cacheDir = getCacheDir();
+		final String sharedDir = config.get(DIMCM_SHARED_CACHE_DIR_CONFIG_NAME);
+		sharedCacheDir = StringUtils.isNotBlank(sharedDir) ? new File(sharedDir.trim()) : null;
+		closeMetadataCaches();
+		metadataCache = createMetadataCache(cacheDir, cmServer, cmDbName, cmDbCon);
+		final String stateStoreLocation = getCacheStoreLocation(cacheDir, cmServer, cmDbName, cmDbCon, "states");
+		if (!stateStoreLocation.equals(this.stateStoreLocation)) {
+			// Known states are kept across reconfigurations that leave their store unchanged, and across
+			// restarts through the snapshot of an in-process store. The cache applies their retention itself.
+			stateCache.close();
+			stateCache = new DimCMStateCache(createCacheStore(cacheDir, cmServer, cmDbName, cmDbCon, "states", Long.MAX_VALUE));
+			this.stateStoreLocation = stateStoreLocation;
+		}
+		routedCaches.clear();
+		try {
+			router = new DimCMRouter(config.get(DIMCM_ROUTES_CONFIG_NAME),
+					new DimCMRouter.Endpoint(cmServer, cmDbName, cmDbCon), ROUTE_COOL_DOWN_MILLIS);
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid value for " + DIMCM_ROUTES_LABEL + ": " + ex.getMessage(), ex);
+		}
+		roleDirectory = new DimCMRoleDirectory(metadataCache != null ? metadataCache.getTtlMillis()
+				: Long.parseLong(DIMCM_CACHE_TTL_DEFAULT_VALUE) * 60 * 1000L);
+		ownerChoiceLimit = (int) getLongConfig(DIMCM_OWNER_CHOICE_LIMIT_CONFIG_NAME,
+				Long.parseLong(DIMCM_OWNER_CHOICE_LIMIT_DEFAULT_VALUE));
+		issueIndex = new DimCMIssueIndex(new File(cacheDir, "dimcm-issues-" + getServerHash() + ".idx"));
+		try {
+			issueGrouper = DimCMIssueGrouper.parse(config.get(DIMCM_GROUP_BY_CONFIG_NAME));
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid value for " + DIMCM_GROUP_BY_LABEL + ": " + ex.getMessage(), ex);
+		}
+		// Maps group keys instead of issue instance IDs to their open request
+		groupIndex = new DimCMIssueIndex(new File(cacheDir, "dimcm-groups-" + getServerHash() + ".idx"));
+		final DimCMOutbox previousOutbox = outbox;
+		if (previousOutbox != null) {
+			// Its drainer would file the journaled submissions a second time
+			previousOutbox.close();
+		}
+		outbox = Boolean.parseBoolean(config.get(DIMCM_ASYNC_FILING_CONFIG_NAME)) ? createOutbox(cacheDir) : null;
+		if (outbox != null && previousOutbox != null) {
+			outbox.copyCredentials(previousOutbox);
+		}
+		descriptionLimit = (int) getLongConfig(DIMCM_DESCRIPTION_LIMIT_CONFIG_NAME,
+				Long.parseLong(DIMCM_DESCRIPTION_LIMIT_DEFAULT_VALUE));
+		executors = new DimCMExecutors(Boolean.parseBoolean(StringUtils.trimToEmpty(config.get(DIMCM_VIRTUAL_THREADS_CONFIG_NAME))));
+		if (executors.isVirtual()) {
+			LOG.info("Running parallel Dimensions CM calls on virtual threads");
+		}
+		sessionPoolSize = (int) getLongConfig(DIMCM_SESSION_POOL_SIZE_CONFIG_NAME,
+				Long.parseLong(DIMCM_SESSION_POOL_SIZE_DEFAULT_VALUE));
+		if (latencyGuard != null) {
+			latencyGuard.close();
+		}
+		latencyGuard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines(config.get(DIMCM_DEADLINES_CONFIG_NAME)),
+				Boolean.parseBoolean(config.get(DIMCM_HEDGED_READS_CONFIG_NAME)), executors);
+		openEventLog(config.get(DIMCM_EVENT_LOG_CONFIG_NAME),
+				getLongConfig(DIMCM_EVENT_LOG_SAMPLING_CONFIG_NAME, Long.parseLong(DIMCM_EVENT_LOG_SAMPLING_DEFAULT_VALUE)));
+		for (DimCMSessionPool pool : sessionPools.values()) {
+			pool.close();
+		}
+		sessionPools.clear();
+		startKeepalive(getLongConfig(DIMCM_KEEPALIVE_CONFIG_NAME, Long.parseLong(DIMCM_KEEPALIVE_DEFAULT_VALUE)),
+				getLongConfig(DIMCM_SESSION_MAX_AGE_CONFIG_NAME, Long.parseLong(DIMCM_SESSION_MAX_AGE_DEFAULT_VALUE)));
+		changesetIndex = new DimCMChangesetIndex(new File(cacheDir, "dimcm-changesets-" + getServerHash() + ".idx"),
+				CHANGESET_PAGE_SIZE, CHANGESET_SCAN_THREADS, CHANGESET_INDEX_MAX_PER_STREAM, executors);
+		safetyPollMillis = getLongConfig(DIMCM_EVENT_SAFETY_POLL_CONFIG_NAME,
+				Long.parseLong(DIMCM_EVENT_SAFETY_POLL_DEFAULT_VALUE)) * 60 * 1000L;
+		try {
+			refreshScheduler = DimCMRefreshScheduler.parse(config.get(DIMCM_REFRESH_TIERS_CONFIG_NAME));
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid value for " + DIMCM_REFRESH_TIERS_LABEL + ": " + ex.getMessage(), ex);
+		}
+		startEventListener(config.get(DIMCM_EVENT_LISTENER_CONFIG_NAME), config.get(DIMCM_EVENT_TOKEN_CONFIG_NAME));
+		setStateRetention();
+		openTraffic(config.get(DIMCM_TRAFFIC_RECORD_CONFIG_NAME), config.get(DIMCM_TRAFFIC_REPLAY_CONFIG_NAME),
+				config.get(DIMCM_TRAFFIC_REPLAY_SPEED_CONFIG_NAME));
+	}
+
+	private void openTraffic(String recordFile, String replayFile, String replaySpeed) {
+		if (traffic != null) {
+			try {
+				traffic.close();
+			} catch (IOException ex) {
+				LOG.warn("Could not close Dimensions CM traffic recording: " + ex.getMessage());
+			}
+			traffic = null;
+		}
+		try {
+			if (StringUtils.isNotBlank(replayFile)) {
+				traffic = DimCMTraffic.replay(new File(replayFile.trim()), Double.parseDouble(
+						StringUtils.defaultIfBlank(replaySpeed, DIMCM_TRAFFIC_REPLAY_SPEED_DEFAULT_VALUE)));
+			} else if (StringUtils.isNotBlank(recordFile)) {
+				traffic = DimCMTraffic.record(new File(recordFile.trim()));
+			}
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid Dimensions CM traffic replay speed: " + replaySpeed);
+		} catch (IOException ex) {
+			throw new BugTrackerException("Could not open Dimensions CM traffic file: " + ex.getMessage(), ex);
+		}
+	}
+
+	private void openEventLog(String file, long sampling) {
+		if (eventLog != null) {
+			eventLog.close();
+			eventLog = null;
+		}
+		if (StringUtils.isNotBlank(file)) {
+			try {
+				eventLog = new DimCMEventLog(new File(file.trim()), (int) Math.min(sampling, Integer.MAX_VALUE));
+			} catch (IOException ex) {
+				throw new BugTrackerException("Could not open Dimensions CM event log: " + ex.getMessage(), ex);
+			}
+		}
+		latencyGuard.setEventLog(eventLog);
+	}
+
+	private void startKeepalive(long idleMinutes, long maxAgeMinutes) {
+		if (keepalive != null) {
+			keepalive.close();
+			keepalive = null;
+		}
+		if (idleMinutes > 0) {
+			keepalive = new DimCMKeepalive(sessionPools::values, idleMinutes * 60 * 1000L, maxAgeMinutes * 60 * 1000L);
+		}
+	}
+
+	private void startEventListener(String endpoint, String token) {
+		if (eventListener != null) {
+			eventListener.close();
+			eventListener = null;
+		}
+		if (StringUtils.isBlank(endpoint)) {
+			return;
+		}
+		String address = "127.0.0.1";
+		String port = endpoint.trim();
+		if (port.lastIndexOf(':') > 0) {
+			address = port.substring(0, port.lastIndexOf(':'));
+			port = port.substring(port.lastIndexOf(':') + 1);
+		}
+		if (StringUtils.isBlank(token)) {
+			throw new IllegalArgumentException(DIMCM_EVENT_TOKEN_LABEL + " is required when the " + DIMCM_EVENT_LISTENER_LABEL + " is set");
+		}
+		try {
+			eventListener = new DimCMEventListener(address, Integer.parseInt(port), token, stateCache, executors);
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid value for " + DIMCM_EVENT_LISTENER_LABEL + ": " + endpoint);
+		} catch (IOException ex) {
+			LOG.warn("Could not listen for request events on " + endpoint + " - falling back to polling: " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the state of a request as last seen, if it is recent enough to be trusted: state events are
+	 * received, or it is within the refresh interval of its tier.
+	 */
+	private DimCMStateCache.State getKnownState(String bugId) {
+		if (eventListener == null && refreshScheduler == null) {
+			return null;
+		}
+		final DimCMStateCache.State state = stateCache.get(bugId);
+		if (state == null) {
+			return null;
+		}
+		if (eventListener != null && state.getAge() < safetyPollMillis) {
+			return state;
+		}
+		return refreshScheduler != null && refreshScheduler.isFresh(bugId, getRefreshTier(state.state), state) ? state : null;
+	}
+
+	/**
+	 * Records a polled request state, if {@link #getKnownState} can answer from it at all.
+	 */
+	private void recordPolledState(String bugId, String bugStatus, String resolution) {
+		if (eventListener != null || refreshScheduler != null) {
+			stateCache.polled(bugId, bugStatus, resolution);
+		}
+	}
+
+	/**
+	 * Keeps known states only as long as {@link #getKnownState} may answer them: up to the safety poll
+	 * interval with state events, or the maximum refresh interval of their tier.
+	 */
+	private void setStateRetention() {
+		final long listened = eventListener != null ? safetyPollMillis : 0;
+		final DimCMRefreshScheduler scheduler = refreshScheduler;
+		stateCache.setRetention(
+				state -> Math.max(listened, scheduler == null ? 0 : scheduler.getMaxInterval(getRefreshTier(state))),
+				Math.max(listened, scheduler == null ? 0 : scheduler.getMaxInterval(DimCMRefreshScheduler.Tier.COLD)));
+	}
+
+	private static DimCMRefreshScheduler.Tier getRefreshTier(String bugStatus) {
+		if (isClosedState(bugStatus)) {
+			return DimCMRefreshScheduler.Tier.COLD;
+		}
+		if (bugStatus.equals(BugState.COMPLETE.toString())) {
+			return DimCMRefreshScheduler.Tier.WARM;
+		}
+		// Open and unknown states
+		return DimCMRefreshScheduler.Tier.HOT;
+	}
+
+	private DimCMOutbox createOutbox(File cacheDir) {
+		final DimCMOutbox.Sink sink = new DimCMOutbox.Sink() {
+			@Override
+			public DimCMClient connect(UserAuthenticationStore credentials) {
+				return connectToDimensions(credentials);
+			}
+
+			@Override
+			public String file(DimCMClient cmClient, Map<String, String> params, List<String> instanceIds) {
+				return fileRequest(cmClient, params, instanceIds, null).getBugId();
+			}
+		};
+		return new DimCMOutbox(new File(cacheDir, "dimcm-outbox-" + getServerHash() + ".journal"), sink,
+				OUTBOX_BATCH_SIZE, OUTBOX_MAX_ATTEMPTS);
+	}
+
+	private File getCacheDir() {
+		String cacheDir = config.get(DIMCM_CACHE_DIR_CONFIG_NAME);
+		return StringUtils.isNotBlank(cacheDir) ? new File(cacheDir)
+				: new File(System.getProperty("java.io.tmpdir"), "fortify-dimcm-plugin");
+	}
+
+	private String getServerHash() {
+		return Integer.toHexString((cmServer + "|" + cmDbName + "@" + cmDbCon).toUpperCase().hashCode());
+	}
+
+	private DimCMMetadataCache createMetadataCache(File cacheDir, String server, String dbName, String dbConn) {
+		final long ttlMinutes = getLongConfig(DIMCM_CACHE_TTL_CONFIG_NAME, Long.parseLong(DIMCM_CACHE_TTL_DEFAULT_VALUE));
+		if (ttlMinutes <= 0) {
+			LOG.info("Dimensions CM metadata caching is disabled");
+			return null;
+		}
+		final long negativeTtlSeconds = getLongConfig(DIMCM_NEGATIVE_CACHE_TTL_CONFIG_NAME,
+				Long.parseLong(DIMCM_NEGATIVE_CACHE_TTL_DEFAULT_VALUE));
+		return new DimCMMetadataCache(server, dbName, dbConn, ttlMinutes * 60 * 1000L, negativeTtlSeconds * 1000L,
+				createCacheStore(cacheDir, server, dbName, dbConn, "metadata", ttlMinutes * 60 * 1000L));
+	}
+
+	/**
+	 * Returns the store for one kind of cached data of a server, in the shared cache directory if configured,
+	 * or else in memory with a snapshot in the cache directory.
+	 *
+	 * @param maxAgeMillis how old snapshotted entries may be to be loaded again
+	 */
+	private DimCMCacheStore createCacheStore(File cacheDir, String server, String dbName, String dbConn, String name,
+											 long maxAgeMillis) {
+		if (sharedCacheDir == null) {
+			return new DimCMInProcessCacheStore(getSnapshotFile(cacheDir, server, dbName, dbConn, name),
+					server + "|" + dbName + "@" + dbConn + "/" + name, maxAgeMillis);
+		}
+		final File dir = getSharedCacheStoreDir(server, dbName, dbConn, name);
+		try {
+			return new DimCMSharedCacheStore(dir);
+		} catch (IOException ex) {
+			throw new BugTrackerException("Could not use shared cache directory " + sharedCacheDir + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	private static File getSnapshotFile(File cacheDir, String server, String dbName, String dbConn, String name) {
+		final String serverHash = Integer.toHexString((server + "|" + dbName + "@" + dbConn).toUpperCase().hashCode());
+		return new File(cacheDir, "dimcm-" + serverHash + "-" + name + ".cache");
+	}
+
+	private File getSharedCacheStoreDir(String server, String dbName, String dbConn, String name) {
+		final String serverHash = Integer.toHexString((server + "|" + dbName + "@" + dbConn).toUpperCase().hashCode());
+		return new File(new File(sharedCacheDir, "dimcm-" + serverHash), name);
+	}
+
+	/**
+	 * Identifies the store {@link #createCacheStore} would return, to tell whether a reconfiguration changed it.
+	 */
+	private String getCacheStoreLocation(File cacheDir, String server, String dbName, String dbConn, String name) {
+		return (sharedCacheDir == null ? getSnapshotFile(cacheDir, server, dbName, dbConn, name)
+				: getSharedCacheStoreDir(server, dbName, dbConn, name)).getAbsolutePath();
+	}
+
+	private long getLongConfig(String name, long defaultValue) {
+		String value = config.get(name);
+		if (StringUtils.isBlank(value)) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid configuration passed: " + name + " must be a number");
+		}
 	}
 
 	@Override
 	public void testConfiguration(com.fortify.pub.bugtracker.support.UserAuthenticationStore credentials) {
 		validateCredentials(credentials);
+		if (StringUtils.isNotBlank(config.get(DIMCM_SELF_TEST_CONFIG_NAME))) {
+			runSelfTest(credentials);
+		}
+	}
+
+	private void runSelfTest(UserAuthenticationStore credentials) {
+		final DimCMSelfTest selfTest;
+		try {
+			selfTest = new DimCMSelfTest(DimCMLatencyGuard.parseDeadlines(config.get(DIMCM_SELF_TEST_CONFIG_NAME)));
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Invalid value for " + DIMCM_SELF_TEST_LABEL + ": " + ex.getMessage(), ex);
+		}
+		selfTest.run(credentials.getUserName(), credentials.getPassword(), cmDbName, cmDbCon, cmServer, cmSscStatusField);
+		// SSC only shows the outcome of a configuration test if it fails
+		if (selfTest.hasProblems()) {
+			LOG.warn("Dimensions CM self-test: " + selfTest.getSummary());
+			throw new BugTrackerException("Dimensions CM self-test: " + selfTest.getSummary());
+		}
+		LOG.info("Dimensions CM self-test: " + selfTest.getSummary());
 	}
 
 	@Override
@@ -257,19 +789,19 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 	private List<BugParam> innerOnParameterChange(String modifiedParamId, List<BugParam> bugParams,
 												  UserAuthenticationStore credentials) {
 
-		if (PRODUCT_PARAM_NAME.equals(modifiedParamId) || PROJECT_PARAM_NAME.equals(modifiedParamId)) {
-			final DimCMClient cmClient = connectToDimensions(credentials);
-
+		if (PRODUCT_PARAM_NAME.equals(modifiedParamId) || PROJECT_PARAM_NAME.equals(modifiedParamId)
+				|| OWNER_PREFIX_PARAM_NAME.equals(modifiedParamId)) {
 			try {
 				final BugParam productParam = pluginHelper.findParam(PRODUCT_PARAM_NAME, bugParams);
 				final String curProduct = productParam.getValue();
+				// The server holding the product also knows its projects, parts and users
+				final DimCMClient cmClient = connectToDimensions(credentials, curProduct, true);
 
 				if (PRODUCT_PARAM_NAME.equals(modifiedParamId)) {
 					final BugParamChoice reqTypeParam = (BugParamChoice)pluginHelper.findParam(REQ_TYPE_PARAM_NAME, bugParams);
 					final BugParamChoice projectParam = (BugParamChoice)pluginHelper.findParam(PROJECT_PARAM_NAME, bugParams);
 					final BugParamChoice partsParam = (BugParamChoice)pluginHelper.findParam(PARTS_PARAM_NAME, bugParams);
 					final BugParamChoice severityParam = (BugParamChoice)pluginHelper.findParam(SEVERITY_PARAM_NAME, bugParams);
-					final BugParamChoice ownerParam = (BugParamChoice)pluginHelper.findParam(OWNER_PARAM_NAME, bugParams);
 
 					String reqTypesString = config.get(DIMCM_SUPPORTED_REQ_TYPE_CONFIG_NAME);
 					String[] suppReqTypes =  reqTypesString.split(",");
@@ -290,12 +822,14 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 						List<String> severities = cmClient.getFieldValues(config.get(DIMCM_SEVERITY_FIELD_CONFIG_NAME));
 						severityParam.setChoiceList(severities);
 					}
-					String ownerFieldName = config.get(DIMCM_OWNER_ROLE_CONFIG_NAME);
-					if (ownerFieldName != null && ownerFieldName.length() > 0) {
-						List<String> usersInRole = cmClient.getRoleUsers(curProduct, ownerFieldName);
-						ownerParam.setChoiceList(usersInRole);
+					final BugParamChoice ownerPrefixParam = (BugParamChoice)pluginHelper.findParam(OWNER_PREFIX_PARAM_NAME, bugParams);
+					if (ownerPrefixParam != null && StringUtils.isNotEmpty(cmOwnerRoleField)) {
+						ownerPrefixParam.setChoiceList(roleDirectory.getPrefixes(cmClient, curProduct, cmOwnerRoleField, ownerChoiceLimit));
+						ownerPrefixParam.setValue(null);
 					}
-
+				}
+				if (!PROJECT_PARAM_NAME.equals(modifiedParamId) && StringUtils.isNotEmpty(curProduct)) {
+					updateOwnerChoices(cmClient, curProduct, bugParams);
 				}
 			} catch (BugTrackerException e) {
 				throw e;
@@ -306,6 +840,28 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 		return bugParams;
 	}
 
+	/**
+	 * Lists the users of the owner role whose name starts with the chosen prefix, and tells the user when
+	 * the list had to be cut at the owner choice limit.
+	 */
+	private void updateOwnerChoices(final DimCMClient cmClient, final String product, final List<BugParam> bugParams) {
+		final BugParamChoice ownerParam = (BugParamChoice)pluginHelper.findParam(OWNER_PARAM_NAME, bugParams);
+		if (ownerParam == null || StringUtils.isEmpty(cmOwnerRoleField)) {
+			return;
+		}
+		final BugParam ownerPrefixParam = pluginHelper.findParam(OWNER_PREFIX_PARAM_NAME, bugParams);
+		final String prefix = ownerPrefixParam == null ? null : ownerPrefixParam.getValue();
+		// One more than the limit, to know whether the list is complete
+		final List<String> users = roleDirectory.findUsers(cmClient, product, cmOwnerRoleField, prefix, ownerChoiceLimit + 1);
+		if (users.size() > ownerChoiceLimit) {
+			ownerParam.setChoiceList(new ArrayList<>(users.subList(0, ownerChoiceLimit)));
+			ownerParam.setDescription(String.format(OWNER_TRUNCATED_DESCRIPTION, ownerChoiceLimit));
+		} else {
+			ownerParam.setChoiceList(users);
+			ownerParam.setDescription(OWNER_DESCRIPTION);
+		}
+	}
+
 	@Override
 	public List<BugParam> getBatchBugParameters(UserAuthenticationStore credentials) {
 		return getBugParameters(null, credentials);
@@ -314,8 +870,6 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 	@Override
 	public List<BugParam> getBugParameters(IssueDetail issueDetail, UserAuthenticationStore credentials) {
 		try {
-			final DimCMClient cmClient = connectToDimensions(credentials);
-
 			final BugParam summaryParam = getSummaryParamText(issueDetail);
             final BugParam descriptionParam = getDescriptionParamText(issueDetail);
             final BugParam productParam;
@@ -324,16 +878,18 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
             final BugParam partsParam;
             final BugParam severityParam;
             final BugParam ownerParam;
+            final BugParam ownerPrefixParam;
             final BugParam ownerCapabilityParam;
 			final BugParam additionalFieldsParam = getAdditionalFieldsParamText(issueDetail);
 
-            final List<String> products = cmClient.getProducts();
+            final List<String> products = getAllProducts(credentials);
             productParam = getProductParamChoice(products);
             reqTypeParam = getReqTypeParamChoice(new ArrayList<>());
             projectParam =  getProjectParamChoice(new ArrayList<>());
             partsParam = getPartsParamChoice(new ArrayList<>());
             severityParam = getSeverityParamChoice(new ArrayList<>());
             ownerParam = getOwnerParamChoice(new ArrayList<>());
+            ownerPrefixParam = getOwnerPrefixParamChoice(new ArrayList<>());
             if (cmOwnerCapabilities != null && cmOwnerCapabilities.length() > 0) {
 				final String[] capabilities = cmOwnerCapabilities.split(",");
 				ownerCapabilityParam = getOwnerCapabilityParamChoice(new ArrayList<String>(Arrays.asList(capabilities)));
@@ -345,7 +901,7 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 				ownerCapabilityParam = getOwnerCapabilityParamChoice(capabilities);
 			}
 			return Arrays.asList(summaryParam, descriptionParam, productParam, reqTypeParam, projectParam, partsParam,
-					severityParam, ownerParam, ownerCapabilityParam, additionalFieldsParam);
+					severityParam, ownerPrefixParam, ownerParam, ownerCapabilityParam, additionalFieldsParam);
 
 		} catch (BugTrackerException ex) {
 			throw ex;
@@ -354,6 +910,30 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 		}
 	}
 
+	/**
+	 * Returns the products of all routed databases. A database that cannot be reached is left out, unless
+	 * none can be reached.
+	 */
+	private List<String> getAllProducts(final UserAuthenticationStore credentials) {
+		final Set<String> products = new LinkedHashSet<>();
+		RuntimeException lastError = null;
+		boolean reached = false;
+		for (String key : router.getDatabaseKeys()) {
+			try {
+				products.addAll(connectToDimensions(credentials, key, true).getProducts());
+				reached = true;
+			} catch (RuntimeException ex) {
+				LOG.warn("Could not list the products of the Dimensions CM database of route " + (key == null ? "*" : key)
+						+ ": " + ex.getMessage());
+				lastError = ex;
+			}
+		}
+		if (!reached) {
+			throw lastError;
+		}
+		return new ArrayList<>(products);
+	}
+
 	private BugParam getSummaryParamText(IssueDetail issueDetail) {
 		BugParam titleParam = new BugParamText()
 			.setIdentifier(TITLE_PARAM_NAME)
@@ -429,6 +1009,16 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 			.setDescription(OWNER_DESCRIPTION);
 	}
 
+	private BugParam getOwnerPrefixParamChoice(List<String> prefixes) {
+		return new BugParamChoice()
+			.setChoiceList(prefixes)
+			.setHasDependentParams(true)
+			.setIdentifier(OWNER_PREFIX_PARAM_NAME)
+			.setDisplayLabel(OWNER_PREFIX_LABEL)
+			.setRequired(false)
+			.setDescription(OWNER_PREFIX_DESCRIPTION);
+	}
+
 	private BugParam getOwnerCapabilityParamChoice(List<String> capabilities) {
 		return new BugParamChoice()
 			.setChoiceList(capabilities)
@@ -467,63 +1057,289 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 	@Override
 	public Bug fileMultiIssueBug(MultiIssueBugSubmission bug, UserAuthenticationStore credentials)
 			throws BugTrackerException {
-		final DimCMClient cmClient = connectToDimensions(credentials);
-		return fileBugInternal(cmClient, bug.getParams());
+		return logged("fileMultiIssueBug", null, () -> fileBugInternal(bug.getParams(), bug.getIssueDetails(), credentials));
 	}
 
 	@Override
 	public Bug fileBug(BugSubmission bug, UserAuthenticationStore credentials)
 			throws BugTrackerException {
-		final DimCMClient cmClient = connectToDimensions(credentials);
-		return fileBugInternal(cmClient, bug.getParams());
+		return logged("fileBug", null,
+				() -> fileBugInternal(bug.getParams(), Collections.singletonList(bug.getIssueDetail()), credentials));
 	}
 
-	private Bug fileBugInternal(final DimCMClient cmClient, final Map<String, String> bugParams) {
+	/**
+	 * Runs a plugin operation, recording its duration and outcome in the event log if one is configured.
+	 *
+	 * @param requestId request the operation is about, or null to take it from the returned bug
+	 */
+	private <T> T logged(String operation, String requestId, Supplier<T> call) {
+		final DimCMEventLog log = eventLog;
+		if (log == null) {
+			return call.get();
+		}
+		final long start = System.nanoTime();
 		try {
+			final T result = call.get();
+			log.record(operation, requestId != null || !(result instanceof Bug) ? requestId : ((Bug) result).getBugId(),
+					start, null);
+			return result;
+		} catch (RuntimeException | Error ex) {
+			log.record(operation, requestId, start, ex);
+			throw ex;
+		}
+	}
+
+	private Bug fileBugInternal(final Map<String, String> bugParams, final List<IssueDetail> issueDetails,
+								final UserAuthenticationStore credentials) {
+		final List<String> instanceIds = DimCMIssueIndex.getInstanceIds(issueDetails, bugParams.get(DESCRIPTION_PARAM_NAME));
+		if (issueGrouper.isEnabled()) {
+			final Bug grouped = fileGroupedBug(bugParams, issueDetails, instanceIds, credentials);
+			if (grouped != null) {
+				return grouped;
+			}
+		}
+		return fileBugForIssues(bugParams, instanceIds, credentials);
+	}
+
+	/**
+	 * Adds the issues to the open request of their group, or files a new request for the group.
+	 *
+	 * @return null if the issues do not belong to one group
+	 */
+	private Bug fileGroupedBug(final Map<String, String> bugParams, final List<IssueDetail> issueDetails,
+							   final List<String> instanceIds, final UserAuthenticationStore credentials) {
+		String groupKey = null;
+		Map<DimCMIssueGrouper.Dimension, String> values = null;
+		for (IssueDetail issueDetail : issueDetails) {
+			if (issueDetail == null) {
+				return null;
+			}
+			values = issueGrouper.getValues(bugParams, issueDetail.getCategory(), issueDetail.getFileName());
+			final String key = issueGrouper.getKey(bugParams, values);
+			if (groupKey != null && !groupKey.equals(key)) {
+				LOG.debug("Issues of the submission belong to different groups - filing them as one request");
+				return null;
+			}
+			groupKey = key;
+		}
+		if (groupKey == null) {
+			return null;
+		}
+		// Serialized per group so that concurrent submissions of one group do not both file a request
+		synchronized (groupLocks[(groupKey.hashCode() & Integer.MAX_VALUE) % groupLocks.length]) {
+			final DimCMIssueIndex index = groupIndex;
+			final String requestId = index.findExistingRequest(Collections.singletonList(groupKey));
+			if (requestId != null) {
+				final DimCMClient cmClient = connectToDimensions(credentials, requestId, true);
+				final String state = cmClient.queryRequestState(requestId);
+				if (state != null && !isClosedState(state)) {
+					LOG.info("Adding " + instanceIds.size() + " issues to Dimensions CM Request " + requestId + " of their group");
+					cmClient.addActionDescription(requestId, getJoinedIssuesDescription(bugParams, instanceIds));
+					issueIndex.add(requestId, instanceIds);
+					issueIndex.flush();
+					return new Bug(requestId, state);
+				}
+				index.removeRequest(requestId);
+			}
+			final Map<String, String> params = new HashMap<>(bugParams);
+			params.put(TITLE_PARAM_NAME, issueGrouper.getSummary(values));
+			return fileIssueGroup(groupKey, params, instanceIds, credentials, null);
+		}
+	}
+
+	/**
+	 * Describes issues joining the request of their group, for the action description of the request.
+	 */
+	private String getJoinedIssuesDescription(final Map<String, String> bugParams, final List<String> instanceIds) {
+		final StringBuilder text = new StringBuilder("Issues added by Fortify SSC: ").append(String.join(", ", instanceIds));
+		final String description = bugParams.get(DESCRIPTION_PARAM_NAME);
+		if (StringUtils.isNotEmpty(description)) {
+			text.append("\n\n").append(description);
+		}
+		return DimCMDescriptionBuilder.abbreviate(text.toString(), descriptionLimit);
+	}
+
+	/**
+	 * Files a request for a group of issues and remembers it as the open request of the group, also used
+	 * by {@link DimCMBulkTool}.
+	 */
+	Bug fileIssueGroup(final String groupKey, final Map<String, String> bugParams, final List<String> instanceIds,
+					   final UserAuthenticationStore credentials, final List<DimCMClient.Delegation> deferredDelegations) {
+		final Bug bug = fileBugForIssues(bugParams, instanceIds, credentials, deferredDelegations);
+		// Queued requests have no ID yet, the group gets a new request when the next issue is filed
+		if (!DimCMOutbox.isProvisionalId(bug.getBugId())) {
+			groupIndex.add(bug.getBugId(), Collections.singletonList(groupKey));
+			groupIndex.flush();
+		}
+		return bug;
+	}
+
+	DimCMExecutors getExecutors() {
+		return executors;
+	}
+
+	DimCMIssueGrouper getIssueGrouper() {
+		return issueGrouper;
+	}
+
+	/**
+	 * Files a request for the given issues, also used by {@link DimCMBulkTool}.
+	 */
+	Bug fileBugForIssues(final Map<String, String> bugParams, final List<String> instanceIds,
+						 final UserAuthenticationStore credentials) {
+		return fileBugForIssues(bugParams, instanceIds, credentials, null);
+	}
+
+	/**
+	 * @param deferredDelegations collects the owner delegation of the new request instead of running it,
+	 *                            for {@link #delegateBugs}; null to delegate right away
+	 */
+	Bug fileBugForIssues(final Map<String, String> bugParams, final List<String> instanceIds,
+						 final UserAuthenticationStore credentials, final List<DimCMClient.Delegation> deferredDelegations) {
+		if (outbox != null) {
+			try {
+				return new Bug(outbox.submit(bugParams, instanceIds, credentials), STATUS_NEW);
+			} catch (RuntimeException ex) {
+				LOG.error(ex.toString());
+				throw new BugTrackerException(ex.getMessage(), ex);
+			}
+		}
+		final DimCMClient cmClient = connectToDimensions(credentials, bugParams.get(PRODUCT_PARAM_NAME), false);
+		return fileRequest(cmClient, bugParams, instanceIds, deferredDelegations);
+	}
+
+	/**
+	 * Returns the delegation of a request to the owner given in its bug parameters, or null if there is none.
+	 */
+	DimCMClient.Delegation getOwnerDelegation(final String requestId, final Map<String, String> bugParams) {
+		final String owner = bugParams.get(OWNER_PARAM_NAME);
+		return StringUtils.isEmpty(owner) ? null : new DimCMClient.Delegation(requestId, Collections.singletonList(owner),
+				cmOwnerRoleField, DimCMClient.toCapability(bugParams.get(OWNER_CAPABILITY_PARAM_NAME)));
+	}
+
+	/**
+	 * Delegates filed requests to their owners, grouped by owner, role and capability.
+	 *
+	 * @return the outcome per delegation, in the given order
+	 */
+	List<DimCMClient.DelegationResult> delegateBugs(List<DimCMClient.Delegation> delegations,
+													final UserAuthenticationStore credentials, int threads)
+			throws InterruptedException {
+		// Requests of different routes live on different servers
+		final Map<DimCMRouter.Route, List<DimCMClient.Delegation>> byRoute = new LinkedHashMap<>();
+		for (DimCMClient.Delegation d : delegations) {
+			byRoute.computeIfAbsent(router.getRoute(d.requestId), r -> new ArrayList<>()).add(d);
+		}
+		final Map<String, DimCMClient.DelegationResult> outcomes = new HashMap<>();
+		for (List<DimCMClient.Delegation> routed : byRoute.values()) {
+			final DimCMClient cmClient = connectToDimensions(credentials, routed.get(0).requestId, false);
+			for (DimCMClient.DelegationResult result : cmClient.delegateRequests(routed, threads)) {
+				outcomes.put(result.requestId, result);
+			}
+		}
+		final List<DimCMClient.DelegationResult> results = new ArrayList<>();
+		for (DimCMClient.Delegation d : delegations) {
+			results.add(outcomes.get(d.requestId));
+		}
+		return results;
+	}
+
+	private Bug fileRequest(final DimCMClient cmClient, final Map<String, String> bugParams, final List<String> instanceIds,
+							final List<DimCMClient.Delegation> deferredDelegations) {
+		final DimCMDescriptionBuilder description = new DimCMDescriptionBuilder(descriptionLimit);
+		try {
+			final String owner = bugParams.get(OWNER_PARAM_NAME);
+			// Checked up front, a request must not be created and then fail on its delegation
+			final String capability = StringUtils.isEmpty(owner) ? null
+					: DimCMClient.toCapability(bugParams.get(OWNER_CAPABILITY_PARAM_NAME));
+			final Bug existingBug = findDuplicateBug(cmClient, instanceIds);
+			if (existingBug != null) {
+				LOG.info("Issues already filed as Dimensions CM Request " + existingBug.getBugId() + " - not filing again");
+				if (deferredDelegations != null && capability != null) {
+					// A bulk run may have stopped before delegating it
+					deferredDelegations.add(getOwnerDelegation(existingBug.getBugId(), bugParams));
+				}
+				return existingBug;
+			}
 			LOG.info("Filing Bug in Dimensions CM:");
+			cmClient.checkDesignPart(bugParams.get(PRODUCT_PARAM_NAME), bugParams.get(PARTS_PARAM_NAME));
 			List <Part> parts = cmClient.getDesignPartAsList(bugParams.get(PRODUCT_PARAM_NAME), bugParams.get(PARTS_PARAM_NAME));
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Product:" + bugParams.get(PRODUCT_PARAM_NAME));
 				LOG.debug("Project:" + bugParams.get(PROJECT_PARAM_NAME));
 				LOG.debug("Type:" + bugParams.get(REQ_TYPE_PARAM_NAME));
 				LOG.debug("Summary:" + bugParams.get(TITLE_PARAM_NAME));
-				LOG.debug("Description:" + bugParams.get(DESCRIPTION_PARAM_NAME));
+				LOG.debug("Description:" + DimCMDescriptionBuilder.abbreviate(bugParams.get(DESCRIPTION_PARAM_NAME), MAX_LOGGED_TEXT_LENGTH));
 				LOG.debug("Severity:" + bugParams.get(SEVERITY_PARAM_NAME));
 				LOG.debug("Owner:" + bugParams.get(OWNER_PARAM_NAME));
 				LOG.debug("Design Part: " + bugParams.get(PARTS_PARAM_NAME));
 				LOG.debug("Design Part (Object): " + parts.toString());
 				LOG.debug("Additional Fields:" + bugParams.get(ADDITIONAL_FIELDS_PARAM_NAME));
 			}
+			description.append(bugParams.get(DESCRIPTION_PARAM_NAME));
+			if (description.getOverflowFile() != null) {
+				LOG.info("Description exceeds " + descriptionLimit + " characters - attaching the full text");
+			}
 			DimensionsResult result = cmClient.createRequest(bugParams.get(PRODUCT_PARAM_NAME), bugParams.get(PROJECT_PARAM_NAME), parts,
-					bugParams.get(REQ_TYPE_PARAM_NAME), bugParams.get(TITLE_PARAM_NAME), bugParams.get(DESCRIPTION_PARAM_NAME),
-					bugParams.get(SEVERITY_PARAM_NAME), bugParams.get(OWNER_PARAM_NAME), bugParams.get(ADDITIONAL_FIELDS_PARAM_NAME));
+					bugParams.get(REQ_TYPE_PARAM_NAME), bugParams.get(TITLE_PARAM_NAME), description.build(),
+					bugParams.get(SEVERITY_PARAM_NAME), bugParams.get(OWNER_PARAM_NAME), bugParams.get(ADDITIONAL_FIELDS_PARAM_NAME),
+					description.getOverflowFile());
 			String bugId = cmClient.getRequestIdFromResult(result, bugParams.get(PRODUCT_PARAM_NAME), bugParams.get(REQ_TYPE_PARAM_NAME));
 			LOG.info("Created Dimensions CM Request with Id: " + bugId);
-			if (bugParams.get(OWNER_PARAM_NAME) != null && (bugParams.get(OWNER_PARAM_NAME)).length() > 0) {
-				LOG.info("Delegating CM Request");
+			if (capability != null) {
+				final DimCMClient.Delegation delegation = getOwnerDelegation(bugId, bugParams);
 				if (LOG.isDebugEnabled()) {
 					LOG.debug("Delegating Dimensions CM Request:");
 					LOG.debug("Request Id: " + bugId);
 					LOG.debug("Owner: " + bugParams.get(OWNER_PARAM_NAME));
 					LOG.debug("Role: " + cmOwnerRoleField);
-					LOG.debug("Capability: " + bugParams.get(OWNER_CAPABILITY_PARAM_NAME).substring(0, 1));
+					LOG.debug("Capability: " + delegation.capability);
+				}
+				if (deferredDelegations != null) {
+					deferredDelegations.add(delegation);
+				} else {
+					LOG.info("Delegating CM Request");
+					cmClient.delegateRequest(bugId, delegation.users, delegation.role, delegation.capability);
+					LOG.info("Delegated request to: " + bugParams.get(OWNER_PARAM_NAME));
 				}
-				List<String> users = new ArrayList<>();
-				users.add(bugParams.get(OWNER_PARAM_NAME));
-				cmClient.delegateRequest(bugId, users, cmOwnerRoleField, bugParams.get(OWNER_CAPABILITY_PARAM_NAME).substring(0,1));
-				LOG.info("Delegated request to: " + bugParams.get(OWNER_PARAM_NAME));
 			}
+			recordPolledState(bugId, STATUS_NEW, null);
+			issueIndex.add(bugId, instanceIds);
+			issueIndex.flush();
 			return new Bug(bugId, STATUS_NEW);
 		} catch (Exception ex) {
 			LOG.error(ex.toString());
 			throw new BugTrackerException(ex.getMessage(), ex);
+		} finally {
+			description.discard();
+		}
+	}
+
+	private Bug findDuplicateBug(final DimCMClient cmClient, final List<String> instanceIds) {
+		final String requestId = issueIndex.findExistingRequest(instanceIds);
+		if (requestId == null) {
+			return null;
+		}
+		// The index may predate a close or a delete, so its answer is always checked
+		final String state = cmClient.queryRequestState(requestId);
+		if (state == null || isClosedState(state)) {
+			LOG.debug("Request " + requestId + " is no longer open - filing issues again");
+			issueIndex.removeRequest(requestId);
+			return null;
 		}
+		return new Bug(requestId, state);
+	}
+
+	private static boolean isClosedState(String bugStatus) {
+		return bugStatus.equals(BugState.REJECTED.toString())
+				|| bugStatus.equals(BugState.CLOSED.toString());
 	}
 
 	@Override
 	public boolean isBugOpen(Bug bug, UserAuthenticationStore credentials) {
 		LOG.debug("isBugOpen: " + bug.getBugId() + "-" + bug.getBugStatus());
-		String bugStatus = bug.getBugStatus();
+		final DimCMStateCache.State known = getKnownState(bug.getBugId());
+		String bugStatus = known != null && known.fromEvent ? known.state : bug.getBugStatus();
 		return bugStatus.equals(BugState.RAISED.toString())
 				|| bugStatus.equals(BugState.ASSIGNED.toString())
 				|| bugStatus.equals(BugState.UNDER_WORK.toString())
@@ -534,10 +1350,7 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 	@Override
 	public boolean isBugClosed(Bug bug, UserAuthenticationStore credentials) {
 		LOG.debug("isBugClosed: " + bug.getBugId() + "-" + bug.getBugStatus());
-		String bugStatus = bug.getBugStatus();
-		return bugStatus.equals(BugState.REJECTED.toString())
-				|| bugStatus.equals(BugState.CLOSED.toString())
-				|| bugStatus.equals(BugState.CLOSED.toString());
+		return isClosedState(bug.getBugStatus());
 	}
 
 	@Override
@@ -550,14 +1363,33 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 
 	@Override
 	public void reOpenBug(Bug bug, String comment, UserAuthenticationStore credentials) {
-		LOG.debug("reOpenBug: " + bug.getBugId() + "-" + bug.getBugStatus() + ":" + comment);
+		logged("reOpenBug", bug.getBugId(), () -> {
+			reOpenBugInternal(bug, comment, credentials);
+			return null;
+		});
+	}
+
+	private void reOpenBugInternal(Bug bug, String comment, UserAuthenticationStore credentials) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("reOpenBug: " + bug.getBugId() + "-" + bug.getBugStatus() + ":" + comment);
+		}
 		try {
-			final DimCMClient cmClient = connectToDimensions(credentials);
-			Request request = cmClient.getRequest(bug.getBugId());
-			request.actionTo(BugState.UNDER_WORK.toString());
+			final DimCMClient cmClient = connectToDimensions(credentials, bug.getBugId(), false);
+			DimCMRequestView request = cmClient.fetchRequest(bug.getBugId(), DimCMProjection.LIFECYCLE_STATE);
+			if (request == null) {
+				throw new BugTrackerException("Dimensions CM Request " + bug.getBugId() + " does not exist");
+			}
+			List<String> path;
+			try {
+				path = cmClient.actionRequestTo(request, BugState.UNDER_WORK.toString());
+			} catch (DimCMClient.PartialActionException ex) {
+				recordPolledState(bug.getBugId(), ex.getReachedState(), null);
+				throw new BugTrackerException(ex.getMessage(), ex);
+			}
+			LOG.debug("Actioned " + bug.getBugId() + " through " + path);
+			recordPolledState(bug.getBugId(), BugState.UNDER_WORK.toString(), null);
 			int sscFieldId = cmClient.getFieldId(cmSscStatusField);
-			request.setAttribute(sscFieldId, comment);
-			request.updateAttribute(sscFieldId);
+			cmClient.updateAttribute(request.getRequest(), sscFieldId, comment);
 		} catch (BugTrackerException ex) {
 			throw ex;
 		} catch (Exception ex) {
@@ -567,18 +1399,24 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 
 	@Override
 	public void addCommentToBug(Bug bug, String comment, UserAuthenticationStore credentials) {
-		LOG.info("addCommentToBug: " + bug.getBugId() + "-" + bug.getBugStatus() + ":" + comment);
+		logged("addCommentToBug", bug.getBugId(), () -> {
+			addCommentToBugInternal(bug, comment, credentials);
+			return null;
+		});
+	}
+
+	private void addCommentToBugInternal(Bug bug, String comment, UserAuthenticationStore credentials) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("addCommentToBug: " + bug.getBugId() + "-" + bug.getBugStatus() + ":" + comment);
+		}
 		if (StringUtils.isNotEmpty(comment)) {
 			try {
 				if (StringUtils.isNotEmpty(cmSscStatusField)) {
-					final DimCMClient cmClient = connectToDimensions(credentials);
+					final DimCMClient cmClient = connectToDimensions(credentials, bug.getBugId(), false);
 					int sscFieldId = cmClient.getFieldId(cmSscStatusField);
 					if (sscFieldId > 0) {
 						Request request = cmClient.getRequest(bug.getBugId());
-						request.queryAttribute(new int[]{SystemAttributes.TITLE, SystemAttributes.DESCRIPTION, sscFieldId});
-						String sscComments = (String) request.getAttribute(sscFieldId);
-						request.setAttribute(sscFieldId, comment);
-						request.updateAttribute(sscFieldId);
+						cmClient.updateAttribute(request, sscFieldId, comment);
 					} else {
 						LOG.debug("Field " + cmSscStatusField + " does not exist - not updating with comments");
 					}
@@ -595,55 +1433,311 @@ public class DimCMBugTrackerPlugin extends AbstractBatchBugTrackerPlugin impleme
 
 	@Override
 	public Bug fetchBugDetails(String bugId, UserAuthenticationStore credentials) {
+		return logged("fetchBugDetails", bugId, () -> fetchBugDetailsInternal(bugId, credentials));
+	}
+
+	private Bug fetchBugDetailsInternal(String bugId, UserAuthenticationStore credentials) {
 		LOG.debug("Fetching Bug " + bugId);
-		final DimCMClient cmClient = connectToDimensions(credentials);
+		if (DimCMOutbox.isProvisionalId(bugId)) {
+			if (outbox == null) {
+				throw new BugTrackerException("Bug " + bugId + " was queued but asynchronous filing is no longer enabled");
+			}
+			outbox.setCredentials(credentials);
+			final DimCMOutbox.Resolution resolution = outbox.resolve(bugId);
+			switch (resolution.status) {
+				case PENDING:
+					return new Bug(bugId, STATUS_NEW);
+				case FAILED:
+					LOG.debug("Filing of queued bug " + bugId + " failed: " + resolution.value);
+					return new Bug(bugId, STATUS_FILING_FAILED, resolution.value);
+				case UNKNOWN:
+					// Forgotten after its retention period, or queued by another SSC node
+					return new Bug(bugId, STATUS_UNKNOWN);
+				default:
+					LOG.debug("Queued bug " + bugId + " was filed as " + resolution.value);
+					bugId = resolution.value;
+			}
+		}
+		final DimCMStateCache.State known = getKnownState(bugId);
+		if (known != null) {
+			LOG.debug("Bug " + bugId + " is " + known.state + (known.fromEvent ? " (event)" : " (polled)"));
+			return new Bug(bugId, known.state, known.resolution);
+		}
+		final DimCMClient cmClient = connectToDimensions(credentials, bugId, true);
 		try {
-			Request request = cmClient.getRequest(bugId);
 			int solutionFieldId = 0;
 			if (!cmResolutionField.isEmpty()) {
 				solutionFieldId = cmClient.getFieldId(config.get(DIMCM_RESOLUTION_FIELD_CONFIG_NAME));
 			}
-			request.queryAttribute(new int[]{SystemAttributes.TITLE,
-					SystemAttributes.DESCRIPTION,
-					SystemAttributes.OBJECT_SPEC,
-					SystemAttributes.STATUS,
-					solutionFieldId});
+			final DimCMProjection resolution = DimCMProjection.of(solutionFieldId);
+			DimCMRequestView request = LOG.isDebugEnabled()
+					? cmClient.fetchRequest(bugId, DimCMProjection.BUG_STATE, resolution, DimCMProjection.BUG_SUMMARY)
+					: cmClient.fetchRequest(bugId, DimCMProjection.BUG_STATE, resolution);
+			if (request == null) {
+				throw new BugTrackerException("Dimensions CM Request " + bugId + " does not exist");
+			}
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("REQUEST_ID : " + request.getAttribute(SystemAttributes.OBJECT_ID));
 				LOG.debug("TITLE     : " + request.getAttribute(SystemAttributes.TITLE));
 				LOG.debug("STATUS    : " + request.getLcState());
 				LOG.debug("SOLUTION  : " + request.getAttribute(solutionFieldId));
+				LOG.debug("CHANGESETS: " + getChangesetsForRequest(bugId));
+			}
+			final String solution = (String)request.getAttribute(solutionFieldId);
+			recordPolledState(bugId, request.getLcState(), solution);
+			if (isClosedState(request.getLcState())) {
+				issueIndex.removeRequest(bugId);
+				issueIndex.flush();
+				groupIndex.removeRequest(bugId);
+				groupIndex.flush();
 			}
-			return new Bug(bugId, request.getLcState(), (String)request.getAttribute(solutionFieldId));
+			return new Bug(bugId, request.getLcState(), solution);
 		} catch (Exception ex) {
 			throw new BugTrackerException("The bug status could not be fetched correctly", ex);
 		}
 	}
 
-	private DimCMClient connectToDimensions(final UserAuthenticationStore credentials) {
-		DimCMClient cmClient = new DimCMClient();
+	/**
+	 * Reopens many requests in parallel, see {@link #transitionBugs}.
+	 */
+	List<DimCMBulkTransition.Result> reOpenBugs(List<String> bugIds, UserAuthenticationStore credentials, int threads)
+			throws InterruptedException {
+		return transitionBugs(bugIds, BugState.UNDER_WORK.toString(), credentials, threads);
+	}
+
+	/**
+	 * Closes many requests in parallel, see {@link #transitionBugs}.
+	 */
+	List<DimCMBulkTransition.Result> closeBugs(List<String> bugIds, UserAuthenticationStore credentials, int threads)
+			throws InterruptedException {
+		return transitionBugs(bugIds, BugState.CLOSED.toString(), credentials, threads);
+	}
+
+	/**
+	 * Actions many requests to the given state in parallel, each along the shortest path of its lifecycle.
+	 *
+	 * @return the outcome per request, in the order of the given IDs
+	 */
+	List<DimCMBulkTransition.Result> transitionBugs(List<String> bugIds, String targetState,
+													final UserAuthenticationStore credentials, int threads)
+			throws InterruptedException {
+		List<DimCMBulkTransition.Result> results = new DimCMBulkTransition(id -> connectToDimensions(credentials, id, false), threads, executors)
+				.apply(bugIds, targetState);
+		for (DimCMBulkTransition.Result result : results) {
+			if (result.isSuccess()) {
+				recordPolledState(result.requestId, targetState, null);
+			} else if (result.path != null && !result.path.isEmpty()) {
+				// Failed part of the way, the request is in the last state it was actioned to
+				recordPolledState(result.requestId, result.path.get(result.path.size() - 1), null);
+			}
+		}
+		if (isClosedState(targetState)) {
+			for (DimCMBulkTransition.Result result : results) {
+				if (result.isSuccess()) {
+					issueIndex.removeRequest(result.requestId);
+					groupIndex.removeRequest(result.requestId);
+				}
+			}
+			issueIndex.flush();
+			groupIndex.flush();
+		}
+		return results;
+	}
+
+	/**
+	 * Creates a reconciler comparing bug links with the requests in Dimensions CM, used by {@link DimCMBulkTool}.
+	 */
+	DimCMReconciler createReconciler(final UserAuthenticationStore credentials, int threads) {
+		final DimCMClient cmClient = connectToDimensions(credentials);
+		int solutionFieldId = 0;
+		if (!cmResolutionField.isEmpty()) {
+			solutionFieldId = cmClient.getFieldId(cmResolutionField);
+		}
+		return new DimCMReconciler(product -> connectToDimensions(credentials, product, true), cmClient.getProducts(), solutionFieldId,
+				threads, RECONCILE_CHUNK_SIZE, executors);
+	}
+
+	//
+	// Change set discovery
+	//
+
+	/**
+	 * Returns the IDs of the change sets after {@code fromChangeset} up to {@code toChangeset}.
+	 *
+	 * @param scope a PRODUCT:STREAM specification, or a product name to search all of its streams;
+	 *              when blank the product bug parameter is used
+	 */
+	@Override
+	public List<String> queryChangesetsBetween(String fromChangeset, String toChangeset, String scope,
+											   Map<String, String> params, UserAuthenticationStore credentials) {
+		LOG.debug("queryChangesetsBetween: " + fromChangeset + ".." + toChangeset + " in " + scope);
+		final long from;
+		final long to;
 		try {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Connecting to Dimensions CM:");
-				LOG.debug("Server: " + cmServer);
-				LOG.debug("Database Name: " + cmDbName);
-				LOG.debug("Database Connection: " + cmDbCon);
-				LOG.debug("User: " + credentials.getUserName());
-			}
-			cmClient.connect(credentials.getUserName(), credentials.getPassword(), cmDbName, cmDbCon, cmServer);
-			LOG.info("Connected to Dimensions CM successfully");
+			from = DimCMChangesetIndex.parseBound(fromChangeset, Long.MIN_VALUE);
+			to = DimCMChangesetIndex.parseBound(toChangeset, Long.MAX_VALUE);
+		} catch (IllegalArgumentException ex) {
+			throw new BugTrackerException("Invalid change set range " + fromChangeset + ".." + toChangeset + ": " + ex.getMessage(), ex);
+		}
+		try {
+			final List<String> streams = new ArrayList<>();
+			if (StringUtils.isNotBlank(scope) && scope.contains(":")) {
+				streams.add(scope.trim());
+			} else {
+				final String product = StringUtils.isNotBlank(scope) ? scope.trim()
+						: params == null ? null : params.get(PRODUCT_PARAM_NAME);
+				if (StringUtils.isBlank(product)) {
+					throw new BugTrackerException("No Dimensions CM product or stream given to discover change sets in");
+				}
+				final DimCMClient cmClient = connectToDimensions(credentials);
+				for (String stream : cmClient.getProjectsStreams(product, DimCMClient.GetOptions.STREAMS)) {
+					streams.add(product.toUpperCase() + ":" + stream);
+				}
+			}
+			changesetIndex.update(() -> connectToDimensions(credentials), streams);
+			return changesetIndex.getChangesetsBetween(streams, from, to);
+		} catch (BugTrackerException ex) {
+			throw ex;
 		} catch (Exception ex) {
-			LOG.error("Unable to connection to Dimensions CM: " + ex.toString());
-			throw new BugTrackerException("Could not login to Dimensions server at " + cmServer, ex);
+			throw new BugTrackerException("Error while discovering Dimensions CM change sets: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Returns the change sets delivered against a request, as far as change set discovery has seen them,
+	 * also used by {@link DimCMBulkTool}.
+	 */
+	List<String> getChangesetsForRequest(String requestId) {
+		return changesetIndex.getChangesetsForRequest(requestId);
+	}
+
+	private DimCMClient connectToDimensions(final UserAuthenticationStore credentials) {
+		return connectToDimensions(credentials, null, false);
+	}
+
+	/**
+	 * Writes the pending changes of the metadata caches to their snapshots, when the caches are replaced
+	 * by a new configuration. Until then, and when the JVM stops, their stores write them in the background.
+	 */
+	private void closeMetadataCaches() {
+		if (metadataCache != null) {
+			metadataCache.close();
+		}
+		for (DimCMMetadataCache cache : routedCaches.values()) {
+			cache.close();
+		}
+	}
+
+	/**
+	 * Connects to the Dimensions CM server holding a product or request, failing over to its replicas.
+	 *
+	 * @param routeKey product name or request ID, null for the default server
+	 * @param readOnly whether only reads will be made, which may then go to the least loaded replica
+	 */
+	private DimCMClient connectToDimensions(final UserAuthenticationStore credentials, final String routeKey,
+											final boolean readOnly) {
+		if (traffic != null && traffic.isReplay()) {
+			// Everything is answered from the recording, there is no server to connect to
+			DimCMClient cmClient = new DimCMClient(metadataCache, null, latencyGuard, executors);
+			cmClient.setTraffic(traffic);
+			return cmClient;
+		}
+		final DimCMRouter.Route route = router.getRoute(routeKey);
+		final DimCMMetadataCache cache = getMetadataCache(route);
+		Exception lastError = null;
+		for (DimCMRouter.Endpoint endpoint : router.getCandidates(routeKey, readOnly, e -> getSessionPool(e, credentials).getLoad())) {
+			DimCMClient cmClient = new DimCMClient(cache, getSessionPool(endpoint, credentials), latencyGuard, executors);
+			cmClient.setTraffic(traffic);
+			try {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Connecting to Dimensions CM:");
+					LOG.debug("Server: " + endpoint.server);
+					LOG.debug("Database Name: " + endpoint.dbName);
+					LOG.debug("Database Connection: " + endpoint.dbConn);
+					LOG.debug("User: " + credentials.getUserName());
+				}
+				cmClient.connectPooled();
+				LOG.debug("Connected to Dimensions CM successfully");
+				router.markUp(endpoint);
+				return cmClient;
+			} catch (Exception ex) {
+				LOG.error("Unable to connection to Dimensions CM: " + ex.toString());
+				lastError = ex;
+				if (route.endpoints.size() > 1) {
+					router.markDown(endpoint, ex);
+				}
+			}
+		}
+		throw new BugTrackerException("Could not login to Dimensions server at " + route.getPrimary().server, lastError);
+	}
+
+	private DimCMSessionPool getSessionPool(final DimCMRouter.Endpoint endpoint, final UserAuthenticationStore credentials) {
+		evictIdleSessionPools();
+		// A password change must not reuse the sessions logged in with the old one
+		return sessionPools.computeIfAbsent(endpoint.getKey() + "|" + credentials.getUserName() + ":"
+				+ sha256(String.valueOf(credentials.getPassword())),
+				k -> new DimCMSessionPool(() -> DimCMClient.openConnection(credentials.getUserName(),
+						credentials.getPassword(), endpoint.dbName, endpoint.dbConn, endpoint.server), sessionPoolSize));
+	}
+
+	/**
+	 * Closes the session pools of users who have made no calls for a while, at most once per eviction interval.
+	 */
+	private void evictIdleSessionPools() {
+		final long now = System.currentTimeMillis();
+		final long last = lastPoolEviction.get();
+		if (now - last < SESSION_POOL_EVICTION_INTERVAL_MILLIS || !lastPoolEviction.compareAndSet(last, now)) {
+			return;
+		}
+		final List<DimCMSessionPool> evicted = new ArrayList<>();
+		for (String key : sessionPools.keySet()) {
+			sessionPools.computeIfPresent(key, (k, pool) -> {
+				if (pool.isIdle(SESSION_POOL_IDLE_MILLIS)) {
+					evicted.add(pool);
+					return null;
+				}
+				return pool;
+			});
+		}
+		for (DimCMSessionPool pool : evicted) {
+			pool.close();
+		}
+		if (!evicted.isEmpty()) {
+			LOG.debug("Closed " + evicted.size() + " idle Dimensions CM session pools");
+		}
+	}
+
+	private static String sha256(String value) {
+		try {
+			final byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			final StringBuilder hex = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the metadata cache of the database behind a route, which its replicas share.
+	 */
+	private DimCMMetadataCache getMetadataCache(DimCMRouter.Route route) {
+		final DimCMRouter.Endpoint primary = route.getPrimary();
+		if (metadataCache == null || primary.getKey().equalsIgnoreCase(metadataCache.getServerKey())) {
+			return metadataCache;
 		}
-		return cmClient;
+		return routedCaches.computeIfAbsent(primary.getKey(),
+				k -> createMetadataCache(getCacheDir(), primary.server, primary.dbName, primary.dbConn));
 	}
 
     @Override
 	public String getBugDeepLink(String bugId) {
 		String bugUrl = cmBugUrl;
-		bugUrl = bugUrl.replace("%DBNAME%", cmDbName);
-		bugUrl = bugUrl.replace("%DBCONN%", cmDbCon);
+		final DimCMRouter.Endpoint primary = router.getRoute(bugId).getPrimary();
+		bugUrl = bugUrl.replace("%DBNAME%", primary.dbName);
+		bugUrl = bugUrl.replace("%DBCONN%", primary.dbConn);
 		bugUrl = bugUrl.replace("%BUG_ID%", bugId);
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Creating deep link for Bug " + bugId);
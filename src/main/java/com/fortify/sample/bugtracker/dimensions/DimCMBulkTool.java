@@ -0,0 +1,569 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.fortify.pub.bugtracker.support.Bug;
+import com.fortify.pub.bugtracker.support.UserAuthenticationStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
+
+/**
+ * Command line tool, started through {@link DimCMClient#main(String[])}, to backfill Dimensions CM requests
+ * from an SSC issue export and to sync their states.
+ *
+ * <pre>
+ * file &lt;config.properties&gt; &lt;export.csv|export.json&gt; [--workers=N] [--checkpoint=FILE]
+ * sync &lt;config.properties&gt; &lt;checkpoint&gt; [--workers=N] [--report=FILE]
+ * reconcile &lt;config.properties&gt; &lt;links.csv&gt; [--workers=N] [--report=FILE]
+ * reopen|close &lt;config.properties&gt; &lt;requestIds.txt&gt; [--workers=N]
+ * </pre>
+ *
+ * The properties file holds the plugin configuration (same keys as in SSC), the "username" and "password"
+ * to connect with (the password may also be passed in the DIMCM_PASSWORD environment variable),
+ * default bug parameters as "param.&lt;name&gt;" and optional "template.title"/"template.description"
+ * texts with ${column} placeholders. Export columns named like a bug parameter override the defaults.
+ *
+ * Requests are filed through the same code path as bugs filed from SSC. As soon as its request has been
+ * filed, every row is appended to the checkpoint file ("rowKey TAB requestId"), marked as undelegated
+ * ("rowKey TAB requestId TAB undelegated") if the request still has to be delegated to its owner. Once
+ * delegated, the row is appended again without the mark. A run never files checkpointed rows again, it
+ * only delegates the requests still marked, so an interrupted run continues where it stopped. If the
+ * plugin groups issues, the rows of a group are filed as one request titled after the group.
+ *
+ * State sync writes the status and resolution of every checkpointed request as CSV, with the change sets
+ * delivered against it as far as change set discovery has indexed them.
+ *
+ * Reconciliation reads bug links as CSV with requestId, status and resolution columns (the format of the
+ * sync report) and writes the missing and changed requests.
+ */
+final class DimCMBulkTool {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+    private static final String[] INSTANCE_ID_COLUMNS = {"issueInstanceId", "instanceId", "Instance ID"};
+    private static final String[] CATEGORY_COLUMNS = {"category", "issueName", "Category"};
+    private static final String[] FILE_COLUMNS = {"fileName", "primaryLocation", "File"};
+    private static final String DEFAULT_TITLE_TEMPLATE = "${issueName} in ${primaryLocation}";
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int MAX_SESSIONS = 32;
+    private static final int PROGRESS_INTERVAL = 100;
+    private static final int MAX_PRINTED_FAILURES = 20;
+    private static final String CHECKPOINT_UNDELEGATED = "undelegated";
+
+    private final DimCMBugTrackerPlugin plugin;
+    private final UserAuthenticationStore credentials;
+    private final Properties properties;
+    private final int workers;
+
+    private volatile int total;
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+
+    private DimCMBulkTool(Properties properties, int workers) {
+        this.properties = properties;
+        this.workers = workers;
+        final String username = properties.getProperty("username");
+        final String password = properties.getProperty("password", System.getenv("DIMCM_PASSWORD"));
+        this.credentials = new UserAuthenticationStore() {
+            @Override
+            public String getUserName() {
+                return username;
+            }
+
+            @Override
+            public String getPassword() {
+                return password;
+            }
+        };
+        Map<String, String> config = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            config.put(name, properties.getProperty(name));
+        }
+        // Request IDs are needed for the checkpoint, and the SSC instance may already own the event port
+        config.put(DIMCM_ASYNC_FILING_CONFIG_NAME, "false");
+        config.remove(DIMCM_EVENT_LISTENER_CONFIG_NAME);
+        // Workers share sessions, so thousands of workers on virtual threads do not mean thousands of logins
+        String poolSize = config.get(DIMCM_SESSION_POOL_SIZE_CONFIG_NAME);
+        int sessions = Math.min(workers, MAX_SESSIONS);
+        if (poolSize == null || poolSize.isEmpty() || Integer.parseInt(poolSize.trim()) < sessions) {
+            config.put(DIMCM_SESSION_POOL_SIZE_CONFIG_NAME, Integer.toString(sessions));
+        }
+        this.plugin = new DimCMBugTrackerPlugin();
+        plugin.setConfiguration(config);
+    }
+
+    // ========================================================================
+    // Filing
+    // ========================================================================
+
+    private int fileRequests(File export, File checkpoint) throws IOException, InterruptedException {
+        final List<Map<String, String>> rows = DimCMIssueExport.read(export);
+        final Set<String> undelegated = new HashSet<>();
+        final Map<String, String> filed = readCheckpoint(checkpoint, undelegated);
+        System.out.println("Read " + rows.size() + " issues from " + export + ", " + filed.size() + " already filed");
+
+        final long start = System.currentTimeMillis();
+        // Owners are assigned after filing, grouped so that identical delegations share their work
+        final List<DimCMClient.Delegation> delegations = Collections.synchronizedList(new ArrayList<>());
+        final Map<String, List<String>> keysByRequest = new ConcurrentHashMap<>();
+        final Map<String, Map<String, String>> pending = new LinkedHashMap<>();
+        // Rows of requests filed by an earlier run that stopped before delegating them, by request
+        final Map<String, List<String>> notDelegated = new LinkedHashMap<>();
+        final Map<String, Map<String, String>> rowsByKey = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            final List<String> instanceIds = getInstanceIds(rows.get(i));
+            final String key = instanceIds.isEmpty() ? "row:" + (i + 1) : String.join(",", instanceIds);
+            if (!filed.containsKey(key)) {
+                pending.put(key, rows.get(i));
+                continue;
+            }
+            skipped.incrementAndGet();
+            if (undelegated.contains(key)) {
+                notDelegated.computeIfAbsent(filed.get(key), r -> new ArrayList<>()).add(key);
+                rowsByKey.put(key, rows.get(i));
+            }
+        }
+        final DimCMIssueGrouper grouper = plugin.getIssueGrouper();
+        final Map<String, List<String>> groups = DimCMIssueGrouper.group(pending.keySet().iterator(),
+                grouper.isEnabled() ? rowKey -> getGroupKey(grouper, pending.get(rowKey)) : rowKey -> rowKey);
+        if (grouper.isEnabled()) {
+            System.out.println("Filing " + pending.size() + " issues as " + groups.size() + " grouped requests");
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(checkpoint, true), StandardCharsets.UTF_8)) {
+            if (!isTerminated(checkpoint)) {
+                // Do not continue a line torn by a crash
+                out.write("\n");
+            }
+            for (Map.Entry<String, List<String>> e : notDelegated.entrySet()) {
+                try {
+                    // The owner of a group request is that of its first row, see getGroupParams
+                    final DimCMClient.Delegation delegation = plugin.getOwnerDelegation(e.getKey(),
+                            getBugParams(rowsByKey.get(e.getValue().get(0))));
+                    if (delegation != null) {
+                        delegations.add(delegation);
+                        keysByRequest.put(e.getKey(), e.getValue());
+                    } else {
+                        writeCheckpoint(out, e.getValue(), e.getKey(), false);
+                    }
+                } catch (RuntimeException ex) {
+                    for (String key : e.getValue()) {
+                        failures.put(key, "Filed as " + e.getKey() + " but not delegated: " + ex.getMessage());
+                    }
+                }
+            }
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (final Map.Entry<String, List<String>> group : groups.entrySet()) {
+                final List<String> rowKeys = group.getValue();
+                tasks.add(() -> {
+                    try {
+                        final List<DimCMClient.Delegation> deferred = new ArrayList<>();
+                        Bug bug;
+                        if (grouper.isEnabled()) {
+                            bug = plugin.fileIssueGroup(group.getKey(), getGroupParams(grouper, rowKeys, pending),
+                                    getInstanceIds(rowKeys, pending), credentials, deferred);
+                        } else {
+                            bug = plugin.fileBugForIssues(getBugParams(pending.get(rowKeys.get(0))),
+                                    getInstanceIds(pending.get(rowKeys.get(0))), credentials, deferred);
+                        }
+                        keysByRequest.computeIfAbsent(bug.getBugId(), r -> Collections.synchronizedList(new ArrayList<>()))
+                                .addAll(rowKeys);
+                        writeCheckpoint(out, rowKeys, bug.getBugId(), !deferred.isEmpty());
+                        delegations.addAll(deferred);
+                    } catch (RuntimeException | IOException e) {
+                        for (String key : rowKeys) {
+                            failures.put(key, String.valueOf(e.getMessage()));
+                        }
+                    }
+                    progress(start);
+                    return null;
+                });
+            }
+            runAll(tasks);
+            if (!delegations.isEmpty()) {
+                System.out.println("Delegating " + delegations.size() + " requests to their owners");
+                final List<DimCMClient.DelegationResult> results = plugin.delegateBugs(delegations, credentials, workers);
+                for (DimCMClient.DelegationResult result : results) {
+                    final List<String> keys = keysByRequest.get(result.requestId);
+                    if (result.isSuccess()) {
+                        if (keys != null) {
+                            writeCheckpoint(out, keys, result.requestId, false);
+                        }
+                    } else {
+                        // Left marked as undelegated: the next run delegates it again
+                        final String message = "Filed as " + result.requestId + " but not delegated: " + result.error;
+                        for (String key : keys == null ? Collections.singletonList(result.requestId) : keys) {
+                            failures.put(key, message);
+                        }
+                    }
+                }
+            }
+        }
+        return report("Filed", start, failureFile(checkpoint));
+    }
+
+    /**
+     * Appends the rows of a request to the checkpoint and flushes it, so that they are not filed again
+     * after a crash.
+     */
+    private static void writeCheckpoint(Writer out, List<String> rowKeys, String requestId, boolean undelegated)
+            throws IOException {
+        synchronized (out) {
+            for (String key : rowKeys) {
+                out.write(key + "\t" + requestId + (undelegated ? "\t" + CHECKPOINT_UNDELEGATED : "") + "\n");
+            }
+            out.flush();
+        }
+    }
+
+    private Map<String, String> getBugParams(Map<String, String> row) {
+        Map<String, String> params = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("param.")) {
+                params.put(name.substring("param.".length()), properties.getProperty(name));
+            }
+        }
+        for (String name : new String[]{PRODUCT_PARAM_NAME, PROJECT_PARAM_NAME, REQ_TYPE_PARAM_NAME, TITLE_PARAM_NAME,
+                DESCRIPTION_PARAM_NAME, SEVERITY_PARAM_NAME, OWNER_PARAM_NAME, OWNER_CAPABILITY_PARAM_NAME,
+                PARTS_PARAM_NAME, ADDITIONAL_FIELDS_PARAM_NAME}) {
+            String value = row.get(name);
+            if (value != null && !value.isEmpty()) {
+                params.put(name, value);
+            }
+        }
+        if (!params.containsKey(TITLE_PARAM_NAME)) {
+            params.put(TITLE_PARAM_NAME, expand(properties.getProperty("template.title", DEFAULT_TITLE_TEMPLATE), row));
+        }
+        if (!params.containsKey(DESCRIPTION_PARAM_NAME)) {
+            String template = properties.getProperty("template.description");
+            params.put(DESCRIPTION_PARAM_NAME, template != null ? expand(template, row) : describe(row));
+        }
+        return params;
+    }
+
+    private String getGroupKey(DimCMIssueGrouper grouper, Map<String, String> row) {
+        final Map<String, String> params = getBugParams(row);
+        return grouper.getKey(params, grouper.getValues(params, getColumn(row, CATEGORY_COLUMNS), getColumn(row, FILE_COLUMNS)));
+    }
+
+    /**
+     * Returns the bug parameters of the first issue of a group, with a title for the group and the
+     * descriptions of all of its issues.
+     */
+    private Map<String, String> getGroupParams(DimCMIssueGrouper grouper, List<String> rowKeys,
+                                               Map<String, Map<String, String>> rows) {
+        final Map<String, String> first = rows.get(rowKeys.get(0));
+        final Map<String, String> params = getBugParams(first);
+        params.put(TITLE_PARAM_NAME, grouper.getSummary(grouper.getValues(params, getColumn(first, CATEGORY_COLUMNS),
+                getColumn(first, FILE_COLUMNS))));
+        if (rowKeys.size() > 1) {
+            StringBuilder description = new StringBuilder();
+            for (String rowKey : rowKeys) {
+                description.append(getBugParams(rows.get(rowKey)).get(DESCRIPTION_PARAM_NAME)).append("\n\n");
+            }
+            params.put(DESCRIPTION_PARAM_NAME, description.toString().trim());
+        }
+        return params;
+    }
+
+    private static List<String> getInstanceIds(List<String> rowKeys, Map<String, Map<String, String>> rows) {
+        List<String> res = new ArrayList<>();
+        for (String rowKey : rowKeys) {
+            res.addAll(getInstanceIds(rows.get(rowKey)));
+        }
+        return res;
+    }
+
+    private static String getColumn(Map<String, String> row, String[] columns) {
+        for (String column : columns) {
+            String value = row.get(column);
+            if (value != null && !value.trim().isEmpty()) {
+                return value.trim();
+            }
+        }
+        return null;
+    }
+
+    private static List<String> getInstanceIds(Map<String, String> row) {
+        for (String column : INSTANCE_ID_COLUMNS) {
+            String value = row.get(column);
+            if (value != null && !value.trim().isEmpty()) {
+                return Collections.singletonList(value.trim());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static String expand(String template, Map<String, String> row) {
+        Matcher m = PLACEHOLDER.matcher(template);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            String value = row.get(m.group(1));
+            m.appendReplacement(sb, Matcher.quoteReplacement(value == null ? "" : value));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static String describe(Map<String, String> row) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e : row.entrySet()) {
+            sb.append(e.getKey()).append(": ").append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // ========================================================================
+    // State sync
+    // ========================================================================
+
+    private int syncStates(File checkpoint, File reportFile) throws IOException, InterruptedException {
+        final Set<String> requestIds = new TreeSet<>(readCheckpoint(checkpoint, null).values());
+        System.out.println("Syncing " + requestIds.size() + " requests");
+
+        final long start = System.currentTimeMillis();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8)) {
+            out.write("requestId,status,resolution,changesets\n");
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (final String requestId : requestIds) {
+                tasks.add(() -> {
+                    try {
+                        Bug bug = plugin.fetchBugDetails(requestId, credentials);
+                        synchronized (out) {
+                            out.write(csv(requestId) + "," + csv(bug.getBugStatus()) + "," + csv(bug.getBugResolution()) + ","
+                                    + csv(String.join(" ", plugin.getChangesetsForRequest(requestId))) + "\n");
+                        }
+                    } catch (RuntimeException | IOException e) {
+                        failures.put(requestId, String.valueOf(e.getMessage()));
+                    }
+                    progress(start);
+                    return null;
+                });
+            }
+            runAll(tasks);
+        }
+        System.out.println("States written to " + reportFile);
+        return report("Synced", start, failureFile(checkpoint));
+    }
+
+    // ========================================================================
+    // Reconciliation
+    // ========================================================================
+
+    private int reconcile(File links, File reportFile) throws IOException, InterruptedException {
+        final DimCMReconciler reconciler = plugin.createReconciler(credentials, workers);
+        final Map<DimCMReconciler.Change, Integer> counts = new EnumMap<>(DimCMReconciler.Change.class);
+        final long start = System.currentTimeMillis();
+        int checked;
+        try (Reader in = new InputStreamReader(new FileInputStream(links), StandardCharsets.UTF_8);
+             final Writer out = new OutputStreamWriter(new FileOutputStream(reportFile), StandardCharsets.UTF_8)) {
+            final Iterator<Map<String, String>> rows = DimCMIssueExport.iterateCsv(in);
+            out.write("requestId,change,sscStatus,sscResolution,status,resolution\n");
+            checked = reconciler.reconcile(new Iterator<DimCMReconciler.Link>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
+
+                @Override
+                public DimCMReconciler.Link next() {
+                    Map<String, String> row = rows.next();
+                    return new DimCMReconciler.Link(row.get("requestId"), row.get("status"), row.get("resolution"));
+                }
+            }, diff -> {
+                counts.merge(diff.change, 1, Integer::sum);
+                try {
+                    out.write(csv(diff.link.requestId) + "," + diff.change + "," + csv(diff.link.state) + ","
+                            + csv(diff.link.resolution) + "," + csv(diff.state) + "," + csv(diff.resolution) + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        System.out.println("Checked: " + checked + ", differences: " + counts + ", time: "
+                + (System.currentTimeMillis() - start) / 1000 + "s, throughput: " + throughput(checked, start) + "/s");
+        System.out.println("Differences written to " + reportFile);
+        return 0;
+    }
+
+    // ========================================================================
+    // Bulk reopen / close
+    // ========================================================================
+
+    private int transition(File idFile, boolean reopen) throws IOException, InterruptedException {
+        List<String> requestIds = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(idFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    requestIds.add(line.trim());
+                }
+            }
+        }
+        final long start = System.currentTimeMillis();
+        List<DimCMBulkTransition.Result> results = reopen
+                ? plugin.reOpenBugs(requestIds, credentials, workers)
+                : plugin.closeBugs(requestIds, credentials, workers);
+        for (DimCMBulkTransition.Result result : results) {
+            done.incrementAndGet();
+            if (!result.isSuccess()) {
+                failures.put(result.requestId, result.error);
+            }
+        }
+        return report(reopen ? "Reopened" : "Closed", start, new File(idFile.getPath() + ".failures"));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.contains(",") || value.contains("\"") || value.contains("\n")
+                ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    // ========================================================================
+    // Helpers
+    // ========================================================================
+
+    private void runAll(List<Callable<Void>> tasks) throws InterruptedException {
+        total = tasks.size();
+        ExecutorService executor = plugin.getExecutors().newFixedPool("DimCM-Bulk", workers);
+        try {
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void progress(long start) {
+        int n = done.incrementAndGet();
+        if (n % PROGRESS_INTERVAL == 0) {
+            System.out.println(n + "/" + total + " (" + throughput(n, start) + "/s, " + failures.size() + " failed)");
+        }
+    }
+
+    private int report(String action, long start, File failureFile) throws IOException {
+        long elapsed = System.currentTimeMillis() - start;
+        int succeeded = done.get() - failures.size();
+        System.out.println(action + ": " + succeeded + ", skipped: " + skipped.get() + ", failed: " + failures.size()
+                + ", time: " + elapsed / 1000 + "s, throughput: " + throughput(done.get(), start) + "/s");
+        if (failures.isEmpty()) {
+            return 0;
+        }
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(failureFile), StandardCharsets.UTF_8)) {
+            int printed = 0;
+            for (Map.Entry<String, String> e : failures.entrySet()) {
+                out.write(e.getKey() + "\t" + e.getValue() + "\n");
+                if (printed++ < MAX_PRINTED_FAILURES) {
+                    System.out.println("  " + e.getKey() + ": " + e.getValue());
+                }
+            }
+        }
+        System.out.println("All failures written to " + failureFile);
+        return 1;
+    }
+
+    private static String throughput(int count, long start) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return String.format(Locale.ROOT, "%.1f", count * 1000.0 / elapsed);
+    }
+
+    private static boolean isTerminated(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() == 0) {
+                return true;
+            }
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * Reads the request ID per row key. The last line of a row wins.
+     *
+     * @param undelegated receives the keys of rows whose request has not been delegated yet, may be null
+     */
+    private static Map<String, String> readCheckpoint(File checkpoint, Set<String> undelegated) throws IOException {
+        Map<String, String> res = new LinkedHashMap<>();
+        if (!checkpoint.exists()) {
+            return res;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpoint), StandardCharsets.UTF_8))) {
+            final boolean terminated = isTerminated(checkpoint);
+            String line = in.readLine();
+            while (line != null) {
+                final String next = in.readLine();
+                String[] fields = line.split("\t");
+                // The last line may have been torn by a crash, and lines without a request ID are incomplete
+                final boolean complete = next != null || terminated;
+                line = next;
+                if (!complete || fields.length < 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+                    continue;
+                }
+                res.put(fields[0], fields[1]);
+                if (undelegated != null) {
+                    if (fields.length > 2 && CHECKPOINT_UNDELEGATED.equals(fields[2])) {
+                        undelegated.add(fields[0]);
+                    } else {
+                        undelegated.remove(fields[0]);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    private static File failureFile(File checkpoint) {
+        return new File(checkpoint.getPath() + ".failures");
+    }
+
+    private static Properties loadProperties(File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    static int run(final String[] args) throws IOException, InterruptedException {
+        List<String> positional = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.size() != 3 || !Arrays.asList("file", "sync", "reconcile", "reopen", "close").contains(positional.get(0))) {
+            System.err.println("Usage:");
+            System.err.println("  file <config.properties> <export.csv|export.json> [--workers=N] [--checkpoint=FILE]");
+            System.err.println("  sync <config.properties> <checkpoint> [--workers=N] [--report=FILE]");
+            System.err.println("  reconcile <config.properties> <links.csv> [--workers=N] [--report=FILE]");
+            System.err.println("  reopen|close <config.properties> <requestIds.txt> [--workers=N]");
+            return 2;
+        }
+        int workers = options.containsKey("workers") ? Integer.parseInt(options.get("workers")) : DEFAULT_WORKERS;
+        DimCMBulkTool tool = new DimCMBulkTool(loadProperties(new File(positional.get(1))), Math.max(1, workers));
+        File input = new File(positional.get(2));
+        if ("file".equals(positional.get(0))) {
+            File checkpoint = new File(options.getOrDefault("checkpoint", input.getPath() + ".checkpoint"));
+            return tool.fileRequests(input, checkpoint);
+        }
+        if ("reopen".equals(positional.get(0)) || "close".equals(positional.get(0))) {
+            return tool.transition(input, "reopen".equals(positional.get(0)));
+        }
+        if ("reconcile".equals(positional.get(0))) {
+            return tool.reconcile(input, new File(options.getOrDefault("report", input.getPath() + ".diff.csv")));
+        }
+        return tool.syncStates(input, new File(options.getOrDefault("report", input.getPath() + ".states.csv")));
+    }
+}
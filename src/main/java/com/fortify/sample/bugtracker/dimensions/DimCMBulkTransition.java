@@ -0,0 +1,94 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Actions many requests to a target state in parallel, each along the shortest path of its lifecycle.
+ * A failing request does not stop the others; the outcome is reported per request.
+ */
+final class DimCMBulkTransition {
+    private static final Log LOG = LogFactory.getLog(DimCMBulkTransition.class);
+
+    static final class Result {
+        final String requestId;
+        /** States the request was actioned to, up to the failing step if there is an error; null if none */
+        final List<String> path;
+        final String error;
+
+        Result(String requestId, List<String> path, String error) {
+            this.requestId = requestId;
+            this.path = path;
+            this.error = error;
+        }
+
+        boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return requestId + (isSuccess() ? " " + path : ": " + error);
+        }
+    }
+
+    private final Function<String, DimCMClient> connector;
+    private final int threads;
+    private final DimCMExecutors executors;
+
+    DimCMBulkTransition(Function<String, DimCMClient> connector, int threads, DimCMExecutors executors) {
+        this.connector = connector;
+        this.threads = threads;
+        this.executors = executors;
+    }
+
+    /**
+     * @return one result per request, in the order of the given IDs
+     */
+    List<Result> apply(List<String> requestIds, final String targetState) throws InterruptedException {
+        final ExecutorService executor = executors.newFixedPool("DimCM-Transition", Math.min(threads, requestIds.size()));
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (final String requestId : requestIds) {
+                futures.add(executor.submit(() -> apply(requestId, targetState)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    // apply(String, String) reports its own failures
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Result apply(String requestId, String targetState) {
+        try {
+            DimCMClient cmClient = connector.apply(requestId);
+            DimCMRequestView request = cmClient.fetchRequest(requestId, DimCMProjection.LIFECYCLE_STATE);
+            if (request == null) {
+                return new Result(requestId, null, "Dimensions CM Request " + requestId + " does not exist");
+            }
+            List<String> path = cmClient.actionRequestTo(request, targetState);
+            return new Result(requestId, path, null);
+        } catch (DimCMClient.PartialActionException e) {
+            LOG.debug(e.getMessage());
+            return new Result(requestId, e.getActioned(), e.getMessage());
+        } catch (RuntimeException e) {
+            LOG.debug("Could not action " + requestId + " to " + targetState + ": " + e.getMessage());
+            return new Result(requestId, null, String.valueOf(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+/**
+ * Storage beneath the plugin's caches of Dimensions CM metadata, catalogues and request states.
+ *
+ * {@link DimCMInProcessCacheStore} keeps the entries of one plugin instance in memory, snapshotted to a
+ * file so that they survive a restart.
+ * {@link DimCMSharedCacheStore} keeps them in a directory shared by all SSC nodes, so that what one node
+ * loaded from Dimensions CM is reused by the others.
+ *
+ * Values are Strings, Integers or lists of Strings. Expiry is left to the caller, based on
+ * {@link Entry#loadedAt}.
+ */
+interface DimCMCacheStore {
+
+    final class Entry {
+        final Object value;
+        final long loadedAt;
+        /** Changes whenever the entry is written, also by another node */
+        final long version;
+
+        Entry(Object value, long loadedAt, long version) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.version = version;
+        }
+    }
+
+    /**
+     * @return the entry, or null if there is none
+     */
+    Entry get(String key);
+
+    void put(String key, Object value, long loadedAt);
+
+    /**
+     * Removes an entry, for all users of the store.
+     *
+     * @return true if there was an entry
+     */
+    boolean remove(String key);
+
+    /**
+     * Removes an entry only if it still has the given version, i.e. nobody wrote it since it was read.
+     *
+     * @return true if the entry was removed
+     */
+    boolean remove(String key, long version);
+
+    /**
+     * Removes the entries written before the given time, for all users of the store.
+     *
+     * @return the number of entries removed
+     */
+    int removeOlderThan(long time);
+
+    void clear();
+
+    /**
+     * Returns true if the entries are seen by other plugin instances and outlive this one.
+     */
+    boolean isShared();
+
+    /**
+     * Persists recent changes, if the store keeps its entries beyond the plugin instance at all. May skip
+     * doing so if it did shortly before.
+     */
+    void flush();
+
+    /**
+     * Persists all changes, if the store keeps its entries beyond the plugin instance at all. Called when the
+     * store is replaced or the plugin stops.
+     */
+    void close();
+}
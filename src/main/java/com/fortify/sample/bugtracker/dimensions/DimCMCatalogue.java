@@ -0,0 +1,229 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, compact list of catalogue names (products, parts, projects, users, request types) as kept
+ * in the metadata cache.
+ *
+ * Instead of one String object per entry the names are stored as UTF-8 in a single byte array. Qualified
+ * names such as "PRODUCT:PART.A;1" are split at their last ':' and the prefixes kept once, in a table
+ * shared by all catalogues. Entries are decoded on access, which suits choice lists that are read once
+ * per request. Lookups compare the encoded entries and decode none of them, except for case insensitive
+ * lookups of names with non-ASCII characters.
+ */
+final class DimCMCatalogue extends AbstractList<String> implements RandomAccess {
+
+    private static final DimCMCatalogue EMPTY = new DimCMCatalogue(new String[0], null, new int[1], new byte[0]);
+
+    // Product prefixes repeat across parts, projects and request types of all products
+    private static final Map<String, String> SHARED_PREFIXES = new ConcurrentHashMap<>();
+    private static final int MAX_SHARED_PREFIXES = 10000;
+
+    private final String[] prefixes;
+    private final int[] prefixIndex;
+    private final int[] offsets;
+    private final byte[] data;
+
+    private DimCMCatalogue(String[] prefixes, int[] prefixIndex, int[] offsets, byte[] data) {
+        this.prefixes = prefixes;
+        this.prefixIndex = prefixIndex;
+        this.offsets = offsets;
+        this.data = data;
+    }
+
+    static DimCMCatalogue of(Collection<String> names) {
+        if (names instanceof DimCMCatalogue) {
+            return (DimCMCatalogue) names;
+        }
+        if (names.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<String, Integer> prefixIds = new HashMap<>();
+        final int[] prefixIndex = new int[names.size()];
+        final int[] offsets = new int[names.size() + 1];
+        final byte[][] suffixes = new byte[names.size()][];
+        int i = 0;
+        int size = 0;
+        for (String name : names) {
+            int pos = name.lastIndexOf(':');
+            String prefix = pos < 0 ? "" : name.substring(0, pos + 1);
+            prefixIndex[i] = prefixIds.computeIfAbsent(prefix, p -> prefixIds.size());
+            suffixes[i] = name.substring(pos + 1).getBytes(StandardCharsets.UTF_8);
+            size += suffixes[i].length;
+            i++;
+        }
+        final byte[] data = new byte[size];
+        for (i = 0; i < suffixes.length; i++) {
+            System.arraycopy(suffixes[i], 0, data, offsets[i], suffixes[i].length);
+            offsets[i + 1] = offsets[i] + suffixes[i].length;
+        }
+        final String[] prefixes = new String[prefixIds.size()];
+        for (Map.Entry<String, Integer> e : prefixIds.entrySet()) {
+            prefixes[e.getValue()] = share(e.getKey());
+        }
+        // Lists of unqualified names need no index
+        return new DimCMCatalogue(prefixes, prefixes.length == 1 ? null : prefixIndex, offsets, data);
+    }
+
+    private static String share(String prefix) {
+        String shared = SHARED_PREFIXES.get(prefix);
+        if (shared != null) {
+            return shared;
+        }
+        if (SHARED_PREFIXES.size() >= MAX_SHARED_PREFIXES) {
+            return prefix;
+        }
+        shared = SHARED_PREFIXES.putIfAbsent(prefix, prefix);
+        return shared != null ? shared : prefix;
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        final String suffix = new String(data, offsets[index], offsets[index + 1] - offsets[index], StandardCharsets.UTF_8);
+        final String prefix = prefixes[prefixIndex == null ? 0 : prefixIndex[index]];
+        return prefix.isEmpty() ? suffix : prefix.concat(suffix);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        final String name = (String) o;
+        final int pos = name.lastIndexOf(':');
+        final int prefix = findPrefix(name.substring(0, pos + 1));
+        if (prefix < 0) {
+            return -1;
+        }
+        final byte[] suffix = name.substring(pos + 1).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < size(); i++) {
+            if ((prefixIndex == null || prefixIndex[i] == prefix) && suffixEquals(i, suffix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        final int first = indexOf(o);
+        if (first < 0) {
+            return -1;
+        }
+        final byte[] suffix = Arrays.copyOfRange(data, offsets[first], offsets[first + 1]);
+        for (int i = size() - 1; i > first; i--) {
+            if ((prefixIndex == null || prefixIndex[i] == prefixIndex[first]) && suffixEquals(i, suffix)) {
+                return i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns true if the catalogue contains the name, ignoring case as {@link String#equalsIgnoreCase} does.
+     */
+    boolean containsIgnoreCase(String name) {
+        // Case never changes a ':', so the name splits where a matching entry does
+        final int pos = name.lastIndexOf(':');
+        final String prefix = name.substring(0, pos + 1);
+        final String suffix = name.substring(pos + 1);
+        final boolean[] prefixMatches = new boolean[prefixes.length];
+        boolean anyPrefix = false;
+        for (int p = 0; p < prefixes.length; p++) {
+            prefixMatches[p] = prefixes[p].equalsIgnoreCase(prefix);
+            anyPrefix |= prefixMatches[p];
+        }
+        if (!anyPrefix) {
+            return false;
+        }
+        final boolean ascii = isAscii(suffix);
+        for (int i = 0; i < size(); i++) {
+            if (prefixMatches[prefixIndex == null ? 0 : prefixIndex[i]] && suffixEqualsIgnoreCase(i, suffix, ascii)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findPrefix(String prefix) {
+        for (int p = 0; p < prefixes.length; p++) {
+            if (prefixes[p].equals(prefix)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private boolean suffixEquals(int index, byte[] suffix) {
+        final int start = offsets[index];
+        if (offsets[index + 1] - start != suffix.length) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (data[start + i] != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean suffixEqualsIgnoreCase(int index, String suffix, boolean ascii) {
+        final int start = offsets[index];
+        final int length = offsets[index + 1] - start;
+        if (ascii && length < suffix.length()) {
+            // Every character takes at least one byte
+            return false;
+        }
+        if (ascii && length == suffix.length()) {
+            int i = 0;
+            while (i < length && data[start + i] >= 0) {
+                if (toLowerAscii(data[start + i]) != toLowerAscii(suffix.charAt(i))) {
+                    return false;
+                }
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+        }
+        // Non-ASCII characters may match in case insensitive ways of their own
+        return new String(data, start, length, StandardCharsets.UTF_8).equalsIgnoreCase(suffix);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
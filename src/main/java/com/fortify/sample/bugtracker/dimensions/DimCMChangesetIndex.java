@@ -0,0 +1,305 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.DimensionsChangeSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local index of Dimensions CM change sets per stream and of the requests they were delivered against.
+ *
+ * Streams are scanned incrementally from a persisted per stream watermark (the date of the newest change set
+ * seen), page by page, with several streams scanned in parallel on their own connections. Only the newest
+ * change sets of each stream are kept, up to a maximum number per stream.
+ */
+final class DimCMChangesetIndex {
+    private static final Log LOG = LogFactory.getLog(DimCMChangesetIndex.class);
+
+    private static final int INDEX_MAGIC = 0x44434d58; // "DCMX"
+    private static final int INDEX_VERSION = 1;
+
+    static final class Changeset {
+        final long uid;
+        final long date;
+        final String[] requests;
+
+        Changeset(long uid, long date, String[] requests) {
+            this.uid = uid;
+            this.date = date;
+            this.requests = requests;
+        }
+    }
+
+    private final File indexFile;
+    private final int pageSize;
+    private final int threads;
+    private final int maxPerStream;
+    private final DimCMExecutors executors;
+
+    private final Map<String, Long> watermarks = new HashMap<>();
+    private final Map<String, NavigableMap<Long, Changeset>> byStream = new HashMap<>();
+    private final Map<String, NavigableSet<Long>> byRequest = new HashMap<>();
+    private boolean loaded;
+
+    DimCMChangesetIndex(File indexFile, int pageSize, int threads, int maxPerStream, DimCMExecutors executors) {
+        this.indexFile = indexFile;
+        this.pageSize = pageSize;
+        this.threads = threads;
+        this.maxPerStream = maxPerStream;
+        this.executors = executors;
+    }
+
+    /**
+     * Scans the given streams for change sets newer than their watermark.
+     *
+     * @param connector creates a connected client for each scanning thread
+     * @param streams   full PRODUCT:STREAM specifications
+     */
+    void update(Supplier<DimCMClient> connector, Collection<String> streams) {
+        ensureLoaded();
+        if (streams.isEmpty()) {
+            return;
+        }
+        final Queue<String> queue = new ConcurrentLinkedQueue<>(streams);
+        final int workers = Math.min(threads, streams.size());
+        ExecutorService executor = executors.newFixedPool("DimCM-Changeset-Scanner", workers);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                tasks.add(() -> {
+                    DimCMClient cmClient = connector.get();
+                    String stream;
+                    while ((stream = queue.poll()) != null) {
+                        try {
+                            scan(cmClient, stream);
+                        } catch (RuntimeException e) {
+                            LOG.warn("Could not scan change sets of " + stream + ": " + e.getMessage());
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning change sets", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not scan change sets: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        save();
+    }
+
+    /**
+     * Parses a bound of a change set range, as given by SSC.
+     *
+     * @param ifBlank the bound to use if none is given, leaving that end of the range open
+     * @throws IllegalArgumentException if the bound is not a change set ID
+     */
+    static long parseBound(String id, long ifBlank) {
+        if (id == null || id.trim().isEmpty()) {
+            return ifBlank;
+        }
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + id.trim() + "' is not a Dimensions CM change set ID");
+        }
+    }
+
+    /**
+     * Returns the IDs of the change sets of the given streams after {@code from} up to and including {@code to}.
+     */
+    synchronized List<String> getChangesetsBetween(Collection<String> streams, long from, long to) {
+        ensureLoaded();
+        TreeSet<Long> res = new TreeSet<>();
+        for (String stream : streams) {
+            NavigableMap<Long, Changeset> changesets = byStream.get(stream.toUpperCase());
+            if (changesets != null) {
+                res.addAll(changesets.subMap(from, false, to, true).keySet());
+            }
+        }
+        List<String> ids = new ArrayList<>(res.size());
+        for (Long uid : res) {
+            ids.add(String.valueOf(uid));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the IDs of the indexed change sets delivered against a request, oldest first.
+     */
+    synchronized List<String> getChangesetsForRequest(String requestId) {
+        ensureLoaded();
+        NavigableSet<Long> uids = byRequest.get(requestId);
+        List<String> ids = new ArrayList<>();
+        if (uids != null) {
+            for (Long uid : uids) {
+                ids.add(String.valueOf(uid));
+            }
+        }
+        return ids;
+    }
+
+    private void scan(DimCMClient cmClient, String stream) {
+        String key = stream.toUpperCase();
+        Long watermark;
+        synchronized (this) {
+            watermark = watermarks.get(key);
+        }
+        int start = 1;
+        int found = 0;
+        while (true) {
+            List<DimensionsChangeSet> page = cmClient.queryChangeSets(key, watermark == null ? null : new Date(watermark), start, pageSize);
+            List<Changeset> changesets = new ArrayList<>(page.size());
+            for (DimensionsChangeSet cs : page) {
+                List<String> requests = cs.getRequestNames();
+                changesets.add(new Changeset(cs.getUid(), cs.getDate() == null ? 0 : cs.getDate().getTime(),
+                        requests == null ? new String[0] : requests.toArray(new String[0])));
+            }
+            add(key, changesets);
+            found += page.size();
+            if (page.size() < pageSize) {
+                break;
+            }
+            start += pageSize;
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Scanned " + found + " change sets of " + key);
+        }
+    }
+
+    private synchronized void add(String stream, List<Changeset> changesets) {
+        NavigableMap<Long, Changeset> streamChangesets = byStream.computeIfAbsent(stream, s -> new TreeMap<>());
+        long watermark = watermarks.containsKey(stream) ? watermarks.get(stream) : Long.MIN_VALUE;
+        for (Changeset cs : changesets) {
+            streamChangesets.put(cs.uid, cs);
+            for (String request : cs.requests) {
+                byRequest.computeIfAbsent(request, r -> new TreeSet<>()).add(cs.uid);
+            }
+            watermark = Math.max(watermark, cs.date);
+        }
+        if (watermark != Long.MIN_VALUE) {
+            watermarks.put(stream, watermark);
+        }
+        // The watermark is kept, so dropped change sets are not fetched again
+        while (streamChangesets.size() > maxPerStream) {
+            Changeset oldest = streamChangesets.pollFirstEntry().getValue();
+            if (isIndexed(oldest.uid)) {
+                // Also delivered to another stream
+                continue;
+            }
+            for (String request : oldest.requests) {
+                NavigableSet<Long> uids = byRequest.get(request);
+                if (uids != null && uids.remove(oldest.uid) && uids.isEmpty()) {
+                    byRequest.remove(request);
+                }
+            }
+        }
+    }
+
+    private boolean isIndexed(long uid) {
+        for (NavigableMap<Long, Changeset> changesets : byStream.values()) {
+            if (changesets.containsKey(uid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ========================================================================
+    // Persistence
+    // ========================================================================
+
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (indexFile == null || !indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(indexFile))))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                LOG.info("Discarding change set index with unsupported format: " + indexFile);
+                return;
+            }
+            int streams = in.readInt();
+            for (int i = 0; i < streams; i++) {
+                String stream = in.readUTF();
+                boolean hasWatermark = in.readBoolean();
+                long watermark = in.readLong();
+                int count = in.readInt();
+                List<Changeset> changesets = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    long uid = in.readLong();
+                    long date = in.readLong();
+                    String[] requests = new String[in.readInt()];
+                    for (int k = 0; k < requests.length; k++) {
+                        requests[k] = in.readUTF();
+                    }
+                    changesets.add(new Changeset(uid, date, requests));
+                }
+                add(stream, changesets);
+                if (hasWatermark) {
+                    watermarks.put(stream, watermark);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring unreadable change set index " + indexFile + ": " + e.getMessage());
+            watermarks.clear();
+            byStream.clear();
+            byRequest.clear();
+        }
+    }
+
+    private synchronized void save() {
+        if (indexFile == null) {
+            return;
+        }
+        File dir = indexFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warn("Could not create directory " + dir);
+            return;
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(byStream.size());
+            for (Map.Entry<String, NavigableMap<Long, Changeset>> e : byStream.entrySet()) {
+                Long watermark = watermarks.get(e.getKey());
+                out.writeUTF(e.getKey());
+                out.writeBoolean(watermark != null);
+                out.writeLong(watermark == null ? 0 : watermark);
+                out.writeInt(e.getValue().size());
+                for (Changeset cs : e.getValue().values()) {
+                    out.writeLong(cs.uid);
+                    out.writeLong(cs.date);
+                    out.writeInt(cs.requests.length);
+                    for (String request : cs.requests) {
+                        out.writeUTF(request);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write change set index " + indexFile + ": " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(indexFile) && (!indexFile.delete() || !tmp.renameTo(indexFile))) {
+            LOG.warn("Could not replace change set index " + indexFile);
+        }
+    }
+}
@@ -13,15 +13,21 @@ import merant.adm.exception.AdmObjectException;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.fortify.sample.bugtracker.dimensions.DimCMMetadataCache.Region;
+import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.DELEGATION_BATCH_SIZE;
 import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.DIMCM_SEVERITY_FIELD_CONFIG_NAME;
 
 public class DimCMClient {
@@ -36,7 +42,14 @@ public class DimCMClient {
 
     private static final String DIMCM_DEFAULT_LIFECYCLE = "LC_DM_STAGE";
 
-    private static final SimpleDateFormat DIMCM_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'kk:mm:ss.SSS'Z'");
+    static final char ROLE_ASSIGNMENT_SEPARATOR = '\t';
+
+    // Guarded by itself; the trailing Z is only correct because the format is in UTC
+    private static final SimpleDateFormat DIMCM_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+
+    static {
+        DIMCM_DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
 
     public enum GetOptions {
         PROJECTS_AND_STREAMS, STREAMS, PROJECTS
@@ -58,9 +71,63 @@ public class DimCMClient {
             throw new IllegalArgumentException("There is no such entity type as '" + type + "' !");
         }
     }
-    private DimensionsConnection connection;
+    private volatile DimensionsConnection connection;
+    private final DimCMMetadataCache cache;
+    private final DimCMSessionPool pool;
+    private final DimCMLatencyGuard guard;
+    private final DimCMExecutors executors;
+    private volatile DimCMSessionPool.Session session;
+    private DimCMTraffic traffic;
+
+    public DimCMClient() {
+        this(null, null, null, DimCMExecutors.PLATFORM);
+    }
+
+    DimCMClient(DimCMMetadataCache cache, DimCMSessionPool pool, DimCMLatencyGuard guard, DimCMExecutors executors) {
+        this.cache = cache;
+        this.pool = pool;
+        this.guard = guard;
+        this.executors = executors;
+    }
 
     public void connect(String username, String password, String dbName, String dbConn, String server) {
+        connection = openConnection(username, password, dbName, dbConn, server);
+    }
+
+    /**
+     * Closes the dedicated connection opened by {@link #connect}; pooled sessions stay open.
+     */
+    void disconnect() {
+        final DimensionsConnection conn = connection;
+        if (conn != null && session == null) {
+            connection = null;
+            conn.close();
+        }
+    }
+
+    /**
+     * Uses the least loaded session of the session pool instead of a dedicated connection.
+     */
+    void connectPooled() {
+        session = pool.acquire(null);
+        connection = session.connection;
+    }
+
+    /**
+     * Records all Dimensions API calls of this client, or answers them from a recording if replaying.
+     */
+    void setTraffic(DimCMTraffic traffic) {
+        this.traffic = traffic;
+    }
+
+    private DimensionsObjectFactory getObjectFactory(DimensionsConnection conn) {
+        if (traffic == null) {
+            return conn.getObjectFactory();
+        }
+        return traffic.wrap(traffic.isReplay() ? null : conn.getObjectFactory());
+    }
+
+    static DimensionsConnection openConnection(String username, String password, String dbName, String dbConn, String server) {
         try {
             InetAddress ia = InetAddress.getByName(server);
             if (!ia.isReachable(5000)) {
@@ -79,7 +146,7 @@ public class DimCMClient {
             details.setDbName(dbName);
             details.setDbConn(dbConn);
             details.setServer(server);
-            connection = DimensionsConnectionManager.getConnection(details);
+            return DimensionsConnectionManager.getConnection(details);
         } catch (LoginFailedException e) {
             if (e.getMessage() != null && e.getMessage().startsWith(DIMCM_AUTH_ERROR_CODE)) {
                 System.err.println(ERROR_STR_CREDS);
@@ -97,8 +164,11 @@ public class DimCMClient {
     }
 
     public List<String> getProducts() {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        List<Product> products = factory.getBaseDatabase().getProducts();
+        return cached(Region.PRODUCTS, null, this::loadProducts);
+    }
+
+    private List<String> loadProducts() {
+        List<Product> products = read("getProducts", factory -> factory.getBaseDatabase().getProducts());
 
         List<String> res = new ArrayList<String>();
         for (Product p : products) {
@@ -111,11 +181,14 @@ public class DimCMClient {
         return getProjectsStreams(productName, GetOptions.PROJECTS_AND_STREAMS);
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getProjectsStreams(String productName, GetOptions opts) {
-        productName = prepareDimCMParam(productName);
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        productShouldExist(factory, productName);
+        final String product = prepareDimCMParam(productName);
+        return cached(Region.PROJECTS, product + ":" + opts, () -> loadProjectsStreams(product, opts));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> loadProjectsStreams(String productName, GetOptions opts) {
+        productShouldExist(productName);
 
         Filter filter = new Filter();
         filter.criteria().add(new Filter.Criterion(SystemAttributes.PRODUCT_NAME, productName, Filter.Criterion.EQUALS));
@@ -131,7 +204,7 @@ public class DimCMClient {
                 break;
         }
 
-        List<Project> projects = factory.getProjects(filter);
+        List<Project> projects = read("getProjects", factory -> factory.getProjects(filter));
 
         List<String> res = new ArrayList<String>();
         for (Project proj : projects) {
@@ -144,23 +217,38 @@ public class DimCMClient {
     public List<Part> getDesignPartAsList(String productName, String partName) {
         if (partName.contains(":")) partName = partName.replace(productName+":","");
         if (partName.contains(".")) partName = partName.replace(".A;1", "");
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Product product = factory.getBaseDatabase().getProduct(productName);
-        Filter filter = new Filter();
-        List<Filter.Criterion> criteria = filter.criteria();
-        if (partName != null) {
-            criteria.add(new Filter.Criterion(SystemAttributes.OBJECT_ID, partName,
-                    Criterion.EQUALS));
+        final String partId = partName;
+        final String missingKey = productName + ":" + partId;
+        if (isMissing(Region.PARTS, missingKey)) {
+            return Collections.emptyList();
         }
-        return product.getParts(filter);
+        List<Part> parts = read("getParts", factory -> {
+            Product product = factory.getBaseDatabase().getProduct(productName);
+            Filter filter = new Filter();
+            List<Filter.Criterion> criteria = filter.criteria();
+            if (partId != null) {
+                criteria.add(new Filter.Criterion(SystemAttributes.OBJECT_ID, partId,
+                        Criterion.EQUALS));
+            }
+            return (List<Part>) product.getParts(filter);
+        });
+        if (parts == null || parts.isEmpty()) {
+            markMissing(Region.PARTS, missingKey);
+            return Collections.emptyList();
+        }
+        return parts;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getDesignParts(String productName) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Product product = factory.getBaseDatabase().getProduct(productName);
-        Filter filter = new Filter();
-        List<Part> parts = product.getParts(null);
+        return cached(Region.PARTS, productName, () -> loadDesignParts(productName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> loadDesignParts(String productName) {
+        List<Part> parts = read("getParts", factory -> {
+            Product product = factory.getBaseDatabase().getProduct(productName);
+            return (List<Part>) product.getParts(null);
+        });
 
         List<String> res = new ArrayList<String>();
         for (Part p : parts) {
@@ -169,11 +257,13 @@ public class DimCMClient {
         return res;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getReqTypes(String productName) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Product product = factory.getBaseDatabase().getProduct(productName);
-        Types reqTypes = product.getRequestTypes();
+        return cached(Region.REQUEST_TYPES, productName, () -> loadReqTypes(productName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> loadReqTypes(String productName) {
+        Types reqTypes = read("getRequestTypes", factory -> factory.getBaseDatabase().getProduct(productName).getRequestTypes());
 
         List<String> res = new ArrayList<String>();
         Iterator it = reqTypes.iterator();
@@ -184,10 +274,14 @@ public class DimCMClient {
         return res;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getFieldValues(String fieldName) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        List<AttributeDefinition> attributeDefinitions = factory.getBaseDatabase().getAttributeDefinitions(Request.class, AttributeType.SFSV);
+        return cached(Region.ATTRIBUTE_VALUES, fieldName, () -> loadFieldValues(fieldName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> loadFieldValues(String fieldName) {
+        List<AttributeDefinition> attributeDefinitions = read("getAttributeDefinitions",
+                factory -> factory.getBaseDatabase().getAttributeDefinitions(Request.class, AttributeType.SFSV));
 
         List<String> res = new ArrayList<String>();
 
@@ -207,10 +301,17 @@ public class DimCMClient {
         return res;
     }
 
-    @SuppressWarnings("unchecked")
     public int getFieldId(String fieldName) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        List<AttributeDefinition> attributeDefinitions = factory.getBaseDatabase().getAttributeDefinitions(Request.class, AttributeType.SFSV);
+        if (cache == null) {
+            return loadFieldId(fieldName);
+        }
+        return cache.getInt(Region.ATTRIBUTE_NUMBER, fieldName, () -> loadFieldId(fieldName));
+    }
+
+    @SuppressWarnings("unchecked")
+    private int loadFieldId(String fieldName) {
+        List<AttributeDefinition> attributeDefinitions = read("getAttributeDefinitions",
+                factory -> factory.getBaseDatabase().getAttributeDefinitions(Request.class, AttributeType.SFSV));
 
         List<String> res = new ArrayList<String>();
         for (AttributeDefinition attr : attributeDefinitions) {
@@ -222,23 +323,41 @@ public class DimCMClient {
         return 0;
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> getRoleUsers(String productName, String roleName) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Product product = factory.getBaseDatabase().getProduct(productName);
-        List roleAssignments = product.getRoleAssignments();
+        String role = roleName.toUpperCase();
+        Set<String> users = new LinkedHashSet<>();
+        for (String assignment : getRoleAssignments(productName)) {
+            int pos = assignment.indexOf(ROLE_ASSIGNMENT_SEPARATOR);
+            if (assignment.regionMatches(0, role, 0, pos) && pos == role.length()) {
+                users.add(assignment.substring(pos + 1));
+            }
+        }
+        return new ArrayList<>(users);
+    }
 
-        List<String> res = new ArrayList<String>();
+    /**
+     * Returns the role assignments of a product as ROLE&lt;TAB&gt;USER pairs, without duplicates.
+     */
+    public List<String> getRoleAssignments(String productName) {
+        return cached(Region.ROLE_USERS, productName, () -> loadRoleAssignments(productName));
+    }
+
+    public void invalidateRoleAssignments(String productName) {
+        if (cache != null) {
+            cache.invalidate(Region.ROLE_USERS, productName);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> loadRoleAssignments(String productName) {
+        List roleAssignments = read("getRoleAssignments", factory -> factory.getBaseDatabase().getProduct(productName).getRoleAssignments());
+
+        Set<String> res = new LinkedHashSet<>();
         for (Object roleAssignment : roleAssignments) {
             RoleAssignmentDetails rad = (RoleAssignmentDetails) roleAssignment;
-            if (rad.getRoleName().equals(roleName.toUpperCase())) {
-				if (!res.contains(rad.getUserName())) {
-					res.add(rad.getUserName());
-				}
-            }
+            res.add(rad.getRoleName() + ROLE_ASSIGNMENT_SEPARATOR + rad.getUserName());
         }
-
-        return res;
+        return new ArrayList<>(res);
     }
 
     public DimensionsResult createRequest(
@@ -251,11 +370,29 @@ public class DimCMClient {
             String severity,
             String owner,
             String attributeNames) {
+        return createRequest(productName, projectName, part, requestType, summary, description, severity, owner,
+                attributeNames, null);
+    }
+
+    /**
+     * Creates a request, attaching the given file (for example the full text of a truncated description) if not null.
+     */
+    public DimensionsResult createRequest(
+            String productName,
+            String projectName,
+            List<Part> part,
+            String requestType,
+            String summary,
+            String description,
+            String severity,
+            String owner,
+            String attributeNames,
+            File attachment) {
         productName = prepareDimCMParam(productName);
         projectName = prepareDimCMParam(projectName);
 
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Product product = factory.getBaseDatabase().getProduct(productName);
+        final DimCMRequestSchema schema = cache == null ? null : getRequestSchema(productName, requestType);
+        final List<String> problems = new ArrayList<>();
 
         RequestDetails requestDetails = new RequestDetails();
         requestDetails.setProductName(productName);
@@ -266,20 +403,116 @@ public class DimCMClient {
         requestDetails.setTypeName(requestType);
         requestDetails.setDescription(summary);
         requestDetails.setDetailedDescription(description);
+        if (attachment != null) {
+            RequestAttachmentDetails attachmentDetails = new RequestAttachmentDetails();
+            attachmentDetails.setName(DimCMDescriptionBuilder.OVERFLOW_FILE_NAME);
+            attachmentDetails.setDescription("Full request description");
+            attachmentDetails.setFileName(attachment.getAbsolutePath());
+            requestDetails.setAttachments(new RequestAttachmentDetails[]{attachmentDetails});
+        }
 
         if (severity != null) {
-            requestDetails.setAttribute(factory.getAttributeNumber("SEVERITY", Request.class), severity);
+            requestDetails.setAttribute(getAttributeNumber(schema, "SEVERITY", problems), severity);
         }
         if (!attributeNames.isEmpty()) {
             String[] attributePairs = attributeNames.split("\n");
             for (String pair : attributePairs) {
                 String[] attributeArray = pair.split("=");
-                requestDetails.setAttribute(factory.getAttributeNumber(attributeArray[0], Request.class), attributeArray[1]);
+                if (attributeArray.length != 2) {
+                    problems.add("Additional field '" + pair + "' is not of the form NAME=VALUE");
+                    continue;
+                }
+                requestDetails.setAttribute(getAttributeNumber(schema, attributeArray[0], problems), attributeArray[1]);
             }
         }
 
-        return factory.createRequest(requestDetails);
+        if (schema != null) {
+            validateRequest(requestDetails, schema, problems);
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException("Error: Invalid request - " + String.join("; ", problems));
+        }
+        return write(factory -> factory.createRequest(requestDetails));
+
+    }
 
+    /**
+     * Checks a new request against the cached products, projects, request types and request type schema,
+     * so that invalid requests are rejected without a server round trip.
+     */
+    private void validateRequest(RequestDetails details, DimCMRequestSchema schema, List<String> problems) {
+        final String productName = details.getProductName();
+        if (!getProducts().contains(productName)) {
+            problems.add("Product " + productName + " does not exist");
+            return;
+        }
+        if (!containsIgnoreCase(getReqTypes(productName), details.getTypeName())) {
+            problems.add("Request type " + details.getTypeName() + " is not defined for product " + productName);
+            return;
+        }
+        if (details.getRelatedProject() != null && !containsIgnoreCase(getProjectsStreams(productName), details.getRelatedProject())) {
+            problems.add("Project " + details.getRelatedProject() + " does not exist in product " + productName);
+        }
+        if (details.getDescription() == null || details.getDescription().trim().isEmpty()) {
+            problems.add("The request title is empty");
+        }
+        problems.addAll(schema.validate(details.getAttributeMap()));
+    }
+
+    /**
+     * Checks that a design part exists in a product, using the cached part list.
+     *
+     * @throws IllegalArgumentException if it does not
+     */
+    void checkDesignPart(String productName, String partName) {
+        if (cache != null && partName != null && !partName.isEmpty()
+                && !containsIgnoreCase(getDesignParts(productName), partName)) {
+            throw new IllegalArgumentException("Error: Invalid request - Design part " + partName
+                    + " does not exist in product " + productName);
+        }
+    }
+
+    DimCMRequestSchema getRequestSchema(String productName, String typeName) {
+        return new DimCMRequestSchema(typeName, cached(Region.REQUEST_SCHEMAS, productName + ":" + typeName,
+                () -> read("getAttributeDefinitions", factory -> {
+                    Product product = factory.getBaseDatabase().getProduct(productName);
+                    Type type = product == null ? null : product.getRequestTypes().get(typeName);
+                    if (type == null) {
+                        // Reported by validateRequest
+                        return Collections.<String>emptyList();
+                    }
+                    return DimCMRequestSchema.encode(type.getAttributeDefinitions(AttributeType.SFSV).iterator());
+                })));
+    }
+
+    /**
+     * Resolves an attribute name against the request type schema, which only holds its single valued
+     * fields, and otherwise against all request attributes of the database.
+     */
+    private int getAttributeNumber(DimCMRequestSchema schema, String name, List<String> problems) {
+        int number = schema == null ? 0 : schema.getAttributeNumber(name);
+        if (number != 0) {
+            return number;
+        }
+        final String key = name.toUpperCase();
+        final Supplier<Integer> loader = () -> read("getAttributeNumber", factory -> factory.getAttributeNumber(key, Request.class));
+        number = cache == null ? loader.get() : cache.getInt(Region.ATTRIBUTE_NUMBER, "REQUEST:" + key, loader);
+        if (number <= 0 && schema != null) {
+            problems.add("Attribute " + name + " is not defined for this request type");
+        }
+        return number;
+    }
+
+    private static boolean containsIgnoreCase(List<String> list, String value) {
+        if (list instanceof DimCMCatalogue) {
+            return ((DimCMCatalogue) list).containsIgnoreCase(value);
+        }
+        for (String s : list) {
+            if (s.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public String getRequestIdFromResult(DimensionsResult result, String productName, String requestType) {
@@ -302,17 +535,501 @@ public class DimCMClient {
     }
 
     public Request delegateRequest(String requestId, List users, String role, String capability) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        Request request = factory.findRequest(requestId);
-        if (request != null) {
-            request.delegateTo(users, role, capability, true);
+        final String code = toCapability(capability);
+        return write(factory -> {
+            Request request = factory.findRequest(requestId);
+            if (request != null) {
+                request.delegateTo(users, role, code, true);
+            }
+            return request;
+        });
+    }
+
+    /**
+     * Sets an attribute of a request and saves it on the server.
+     */
+    void updateAttribute(Request request, int attribute, Object value) {
+        write(factory -> {
+            request.setAttribute(attribute, value);
+            request.updateAttribute(attribute);
+            return null;
+        });
+    }
+
+    /**
+     * Appends a text to the action description of a request, e.g. to record what was added to it.
+     */
+    void addActionDescription(String requestId, String text) {
+        write(factory -> {
+            Request request = factory.findRequest(requestId);
+            if (request == null) {
+                throw new IllegalArgumentException("Request " + requestId + " does not exist");
+            }
+            return request.addActionDescription(text);
+        });
+    }
+
+    /**
+     * A pending delegation of a request to users in a role.
+     */
+    static final class Delegation {
+        final String requestId;
+        final List<String> users;
+        final String role;
+        final String capability;
+
+        /**
+         * @param capability capability name or code, see {@link #toCapability(String)}
+         */
+        Delegation(String requestId, List<String> users, String role, String capability) {
+            this.requestId = requestId;
+            this.users = users;
+            this.role = role;
+            this.capability = toCapability(capability);
+        }
+
+        private String getGroupKey() {
+            return String.join(",", users) + "|" + role + "|" + capability;
+        }
+    }
+
+    static final class DelegationResult {
+        final String requestId;
+        final String error;
+
+        DelegationResult(String requestId, String error) {
+            this.requestId = requestId;
+            this.error = error;
+        }
+
+        boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return requestId + (isSuccess() ? "" : ": " + error);
+        }
+    }
+
+    /**
+     * Returns the Dimensions CM code of an owner capability given as code or name (P/PRIMARY, S/SECONDARY,
+     * L/LEADER), ignoring case.
+     */
+    static String toCapability(String capability) {
+        final String value = capability == null ? "" : capability.trim().toUpperCase();
+        for (String name : new String[]{"PRIMARY", "SECONDARY", "LEADER"}) {
+            if (value.equals(name) || value.equals(name.substring(0, 1))) {
+                return name.substring(0, 1);
+            }
+        }
+        throw new IllegalArgumentException("Error: Invalid owner capability - '" + capability
+                + "', expected PRIMARY, SECONDARY or LEADER");
+    }
+
+    /**
+     * Delegates many requests. Delegations to the same users, role and capability are grouped and run in
+     * batches, each batch finding its requests with one query on one of the pooled sessions.
+     *
+     * @param threads number of batches run at the same time
+     * @return the outcome per delegation, in the given order
+     */
+    List<DelegationResult> delegateRequests(List<Delegation> delegations, int threads) throws InterruptedException {
+        final Map<String, List<Delegation>> groups = new LinkedHashMap<>();
+        for (Delegation d : delegations) {
+            groups.computeIfAbsent(d.getGroupKey(), k -> new ArrayList<>()).add(d);
+        }
+        final List<List<Delegation>> batches = new ArrayList<>();
+        for (List<Delegation> group : groups.values()) {
+            for (int i = 0; i < group.size(); i += DELEGATION_BATCH_SIZE) {
+                batches.add(group.subList(i, Math.min(group.size(), i + DELEGATION_BATCH_SIZE)));
+            }
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Delegating " + delegations.size() + " requests in " + groups.size() + " groups and "
+                    + batches.size() + " batches");
+        }
+        final Map<String, String> errors = new ConcurrentHashMap<>();
+        final ExecutorService executor = executors.newFixedPool("DimCM-Delegation",
+                pool == null ? 1 : Math.min(threads, batches.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final List<Delegation> batch : batches) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        callOnSession(pool == null ? session : pool.acquire(null), factory -> {
+                            delegateBatch(factory, batch, errors);
+                            return null;
+                        });
+                    } catch (RuntimeException e) {
+                        for (Delegation d : batch) {
+                            errors.putIfAbsent(d.requestId, String.valueOf(e.getMessage()));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    // Batches report their own failures
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        final List<DelegationResult> results = new ArrayList<>();
+        for (Delegation d : delegations) {
+            results.add(new DelegationResult(d.requestId, errors.get(d.requestId)));
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void delegateBatch(DimensionsObjectFactory factory, List<Delegation> batch, Map<String, String> errors) {
+        final Delegation first = batch.get(0);
+        final Set<String> ids = new LinkedHashSet<>();
+        for (Delegation d : batch) {
+            ids.add(d.requestId);
+        }
+        final List<Request> requests = factory.getBaseDatabase().getAllRequests(requestIdFilter(null, ids));
+        final Map<String, Request> found = new HashMap<>();
+        if (requests != null && !requests.isEmpty()) {
+            factory.getBulkOperator(requests).queryAttribute(new int[]{SystemAttributes.OBJECT_ID});
+            for (Request r : requests) {
+                found.put((String) r.getAttribute(SystemAttributes.OBJECT_ID), r);
+            }
+        }
+        for (String requestId : ids) {
+            final Request request = found.get(requestId);
+            if (request == null) {
+                errors.put(requestId, "Dimensions CM Request " + requestId + " does not exist");
+                continue;
+            }
+            try {
+                request.delegateTo(first.users, first.role, first.capability, true);
+            } catch (RuntimeException e) {
+                errors.put(requestId, String.valueOf(e.getMessage()));
+            }
         }
-        return request;
     }
 
     public Request getRequest(String requestId) {
-        DimensionsObjectFactory factory = connection.getObjectFactory();
-        return factory.findRequest(requestId);
+        if (isMissing(Region.REQUEST_STATE, requestId)) {
+            return null;
+        }
+        Request request = read("findRequest", factory -> factory.findRequest(requestId));
+        if (request == null) {
+            markMissing(Region.REQUEST_STATE, requestId);
+        }
+        return request;
+    }
+
+    /**
+     * Finds a request and queries the attributes needed by the given projections in one guarded call.
+     * The projections are merged so every attribute is requested once.
+     *
+     * @return the request, or null if it does not exist
+     */
+    DimCMRequestView fetchRequest(String requestId, DimCMProjection... projections) {
+        final DimCMProjection projection = DimCMProjection.merge(projections);
+        final int[] attributes = projection.getAttributes();
+        if (isMissing(Region.REQUEST_STATE, requestId)) {
+            return null;
+        }
+        Request request = read("queryAttribute", factory -> {
+            Request r = factory.findRequest(requestId);
+            if (r != null && attributes.length > 0) {
+                r.queryAttribute(attributes);
+            }
+            return r;
+        });
+        if (request == null) {
+            markMissing(Region.REQUEST_STATE, requestId);
+            return null;
+        }
+        return new DimCMRequestView(this, requestId, request, projection);
+    }
+
+    /**
+     * Queries a single attribute of a request that was fetched without it. The request is looked up again
+     * within the call, so that a hedged read does not share the fetched request object.
+     *
+     * @return the value, or null if the request no longer exists
+     */
+    Object queryAttribute(String requestId, int attribute) {
+        return read("queryAttribute", factory -> {
+            Request r = factory.findRequest(requestId);
+            if (r == null) {
+                return null;
+            }
+            r.queryAttribute(attribute);
+            return r.getAttribute(attribute);
+        });
+    }
+
+    /**
+     * Returns the transition graph of a lifecycle, the default request lifecycle if none is given.
+     */
+    DimCMLifecycleGraph getLifecycleGraph(String lifecycleName) {
+        final String name = lifecycleName == null || lifecycleName.isEmpty() ? DIMCM_DEFAULT_LIFECYCLE : lifecycleName;
+        return new DimCMLifecycleGraph(name, cached(Region.LIFECYCLES, name,
+                () -> read("getLifecycle", factory -> getLifeCycleTransitions(factory, name))));
+    }
+
+    /**
+     * Thrown when actioning a request failed after it was moved part of the way to its target state.
+     */
+    static final class PartialActionException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> actioned;
+        private final String failedState;
+
+        PartialActionException(String requestId, List<String> actioned, String failedState, RuntimeException cause) {
+            super("Request " + requestId + " was actioned to " + actioned.get(actioned.size() - 1)
+                    + " but could not be actioned on to " + failedState + ": " + cause.getMessage(), cause);
+            this.actioned = actioned;
+            this.failedState = failedState;
+        }
+
+        /**
+         * Returns the states the request was actioned to before the failure, ending with the state it is in.
+         */
+        List<String> getActioned() {
+            return actioned;
+        }
+
+        String getReachedState() {
+            return actioned.get(actioned.size() - 1);
+        }
+
+        String getFailedState() {
+            return failedState;
+        }
+    }
+
+    /**
+     * Actions a request to the given state along the shortest path of its lifecycle. The request must have
+     * been fetched with {@link DimCMProjection#LIFECYCLE_STATE}.
+     *
+     * @return the states the request was actioned to, empty if it already was in the target state
+     * @throws PartialActionException if a step failed after the request was actioned to an intermediate state
+     */
+    List<String> actionRequestTo(DimCMRequestView request, String targetState) {
+        final String lifecycleName = (String) request.getAttribute(SystemAttributes.LIFECYCLE);
+        final DimCMLifecycleGraph graph = getLifecycleGraph(lifecycleName);
+        final String currentState = request.getLcState();
+        final List<String> path = graph.findPath(currentState, targetState);
+        if (path == null) {
+            throw new IllegalStateException("Request " + request.getAttribute(SystemAttributes.OBJECT_ID)
+                    + " cannot be moved from " + currentState + " to " + targetState + " in lifecycle " + graph.getName());
+        }
+        final String requestId = (String) request.getAttribute(SystemAttributes.OBJECT_ID);
+        for (int i = 0; i < path.size(); i++) {
+            final String state = path.get(i);
+            try {
+                write(factory -> request.getRequest().actionTo(state));
+            } catch (RuntimeException e) {
+                // The lifecycle may have changed since its transitions were cached
+                if (cache != null) {
+                    cache.invalidate(Region.LIFECYCLES, graph.getName());
+                }
+                if (i == 0) {
+                    throw e;
+                }
+                final List<String> actioned = new ArrayList<>(path.subList(0, i));
+                throw new PartialActionException(requestId, actioned, state, e);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Looks a request up with a single filtered query and returns its lifecycle state, or null if it does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public String queryRequestState(String requestId) {
+        if (isMissing(Region.REQUEST_STATE, requestId)) {
+            return null;
+        }
+        String state = read("getAllRequests", factory -> {
+            Filter filter = new Filter();
+            filter.criteria().add(new Filter.Criterion(SystemAttributes.OBJECT_ID, requestId, Filter.Criterion.EQUALS));
+            List<Request> requests = factory.getBaseDatabase().getAllRequests(filter);
+            if (requests == null || requests.isEmpty()) {
+                return null;
+            }
+            return requests.get(0).getLcState();
+        });
+        if (state == null) {
+            markMissing(Region.REQUEST_STATE, requestId);
+        }
+        return state;
+    }
+
+    /**
+     * Looks several requests up with a single filtered query and fetches the given attributes for all of them
+     * in one bulk call. Requests that do not exist are missing from the result.
+     *
+     * @param productName product all requests belong to, null if unknown
+     */
+    @SuppressWarnings("unchecked")
+    List<Request> queryRequests(String productName, Collection<String> requestIds, int... attributes) {
+        if (requestIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return read("getAllRequests", factory -> {
+            List<Request> requests = factory.getBaseDatabase().getAllRequests(requestIdFilter(productName, requestIds));
+            if (requests == null || requests.isEmpty()) {
+                return Collections.<Request>emptyList();
+            }
+            if (attributes.length > 0) {
+                factory.getBulkOperator(requests).queryAttribute(attributes);
+            }
+            return requests;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Filter requestIdFilter(String productName, Collection<String> requestIds) {
+        Filter filter = new Filter();
+        if (productName != null) {
+            filter.criteria().add(new Filter.Criterion(SystemAttributes.PRODUCT_NAME, productName, Filter.Criterion.EQUALS));
+        }
+        filter.criteria().add(Filter.Criterion.START_OR);
+        for (String requestId : requestIds) {
+            filter.criteria().add(new Filter.Criterion(SystemAttributes.OBJECT_ID, requestId, Filter.Criterion.EQUALS));
+        }
+        filter.criteria().add(Filter.Criterion.END_OR);
+        return filter;
+    }
+
+    /**
+     * Returns one page of the change sets of a stream or project created on or after the given date.
+     *
+     * @param projectSpec full PRODUCT:STREAM specification
+     * @param fromDate    lower bound of the change set date, null for all change sets
+     * @param startRank   rank of the first change set to return, starting at 1
+     * @param pageSize    maximum number of change sets to return
+     */
+    @SuppressWarnings("unchecked")
+    public List<DimensionsChangeSet> queryChangeSets(String projectSpec, Date fromDate, int startRank, int pageSize) {
+        Filter filter = new Filter();
+        if (fromDate != null) {
+            String date;
+            synchronized (DIMCM_DATE_FORMAT) {
+                date = DIMCM_DATE_FORMAT.format(fromDate);
+            }
+            filter.criteria().add(new Filter.Criterion(SystemAttributes.CHANGE_SET_FROM_DATE, date, Filter.Criterion.GREATER_EQUAL));
+        }
+        filter.orders().add(new Filter.Order(SystemAttributes.CHANGE_SET_COLUMN_DATETIME, Filter.ORDER_ASCENDING));
+        filter.range().setStartRank(startRank);
+        filter.range().setRecordCount(pageSize);
+        List<DimensionsChangeSet> changeSets = read("queryChangeSets", factory -> factory.getChangeSetsQuery()
+                .queryChangeSets(getProjectIfExists(factory, prepareDimCMParam(projectSpec)), filter, false));
+        return changeSets == null ? Collections.<DimensionsChangeSet>emptyList() : changeSets;
+    }
+
+    // =========================================================================
+    // Guarded calls
+    // =========================================================================
+
+    /**
+     * Runs an idempotent read within its operation deadline, hedging it on another pooled session if enabled.
+     */
+    private <T> T read(String operation, Function<DimensionsObjectFactory, T> call) {
+        if (guard == null) {
+            return onSession(session, call);
+        }
+        final DimCMSessionPool.Session primary = session;
+        return guard.call(operation, () -> onSession(primary, call),
+                pool == null ? null : () -> onSession(pool.acquire(primary), call));
+    }
+
+    /**
+     * Runs a call that changes data on the server. It is neither hedged nor repeated, but like reads it is
+     * tracked on its session so that the session is not closed or replaced while the call runs.
+     */
+    private <T> T write(Function<DimensionsObjectFactory, T> call) {
+        return callOnSession(session, call);
+    }
+
+    private <T> T onSession(DimCMSessionPool.Session target, Function<DimensionsObjectFactory, T> call) {
+        try {
+            return callOnSession(target, call);
+        } catch (DimensionsRuntimeException e) {
+            if (target == null || pool == null || target.isConnected(false)) {
+                throw e;
+            }
+            // The server expired the session: log in again and repeat the read once
+            final DimCMSessionPool.Session fresh = pool.replace(target);
+            if (fresh == target) {
+                throw e;
+            }
+            if (session == target) {
+                session = fresh;
+                connection = fresh.connection;
+            }
+            return callOnSession(fresh, call);
+        }
+    }
+
+    private <T> T callOnSession(DimCMSessionPool.Session target, Function<DimensionsObjectFactory, T> call) {
+        while (target != null && !target.enter()) {
+            // Retired by the keepalive or another caller since it was handed out
+            final DimCMSessionPool.Session fresh = pool.acquire(target);
+            if (fresh == target) {
+                throw new IllegalStateException("No Dimensions CM session available");
+            }
+            if (session == target) {
+                session = fresh;
+                connection = fresh.connection;
+            }
+            target = fresh;
+        }
+        final DimensionsConnection conn = target == null ? connection : target.connection;
+        // Calls may nest, e.g. a catalogue load within a request validation
+        final DimensionsConnection previous = DimensionsConnectionManager.getThreadConnection();
+        final boolean register = conn != null && conn != previous;
+        if (register) {
+            DimensionsConnectionManager.registerThreadConnection(conn);
+        }
+        try {
+            return call.apply(getObjectFactory(conn));
+        } finally {
+            if (register) {
+                DimensionsConnectionManager.unregisterThreadConnection();
+                if (previous != null) {
+                    DimensionsConnectionManager.registerThreadConnection(previous);
+                }
+            }
+            if (target != null) {
+                target.exit();
+            }
+        }
+    }
+
+    // =========================================================================
+    // Metadata cache helpers
+    // =========================================================================
+
+    private List<String> cached(Region region, String key, Supplier<List<String>> loader) {
+        if (cache == null) {
+            return loader.get();
+        }
+        return cache.getList(region, key, loader);
+    }
+
+    private boolean isMissing(Region region, String key) {
+        return cache != null && cache.isMissing(region, key);
+    }
+
+    private void markMissing(Region region, String key) {
+        if (cache != null) {
+            cache.markMissing(region, key);
+        }
     }
 
     // =========================================================================
@@ -342,18 +1059,39 @@ public class DimCMClient {
         }
     }
 
+    /**
+     * Returns false only if the server definitely does not know the product.
+     *
+     * @throws DimensionsRuntimeException if the server could not be asked
+     */
+    @SuppressWarnings("unchecked")
     private static boolean isProductExists(DimensionsObjectFactory factory, String productName) {
-        List<Product> list = factory.getBaseDatabase().getProducts();
-        for (Product product : list) {
-            if (product.getName().equals(productName)) {
-                return true;
+        try {
+            return factory.getBaseDatabase().getProduct(productName) != null;
+        } catch (DimensionsRuntimeException e) {
+            // Unknown products and server problems fail alike, the product list tells them apart
+            for (Product p : factory.getBaseDatabase().getProducts()) {
+                if (p.getName().equalsIgnoreCase(productName)) {
+                    throw e;
+                }
             }
+            return false;
         }
-        return false;
     }
 
-    private static void productShouldExist(DimensionsObjectFactory factory, String productName) {
-        if (!isProductExists(factory, productName)) {
+    private void productShouldExist(String productName) {
+        boolean exists;
+        if (isMissing(Region.PRODUCTS, productName)) {
+            exists = false;
+        } else if (cache != null && getProducts().contains(productName)) {
+            exists = true;
+        } else {
+            exists = read("getProduct", factory -> isProductExists(factory, productName));
+            if (!exists) {
+                markMissing(Region.PRODUCTS, productName);
+            }
+        }
+        if (!exists) {
             throw new RuntimeException("Error: the specified product name - " + productName + " - does not exist");
         }
     }
@@ -367,6 +1105,20 @@ public class DimCMClient {
         return res;
     }
 
+    private static List<String> getLifeCycleTransitions(DimensionsObjectFactory factory, String lifecycleName) {
+        List<String> res = new ArrayList<String>();
+        Lifecycle lc = factory.getBaseDatabase().getLifecycle(lifecycleName);
+        if (lc == null) {
+            throw new RuntimeException("Error: Lifecycle " + lifecycleName + " is not found!");
+        }
+        Iterator<?> it = lc.getTransitions().iterator();
+        while (it.hasNext()) {
+            LifecycleTransition t = (LifecycleTransition) it.next();
+            res.add(DimCMLifecycleGraph.edge(t.getFromState(), t.getToState(), t.getNormal()));
+        }
+        return res;
+    }
+
     // ========================================================================
     // Simple Helper methods
     // ========================================================================
@@ -432,38 +1184,10 @@ public class DimCMClient {
 
 
     // ========================================================================
-    // Example invocation
+    // Bulk filing and state sync, see DimCMBulkTool
     // ========================================================================
-    public static void main(final String[] args) {
-
-        DimCMClient cmClient = new DimCMClient();
-        cmClient.connect("security", "security", "cm_typical", "dimcm", "localhost");
-        System.out.println(cmClient.getProjectsStreams("QLARIUS"));
-        System.out.println(cmClient.getDesignParts("QLARIUS"));
-        List <Part> parts = cmClient.getDesignPartAsList("QLARIUS", "QLARIUS:WEBSITE.A;1");
-        for (Part p : parts) {
-            System.out.println(p.getAttribute(SystemAttributes.OBJECT_ID));
-        }
-        // create a new request
-        DimensionsResult result = cmClient.createRequest("QLARIUS", "MAINLINE_JAVA_STR", parts,
-                "TASK", "this is the summary", "this is the description",
-                "High", "JOSH", "");
-        String requestId = cmClient.getRequestIdFromResult(result, "QLARIUS", "TASK");
-        List<String> users = new ArrayList<>();
-        users.add("JOSH");
-        cmClient.delegateRequest(requestId, users, "DEVELOPER", "SECONDARY");
-        // get the request
-        Request requestObj = (Request) cmClient.getRequest(requestId);
-        int solutionFieldId = cmClient.getFieldId("DETAILS_OF_THE_SOLUTION");
-        requestObj.queryAttribute(new int[]{SystemAttributes.TITLE,
-                SystemAttributes.DESCRIPTION,
-                SystemAttributes.OBJECT_SPEC,
-                SystemAttributes.STATUS,
-                solutionFieldId});
-        System.out.println("REQUEST_ID : " + requestObj.getAttribute(SystemAttributes.OBJECT_ID));
-        System.out.println("TITLE     : "  + requestObj.getAttribute(SystemAttributes.TITLE));
-        System.out.println("STATUS    : "  + requestObj.getLcState());
-        System.out.println("SOLUTION  : "  + requestObj.getAttribute(solutionFieldId));
+    public static void main(final String[] args) throws Exception {
+        System.exit(DimCMBulkTool.run(args));
     }
 }
 
@@ -0,0 +1,116 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds a request description of bounded size.
+ *
+ * Text is kept in memory up to the size limit; as soon as it is exceeded the complete text is streamed
+ * to a compressed overflow file, meant to be attached to the request, and only the first part is kept
+ * as the description. The description returned, including the note on the truncation, never exceeds the
+ * limit.
+ *
+ * SSC hands over the description as one String, so the builder bounds what is sent to Dimensions CM and
+ * kept per request rather than the memory needed to produce the text.
+ */
+final class DimCMDescriptionBuilder implements Closeable {
+
+    static final String OVERFLOW_FILE_NAME = "description.txt.gz";
+
+    private static final String TRUNCATED_NOTE = "\n... (description truncated, see attachment " + OVERFLOW_FILE_NAME + ")";
+
+    private final int maxLength;
+    private final StringBuilder head = new StringBuilder();
+    private File overflowFile;
+    private Writer overflow;
+    private boolean closed;
+
+    DimCMDescriptionBuilder(int maxLength) {
+        this.maxLength = Math.max(maxLength, TRUNCATED_NOTE.length() * 2);
+    }
+
+    DimCMDescriptionBuilder append(CharSequence text) {
+        if (text == null) {
+            return this;
+        }
+        try {
+            if (overflow == null && head.length() + text.length() > maxLength) {
+                startOverflow();
+            }
+            if (overflow != null) {
+                overflow.append(text);
+            }
+            int room = maxLength - TRUNCATED_NOTE.length() - head.length();
+            if (overflow == null) {
+                head.append(text);
+            } else if (room > 0) {
+                head.append(text, 0, Math.min(room, text.length()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write description overflow file", e);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the bounded description.
+     */
+    String build() {
+        close();
+        return overflowFile == null ? head.toString() : head + TRUNCATED_NOTE;
+    }
+
+    /**
+     * Returns the compressed file with the full description, or null if it fitted within the limit.
+     */
+    File getOverflowFile() {
+        close();
+        return overflowFile;
+    }
+
+    void discard() {
+        close();
+        if (overflowFile != null && !overflowFile.delete()) {
+            overflowFile.deleteOnExit();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (overflow != null) {
+            try {
+                overflow.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write description overflow file", e);
+            }
+        }
+    }
+
+    private void startOverflow() throws IOException {
+        overflowFile = File.createTempFile("dimcm-description", ".txt.gz");
+        overflow = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(overflowFile)), StandardCharsets.UTF_8));
+        overflow.append(head);
+        // Leave room for the note on the truncation
+        head.setLength(Math.min(head.length(), maxLength - TRUNCATED_NOTE.length()));
+    }
+
+    /**
+     * Shortens a text to at most the given length, including the note on how long it was, e.g. for logging.
+     */
+    static String abbreviate(String text, int maxLength) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+        final String note = "... (" + text.length() + " characters)";
+        return maxLength > note.length() ? text.substring(0, maxLength - note.length()) + note : text.substring(0, maxLength);
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Lightweight socket listener for request lifecycle change events, e.g. sent by a Dimensions CM event
+ * callout or a relay script.
+ *
+ * Each event is one line of tab separated fields:
+ * <pre>token TAB requestId TAB state [TAB resolution]</pre>
+ * The listener only runs with a token configured, and every event must carry it. Every line is answered
+ * with "OK" or "ERROR message". Each connection is served on its own thread, so an idle sender does not
+ * hold up the others; connections beyond {@link #MAX_CONNECTIONS} are closed right away.
+ * The {@link #main(String[])} method can be used as a local event emitter.
+ */
+final class DimCMEventListener implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DimCMEventListener.class);
+
+    private static final int SOCKET_TIMEOUT = 30 * 1000;
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final int MAX_CONNECTIONS = 16;
+
+    private final DimCMStateCache states;
+    private final byte[] token;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Semaphore connectionSlots = new Semaphore(MAX_CONNECTIONS);
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    /**
+     * @throws IllegalArgumentException if the token is empty
+     */
+    DimCMEventListener(String bindAddress, int port, String token, DimCMStateCache states, DimCMExecutors executors)
+            throws IOException {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("A token is required to listen for Dimensions CM request events");
+        }
+        this.states = states;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.connections = executors.newCachedPool("DimCM-Event-Connection");
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(bindAddress), port));
+        Thread t = new Thread(this::acceptLoop, "DimCM-Event-Listener");
+        t.setDaemon(true);
+        t.start();
+        LOG.info("Listening for Dimensions CM request events on " + serverSocket.getLocalSocketAddress());
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOG.debug("Error while closing event listener: " + e.getMessage());
+        }
+        connections.shutdown();
+        for (Socket socket : openSockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.warn("Error while receiving Dimensions CM request events: " + e.getMessage());
+                }
+                continue;
+            }
+            if (!connectionSlots.tryAcquire()) {
+                LOG.warn("Rejected Dimensions CM request event connection from " + socket.getRemoteSocketAddress()
+                        + ", " + MAX_CONNECTIONS + " connections are open");
+                closeQuietly(socket);
+                continue;
+            }
+            openSockets.add(socket);
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RuntimeException e) {
+                // Closed meanwhile
+                release(socket);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+            handle(socket);
+        } catch (IOException e) {
+            if (running) {
+                LOG.warn("Error while receiving Dimensions CM request events: " + e.getMessage());
+            }
+        } finally {
+            release(socket);
+        }
+    }
+
+    private void release(Socket socket) {
+        if (openSockets.remove(socket)) {
+            connectionSlots.release();
+        }
+        closeQuietly(socket);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOG.debug("Error while closing event connection: " + e.getMessage());
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        Reader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        StringBuilder line = new StringBuilder();
+        while (readLine(in, line)) {
+            if (line.length() > MAX_LINE_LENGTH) {
+                out.write("ERROR line too long\n");
+            } else if (line.toString().trim().isEmpty()) {
+                continue;
+            } else {
+                out.write(process(line.toString()) + "\n");
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a line into the given buffer, keeping at most {@link #MAX_LINE_LENGTH} + 1 characters of it so
+     * that an overlong line is recognised without being buffered.
+     *
+     * @return false at the end of the stream
+     */
+    static boolean readLine(Reader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        if (c < 0) {
+            return false;
+        }
+        while (c >= 0 && c != '\n') {
+            if (c != '\r' && line.length() <= MAX_LINE_LENGTH) {
+                line.append((char) c);
+            }
+            c = in.read();
+        }
+        return true;
+    }
+
+    private String process(String line) {
+        String[] fields = line.split("\t");
+        if (!MessageDigest.isEqual(token, fields[0].getBytes(StandardCharsets.UTF_8))) {
+            LOG.warn("Rejected Dimensions CM request event with invalid token");
+            return "ERROR invalid token";
+        }
+        final int pos = 1;
+        if (fields.length - pos < 2) {
+            return "ERROR expected requestId and state";
+        }
+        String requestId = fields[pos].trim();
+        String state = fields[pos + 1].trim();
+        String resolution = fields.length - pos > 2 ? fields[pos + 2] : null;
+        states.changed(requestId, state, resolution);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Received state " + state + " for request " + requestId);
+        }
+        return "OK";
+    }
+
+    /**
+     * Sends one event and returns the listener's answer.
+     */
+    static String send(String host, int port, String token, String requestId, String state, String resolution) throws IOException {
+        StringBuilder line = new StringBuilder();
+        if (token != null && !token.isEmpty()) {
+            line.append(token).append('\t');
+        }
+        line.append(requestId).append('\t').append(state);
+        if (resolution != null) {
+            line.append('\t').append(resolution.replace('\t', ' ').replace('\n', ' '));
+        }
+        try (Socket socket = new Socket(host, port)) {
+            socket.setSoTimeout(SOCKET_TIMEOUT);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(line.append('\n').toString());
+            out.flush();
+            socket.shutdownOutput();
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+        }
+    }
+
+    // ========================================================================
+    // Local event emitter
+    // ========================================================================
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: DimCMEventListener host port requestId state [resolution] [token]");
+            System.exit(2);
+        }
+        String answer = send(args[0], Integer.parseInt(args[1]), args.length > 5 ? args[5] : null, args[2], args[3],
+                args.length > 4 ? args[4] : null);
+        System.out.println(answer);
+        if (!"OK".equals(answer)) {
+            System.exit(1);
+        }
+    }
+}
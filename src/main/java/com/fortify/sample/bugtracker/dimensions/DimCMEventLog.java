@@ -0,0 +1,164 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Structured log of plugin operations and Dimensions CM calls, cheap enough to leave enabled under load.
+ *
+ * Callers only claim a slot in a bounded lock-free ring buffer; a background thread formats the records
+ * and appends them to the log file as "time TAB operation TAB requestId TAB micros TAB OK|FAILED TAB error"
+ * lines. When the buffer is full records are dropped and counted rather than slowing down the caller.
+ * Successful events can be sampled; failures are always recorded.
+ */
+final class DimCMEventLog implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DimCMEventLog.class);
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final String EMPTY = "-";
+
+    private static final class Record {
+        final long time;
+        final String operation;
+        final String requestId;
+        final long micros;
+        final String error;
+
+        Record(long time, String operation, String requestId, long micros, String error) {
+            this.time = time;
+            this.operation = operation;
+            this.requestId = requestId;
+            this.micros = micros;
+            this.error = error;
+        }
+    }
+
+    private final AtomicReferenceArray<Record> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int sampling;
+    private final Writer out;
+    private final Thread writer;
+    private volatile long head;
+    private volatile boolean closed;
+
+    /**
+     * @param sampling record one in this many successful events, 1 to record all
+     */
+    DimCMEventLog(File file, int sampling) throws IOException {
+        this.sampling = Math.max(1, sampling);
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        this.writer = new Thread(this::drainLoop, "DimCM-Event-Log");
+        writer.setDaemon(true);
+        writer.start();
+        LOG.info("Writing Dimensions CM event log to " + file + (this.sampling > 1 ? ", sampling 1 in " + this.sampling : ""));
+    }
+
+    /**
+     * Records an operation started at {@code startNanos} (from {@link System#nanoTime()}).
+     *
+     * @param requestId request the operation was about, or null
+     * @param failure   why the operation failed, or null if it succeeded
+     */
+    void record(String operation, String requestId, long startNanos, Throwable failure) {
+        if (failure == null && sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) {
+            return;
+        }
+        final long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        final String error = failure == null ? null : failure.getClass().getSimpleName();
+        while (true) {
+            final long t = tail.get();
+            if (t - head >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & MASK), new Record(System.currentTimeMillis(), operation, requestId, micros, error));
+                return;
+            }
+        }
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void drainLoop() {
+        long reportedDrops = 0;
+        while (!closed || head < tail.get()) {
+            int written = drain();
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                LOG.warn("Dimensions CM event log dropped " + (drops - reportedDrops) + " records, the writer cannot keep up");
+                reportedDrops = drops;
+            }
+            if (written == 0) {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    LOG.warn("Could not write Dimensions CM event log: " + e.getMessage());
+                }
+                if (!closed) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private int drain() {
+        int written = 0;
+        final StringBuilder line = new StringBuilder(128);
+        while (head < tail.get()) {
+            final int index = (int) (head & MASK);
+            final Record r = slots.get(index);
+            if (r == null) {
+                // Claimed but not yet published
+                break;
+            }
+            slots.lazySet(index, null);
+            head = head + 1;
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(r.time)).append('\t')
+                    .append(r.operation).append('\t')
+                    .append(r.requestId == null ? EMPTY : r.requestId).append('\t')
+                    .append(r.micros).append('\t')
+                    .append(r.error == null ? "OK" : "FAILED").append('\t')
+                    .append(r.error == null ? EMPTY : r.error).append('\n');
+            try {
+                out.write(line.toString());
+            } catch (IOException e) {
+                LOG.warn("Could not write Dimensions CM event log: " + e.getMessage());
+            }
+            written++;
+        }
+        return written;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.warn("Could not close Dimensions CM event log: " + e.getMessage());
+        }
+    }
+}
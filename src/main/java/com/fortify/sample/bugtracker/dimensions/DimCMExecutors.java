@@ -0,0 +1,90 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for running blocking Dimensions CM calls in parallel.
+ *
+ * On Java 21 and later the worker threads are virtual threads, so that thousands of calls can wait for the
+ * server at the same time without an operating system thread each. The plugin is compiled for Java 8, so
+ * virtual threads are looked up by reflection; on older runtimes, or if disabled, daemon platform threads
+ * are used instead. Each plugin instance has its own executors, configured with its settings.
+ */
+final class DimCMExecutors {
+    private static final Log LOG = LogFactory.getLog(DimCMExecutors.class);
+
+    private static final Method OF_VIRTUAL;
+    private static final Method BUILDER_NAME;
+    private static final Method BUILDER_FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (ReflectiveOperationException e) {
+            LOG.debug("Virtual threads are not available on Java " + System.getProperty("java.version"));
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = name;
+        BUILDER_FACTORY = factory;
+    }
+
+    /** Executors running on platform threads, for code running outside a configured plugin */
+    static final DimCMExecutors PLATFORM = new DimCMExecutors(false);
+
+    private final boolean virtualThreads;
+
+    DimCMExecutors(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    boolean isVirtual() {
+        return virtualThreads && OF_VIRTUAL != null;
+    }
+
+    /**
+     * Returns an executor running at most {@code threads} tasks at the same time.
+     */
+    ExecutorService newFixedPool(String name, int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), threadFactory(name));
+    }
+
+    /**
+     * Returns an executor starting a thread for each task unless an idle one is available.
+     */
+    ExecutorService newCachedPool(String name) {
+        return Executors.newCachedThreadPool(threadFactory(name));
+    }
+
+    ThreadFactory threadFactory(String name) {
+        if (isVirtual()) {
+            try {
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOG.warn("Could not create virtual threads, using platform threads: " + e);
+            }
+        }
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
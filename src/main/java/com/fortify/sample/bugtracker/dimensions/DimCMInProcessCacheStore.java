@@ -0,0 +1,320 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache store keeping the entries in memory of this plugin instance only.
+ *
+ * The store can be snapshotted to a compact binary file so that a restarted plugin starts warm. The
+ * snapshot is bound to an owner, e.g. the server/database/connection triple and kind of data, and is only
+ * reloaded when the owner matches and the snapshot is younger than the given maximum age.
+ *
+ * Snapshots are written in the background every 30 seconds if anything changed, and on JVM shutdown. A
+ * single background thread and shutdown hook serve all snapshotted stores of the JVM. Stores are held
+ * weakly and let go of when closed; once none is left, the thread ends and the hook is removed, so neither
+ * keeps the plugin's classes loaded.
+ */
+final class DimCMInProcessCacheStore implements DimCMCacheStore {
+    private static final Log LOG = LogFactory.getLog(DimCMInProcessCacheStore.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x44434d43; // "DCMC"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long SNAPSHOT_MIN_INTERVAL = 30 * 1000L;
+
+    private static final Set<DimCMInProcessCacheStore> SNAPSHOTTED = Collections.newSetFromMap(new WeakHashMap<>());
+    private static ScheduledExecutorService flusher;
+    private static Thread shutdownHook;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final File snapshotFile;
+    private final String owner;
+    private final long maxAgeMillis;
+
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+    private volatile long lastSnapshot;
+
+    DimCMInProcessCacheStore() {
+        this(null, null, 0);
+    }
+
+    /**
+     * @param snapshotFile file to snapshot the entries to, or null for none
+     * @param owner        identifies the data, a snapshot of another owner is not loaded
+     * @param maxAgeMillis how old a snapshot and the entries in it may be to be loaded
+     */
+    DimCMInProcessCacheStore(File snapshotFile, String owner, long maxAgeMillis) {
+        this.snapshotFile = snapshotFile;
+        this.owner = owner;
+        this.maxAgeMillis = maxAgeMillis;
+        this.loaded = snapshotFile == null;
+        if (snapshotFile != null) {
+            register(this);
+        }
+    }
+
+    @Override
+    public Entry get(String key) {
+        ensureLoaded();
+        return entries.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value, long loadedAt) {
+        ensureLoaded();
+        entries.put(key, new Entry(value, loadedAt, versions.incrementAndGet()));
+        dirty = true;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        ensureLoaded();
+        if (entries.remove(key) == null) {
+            return false;
+        }
+        dirty = true;
+        return true;
+    }
+
+    @Override
+    public boolean remove(String key, long version) {
+        ensureLoaded();
+        final boolean[] removed = new boolean[1];
+        entries.computeIfPresent(key, (k, e) -> {
+            removed[0] = e.version == version;
+            return removed[0] ? null : e;
+        });
+        if (removed[0]) {
+            dirty = true;
+        }
+        return removed[0];
+    }
+
+    @Override
+    public int removeOlderThan(long time) {
+        ensureLoaded();
+        final int size = entries.size();
+        if (entries.values().removeIf(e -> e.loadedAt < time)) {
+            dirty = true;
+        }
+        return Math.max(0, size - entries.size());
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        // Nothing is loaded any more from an older snapshot
+        loaded = true;
+        dirty = true;
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    // ========================================================================
+    // Snapshot handling
+    // ========================================================================
+
+    /**
+     * Writes the snapshot if anything has changed since the last one, at most every 30 seconds.
+     */
+    @Override
+    public void flush() {
+        if (snapshotFile == null || !dirty || System.currentTimeMillis() - lastSnapshot < SNAPSHOT_MIN_INTERVAL) {
+            return;
+        }
+        writeSnapshotIfDirty();
+    }
+
+    /**
+     * Writes the snapshot if anything has changed since the last one, however recently that was written,
+     * and stops writing it in the background. Called when the store is replaced or the plugin stops.
+     */
+    @Override
+    public void close() {
+        if (snapshotFile == null) {
+            return;
+        }
+        deregister(this);
+        if (dirty) {
+            writeSnapshotIfDirty();
+        }
+    }
+
+    private static void register(DimCMInProcessCacheStore store) {
+        synchronized (SNAPSHOTTED) {
+            SNAPSHOTTED.add(store);
+            if (flusher != null) {
+                return;
+            }
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DimCM-Cache-Flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(DimCMInProcessCacheStore::flushAll, SNAPSHOT_MIN_INTERVAL,
+                    SNAPSHOT_MIN_INTERVAL, TimeUnit.MILLISECONDS);
+            shutdownHook = new Thread(DimCMInProcessCacheStore::closeAll, "DimCM-Cache-Close");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    private static void deregister(DimCMInProcessCacheStore store) {
+        synchronized (SNAPSHOTTED) {
+            SNAPSHOTTED.remove(store);
+            stopIfUnused();
+        }
+    }
+
+    private static void stopIfUnused() {
+        if (!SNAPSHOTTED.isEmpty() || flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher = null;
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is shutting down already and runs the hook
+        }
+        shutdownHook = null;
+    }
+
+    private static List<DimCMInProcessCacheStore> getSnapshotted() {
+        synchronized (SNAPSHOTTED) {
+            // Also notices stores that were dropped without being closed
+            stopIfUnused();
+            return new ArrayList<>(SNAPSHOTTED);
+        }
+    }
+
+    private static void flushAll() {
+        for (DimCMInProcessCacheStore store : getSnapshotted()) {
+            try {
+                store.flush();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to write Dimensions CM cache snapshot " + store.snapshotFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeAll() {
+        final List<DimCMInProcessCacheStore> stores;
+        synchronized (SNAPSHOTTED) {
+            stores = new ArrayList<>(SNAPSHOTTED);
+        }
+        for (DimCMInProcessCacheStore store : stores) {
+            if (store.dirty) {
+                store.writeSnapshotIfDirty();
+            }
+        }
+    }
+
+    private void writeSnapshotIfDirty() {
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            lastSnapshot = System.currentTimeMillis();
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                LOG.warn("Unable to write Dimensions CM cache snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (snapshotFile.isFile()) {
+                try {
+                    readSnapshot();
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Ignoring unreadable Dimensions CM cache snapshot " + snapshotFile + ": " + e.getMessage());
+                    entries.clear();
+                }
+            }
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        File dir = snapshotFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeUTF(owner);
+            out.writeLong(System.currentTimeMillis());
+            List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> me : snapshot) {
+                out.writeUTF(me.getKey());
+                out.writeLong(me.getValue().loadedAt);
+                DimCMMetadataCache.writeValue(out, me.getValue().value);
+            }
+        }
+        if (!tmp.renameTo(snapshotFile)) {
+            if (!snapshotFile.delete() || !tmp.renameTo(snapshotFile)) {
+                throw new IOException("Could not replace " + snapshotFile);
+            }
+        }
+        LOG.debug("Wrote Dimensions CM cache snapshot " + snapshotFile);
+    }
+
+    private void readSnapshot() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(snapshotFile))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                LOG.info("Discarding Dimensions CM cache snapshot with unsupported format: " + snapshotFile);
+                return;
+            }
+            String key = in.readUTF();
+            long savedAt = in.readLong();
+            long now = System.currentTimeMillis();
+            if (!owner.equalsIgnoreCase(key) || now - savedAt > maxAgeMillis) {
+                LOG.info("Discarding stale Dimensions CM cache snapshot for " + key);
+                return;
+            }
+            int count = in.readInt();
+            int loadedCount = 0;
+            for (int i = 0; i < count; i++) {
+                String entryKey = in.readUTF();
+                long loadedAt = in.readLong();
+                Object value = DimCMMetadataCache.readValue(in);
+                if (now - loadedAt <= maxAgeMillis) {
+                    entries.put(entryKey, new Entry(value, loadedAt, versions.incrementAndGet()));
+                    loadedCount++;
+                }
+            }
+            lastSnapshot = savedAt;
+            LOG.info("Loaded " + loadedCount + " Dimensions CM cache entries from " + snapshotFile);
+        }
+    }
+}
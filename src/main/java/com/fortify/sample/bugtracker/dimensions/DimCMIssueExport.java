@@ -0,0 +1,277 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Reads an SSC issue export as a list of rows.
+ *
+ * CSV exports need a header line; JSON exports are an array of issue objects, optionally wrapped in an
+ * object with a "data" array as returned by the SSC REST API. Nested JSON values are ignored.
+ */
+final class DimCMIssueExport {
+
+    private DimCMIssueExport() {
+    }
+
+    static List<Map<String, String>> read(File file) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            PushbackReader in = new PushbackReader(reader, 2);
+            int c = skipWhitespace(in);
+            if (c == '\uFEFF') {
+                c = skipWhitespace(in);
+            }
+            if (c == -1) {
+                return Collections.emptyList();
+            }
+            in.unread(c);
+            return c == '[' || c == '{' ? readJson(in) : readCsv(in);
+        }
+    }
+
+    // ========================================================================
+    // CSV
+    // ========================================================================
+
+    private static List<Map<String, String>> readCsv(PushbackReader in) throws IOException {
+        List<Map<String, String>> rows = new ArrayList<>();
+        Iterator<Map<String, String>> it = iterateCsv(in);
+        while (it.hasNext()) {
+            rows.add(it.next());
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rows of a CSV file one by one, for files too large to be read at once.
+     * I/O errors while reading are rethrown as {@link UncheckedIOException}.
+     */
+    static Iterator<Map<String, String>> iterateCsv(Reader reader) throws IOException {
+        final PushbackReader in = reader instanceof PushbackReader ? (PushbackReader) reader : new PushbackReader(reader, 2);
+        final List<String> header = readCsvRecord(in);
+        return new Iterator<Map<String, String>>() {
+            private Map<String, String> next = advance();
+
+            private Map<String, String> advance() {
+                try {
+                    List<String> record;
+                    while ((record = readCsvRecord(in)) != null) {
+                        if (header == null || (record.size() == 1 && record.get(0).isEmpty())) {
+                            continue;
+                        }
+                        Map<String, String> row = new LinkedHashMap<>();
+                        for (int i = 0; i < header.size() && i < record.size(); i++) {
+                            row.put(header.get(i).trim(), record.get(i));
+                        }
+                        return row;
+                    }
+                    return null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Map<String, String> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Map<String, String> res = next;
+                next = advance();
+                return res;
+            }
+        };
+    }
+
+    private static List<String> readCsvRecord(PushbackReader in) throws IOException {
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted CSV field");
+                }
+                if (c == '"') {
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next != -1) {
+                            in.unread(next);
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    int next = in.read();
+                    if (next != '\n' && next != -1) {
+                        in.unread(next);
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+    }
+
+    // ========================================================================
+    // JSON
+    // ========================================================================
+
+    private static List<Map<String, String>> readJson(PushbackReader in) throws IOException {
+        Object value = readJsonValue(in);
+        if (value instanceof Map) {
+            value = ((Map<?, ?>) value).get("data");
+        }
+        if (!(value instanceof List)) {
+            throw new IOException("Expected an array of issues");
+        }
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<String, String> row = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) item).entrySet()) {
+                if (e.getValue() instanceof String || e.getValue() instanceof Number || e.getValue() instanceof Boolean) {
+                    row.put((String) e.getKey(), e.getValue().toString());
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static Object readJsonValue(PushbackReader in) throws IOException {
+        int c = skipWhitespace(in);
+        switch (c) {
+            case '{':
+                Map<String, Object> map = new LinkedHashMap<>();
+                c = skipWhitespace(in);
+                while (c != '}') {
+                    if (c != '"') {
+                        throw new IOException("Expected a JSON object key");
+                    }
+                    String key = readJsonString(in);
+                    expect(in, ':');
+                    map.put(key, readJsonValue(in));
+                    c = skipWhitespace(in);
+                    if (c == ',') {
+                        c = skipWhitespace(in);
+                    } else if (c != '}') {
+                        throw new IOException("Expected ',' or '}' in JSON object");
+                    }
+                }
+                return map;
+            case '[':
+                List<Object> list = new ArrayList<>();
+                c = skipWhitespace(in);
+                while (c != ']') {
+                    in.unread(c);
+                    list.add(readJsonValue(in));
+                    c = skipWhitespace(in);
+                    if (c == ',') {
+                        c = skipWhitespace(in);
+                    } else if (c != ']') {
+                        throw new IOException("Expected ',' or ']' in JSON array");
+                    }
+                }
+                return list;
+            case '"':
+                return readJsonString(in);
+            case -1:
+                throw new IOException("Unexpected end of JSON input");
+            default:
+                StringBuilder literal = new StringBuilder();
+                while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+                    literal.append((char) c);
+                    c = in.read();
+                }
+                if (c != -1) {
+                    in.unread(c);
+                }
+                String s = literal.toString();
+                if ("null".equals(s)) {
+                    return null;
+                }
+                if ("true".equals(s) || "false".equals(s)) {
+                    return Boolean.valueOf(s);
+                }
+                try {
+                    return s.contains(".") || s.contains("e") || s.contains("E") ? (Number) Double.valueOf(s) : (Number) Long.valueOf(s);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid JSON literal: " + s);
+                }
+        }
+    }
+
+    private static String readJsonString(PushbackReader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '"') {
+            if (c == -1) {
+                throw new IOException("Unterminated JSON string");
+            }
+            if (c == '\\') {
+                c = in.read();
+                switch (c) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            hex[i] = (char) in.read();
+                        }
+                        sb.append((char) Integer.parseInt(new String(hex), 16));
+                        break;
+                    default: sb.append((char) c);
+                }
+            } else {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void expect(PushbackReader in, char expected) throws IOException {
+        if (skipWhitespace(in) != expected) {
+            throw new IOException("Expected '" + expected + "' in JSON input");
+        }
+    }
+
+    private static int skipWhitespace(PushbackReader in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && Character.isWhitespace(c));
+        return c;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
+
+/**
+ * Groups issues which should be tracked by one Dimensions CM request, e.g. all issues of one category in
+ * one file, so that a large scan does not turn into one request per issue.
+ *
+ * Issues are grouped by the configured dimensions. Product, project and request type are always part of
+ * the group, as a request cannot span them.
+ */
+final class DimCMIssueGrouper {
+
+    enum Dimension {
+        CATEGORY, FILE, PART, SEVERITY
+    }
+
+    private static final String KEY_SEPARATOR = "|";
+
+    private final List<Dimension> dimensions;
+
+    private DimCMIssueGrouper(List<Dimension> dimensions) {
+        this.dimensions = Collections.unmodifiableList(dimensions);
+    }
+
+    /**
+     * @param spec comma separated dimension names, empty to disable grouping
+     */
+    static DimCMIssueGrouper parse(String spec) {
+        List<Dimension> dimensions = new ArrayList<>();
+        for (String name : (spec == null ? "" : spec).split(",")) {
+            if (name.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                Dimension dimension = Dimension.valueOf(name.trim().toUpperCase());
+                if (!dimensions.contains(dimension)) {
+                    dimensions.add(dimension);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown issue grouping '" + name.trim() + "', expected one of "
+                        + Arrays.toString(Dimension.values()));
+            }
+        }
+        return new DimCMIssueGrouper(dimensions);
+    }
+
+    boolean isEnabled() {
+        return !dimensions.isEmpty();
+    }
+
+    /**
+     * Returns the values of an issue for the grouping dimensions.
+     *
+     * @param bugParams bug parameters the issue is filed with, supplying part and severity
+     * @param category  issue category, e.g. "SQL Injection"
+     * @param file      file the issue was found in
+     */
+    Map<Dimension, String> getValues(Map<String, String> bugParams, String category, String file) {
+        Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+        for (Dimension dimension : dimensions) {
+            String value;
+            switch (dimension) {
+                case CATEGORY:
+                    value = category;
+                    break;
+                case FILE:
+                    value = file;
+                    break;
+                case PART:
+                    value = bugParams.get(PARTS_PARAM_NAME);
+                    break;
+                default:
+                    value = bugParams.get(SEVERITY_PARAM_NAME);
+                    break;
+            }
+            values.put(dimension, value == null ? "" : value.trim());
+        }
+        return values;
+    }
+
+    /**
+     * Returns the key identifying the group of an issue.
+     */
+    String getKey(Map<String, String> bugParams, Map<Dimension, String> values) {
+        StringBuilder sb = new StringBuilder()
+                .append(bugParams.get(PRODUCT_PARAM_NAME)).append(KEY_SEPARATOR)
+                .append(bugParams.get(PROJECT_PARAM_NAME)).append(KEY_SEPARATOR)
+                .append(bugParams.get(REQ_TYPE_PARAM_NAME));
+        for (Dimension dimension : dimensions) {
+            sb.append(KEY_SEPARATOR).append(values.get(dimension));
+        }
+        // Keys are stored one per line in the group index
+        return sb.toString().replaceAll("[\\t\\r\\n]", " ").toUpperCase();
+    }
+
+    /**
+     * Returns the title of the request filed for a group.
+     */
+    String getSummary(Map<Dimension, String> values) {
+        StringJoiner sj = new StringJoiner(" / ", "Fortify issues: ", "");
+        for (Dimension dimension : dimensions) {
+            String value = values.get(dimension);
+            if (value != null && !value.isEmpty()) {
+                sj.add(value);
+            }
+        }
+        return sj.toString();
+    }
+
+    /**
+     * Groups items by key in one pass, keeping the order in which groups and items were first seen.
+     */
+    static <T> Map<String, List<T>> group(Iterator<T> items, Function<T, String> key) {
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        while (items.hasNext()) {
+            T item = items.next();
+            groups.computeIfAbsent(key.apply(item), k -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.fortify.pub.bugtracker.support.IssueDetail;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local index of Fortify issue instance IDs to the open Dimensions CM request they have been filed as.
+ *
+ * The index is kept in a plain text file (one "instanceId TAB requestId" line per issue) so that refiling
+ * the same issues after a restart is still detected without a server round-trip. Changes are appended to
+ * the file, a forgotten issue as a line without request ID, and the last line of an issue wins. The file
+ * is rewritten once most of its lines are outdated.
+ */
+final class DimCMIssueIndex {
+    private static final Log LOG = LogFactory.getLog(DimCMIssueIndex.class);
+
+    private static final Pattern ISSUE_IDS_LINE = Pattern.compile("Issue Ids:\\s*(.*)");
+    private static final Pattern ISSUE_ID_SEPARATOR = Pattern.compile("[,;\\s]+");
+    private static final int MIN_LINES_TO_COMPACT = 1000;
+
+    private final File indexFile;
+    private final Map<String, String> requestByInstance = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+    // Guarded by this
+    private final Map<String, Set<String>> instancesByRequest = new HashMap<>();
+    private final List<String> pending = new ArrayList<>();
+    private int fileLines;
+
+    DimCMIssueIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Collects the issue instance IDs of a submission, either from the issue details or, for batch
+     * submissions filed from the "$ATTRIBUTE_INSTANCE_ID$" description template, from the "Issue Ids:" line.
+     */
+    static List<String> getInstanceIds(List<IssueDetail> issueDetails, String description) {
+        Set<String> res = new LinkedHashSet<>();
+        if (issueDetails != null) {
+            for (IssueDetail issueDetail : issueDetails) {
+                if (issueDetail != null && issueDetail.getIssueInstanceId() != null) {
+                    res.add(issueDetail.getIssueInstanceId());
+                }
+            }
+        }
+        if (res.isEmpty() && description != null) {
+            Matcher m = ISSUE_IDS_LINE.matcher(description);
+            if (m.find()) {
+                for (String id : ISSUE_ID_SEPARATOR.split(m.group(1).trim())) {
+                    if (!id.isEmpty()) {
+                        res.add(id);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Returns the request all of the given issues have been filed as, or null when at least one of them is
+     * new or they were filed as different requests.
+     */
+    String findExistingRequest(List<String> instanceIds) {
+        ensureLoaded();
+        if (instanceIds.isEmpty()) {
+            return null;
+        }
+        String first = null;
+        for (String id : instanceIds) {
+            String requestId = requestByInstance.get(id);
+            if (requestId == null || first != null && !first.equals(requestId)) {
+                return null;
+            }
+            first = requestId;
+        }
+        return first;
+    }
+
+    synchronized void add(String requestId, List<String> instanceIds) {
+        ensureLoaded();
+        if (requestId == null) {
+            return;
+        }
+        for (String id : instanceIds) {
+            if (!requestId.equals(link(id, requestId))) {
+                pending.add(id + '\t' + requestId);
+            }
+        }
+    }
+
+    /**
+     * Forgets all issues filed as the given request, e.g. because it was closed or no longer exists.
+     */
+    synchronized void removeRequest(String requestId) {
+        ensureLoaded();
+        final Set<String> instanceIds = instancesByRequest.remove(requestId);
+        if (instanceIds == null) {
+            return;
+        }
+        for (String id : instanceIds) {
+            requestByInstance.remove(id, requestId);
+            pending.add(id + '\t');
+        }
+    }
+
+    /**
+     * Files an issue as a request, keeping the issues per request in step.
+     *
+     * @return the request the issue was filed as before, or null
+     */
+    private String link(String instanceId, String requestId) {
+        final String previous = requestByInstance.put(instanceId, requestId);
+        if (!requestId.equals(previous)) {
+            unlink(instanceId, previous);
+            instancesByRequest.computeIfAbsent(requestId, r -> new HashSet<>()).add(instanceId);
+        }
+        return previous;
+    }
+
+    private void unlink(String instanceId, String requestId) {
+        final Set<String> instanceIds = requestId == null ? null : instancesByRequest.get(requestId);
+        if (instanceIds != null && instanceIds.remove(instanceId) && instanceIds.isEmpty()) {
+            instancesByRequest.remove(requestId);
+        }
+    }
+
+    /**
+     * Writes the changes since the last flush to the index file.
+     */
+    synchronized void flush() {
+        if (indexFile == null || pending.isEmpty()) {
+            return;
+        }
+        File dir = indexFile.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            LOG.warn("Could not create directory " + dir);
+            return;
+        }
+        final int lines = fileLines + pending.size();
+        if (lines < MIN_LINES_TO_COMPACT || lines < 2 * requestByInstance.size()) {
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile, true), StandardCharsets.UTF_8))) {
+                for (String line : pending) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            } catch (IOException e) {
+                LOG.warn("Unable to write Dimensions CM issue index " + indexFile + ": " + e.getMessage());
+                return;
+            }
+            fileLines = lines;
+            pending.clear();
+            return;
+        }
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, String> e : requestByInstance.entrySet()) {
+                out.write(e.getKey());
+                out.write('\t');
+                out.write(e.getValue());
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to write Dimensions CM issue index " + indexFile + ": " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(indexFile) && (!indexFile.delete() || !tmp.renameTo(indexFile))) {
+            LOG.warn("Could not replace Dimensions CM issue index " + indexFile);
+            return;
+        }
+        fileLines = requestByInstance.size();
+        pending.clear();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (indexFile == null || !indexFile.isFile()) {
+                return;
+            }
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    fileLines++;
+                    int pos = line.indexOf('\t');
+                    if (pos == line.length() - 1) {
+                        unlink(line.substring(0, pos), requestByInstance.remove(line.substring(0, pos)));
+                    } else if (pos > 0) {
+                        link(line.substring(0, pos), line.substring(pos + 1));
+                    }
+                }
+                LOG.info("Loaded " + requestByInstance.size() + " filed issues from " + indexFile);
+            } catch (IOException e) {
+                LOG.warn("Ignoring unreadable Dimensions CM issue index " + indexFile + ": " + e.getMessage());
+            }
+        }
+    }
+}
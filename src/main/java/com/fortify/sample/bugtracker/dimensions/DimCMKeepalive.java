@@ -0,0 +1,54 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Background maintenance of pooled Dimensions CM sessions, so that the first call after a quiet period
+ * does not have to wait for a failed request and a new login.
+ *
+ * @see DimCMSessionPool#maintain(long, long)
+ */
+final class DimCMKeepalive implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DimCMKeepalive.class);
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param idleMillis   idle time after which a session is pinged
+     * @param maxAgeMillis age after which a session is replaced by a new login, 0 for no limit
+     */
+    DimCMKeepalive(final Supplier<Collection<DimCMSessionPool>> pools, final long idleMillis, final long maxAgeMillis) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "DimCM-Keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        // Check often enough that no session stays idle much longer than idleMillis
+        final long period = Math.max(1000L, idleMillis / 2);
+        scheduler.scheduleWithFixedDelay(() -> {
+            for (DimCMSessionPool pool : pools.get()) {
+                try {
+                    pool.maintain(idleMillis, maxAgeMillis);
+                } catch (RuntimeException e) {
+                    LOG.warn("Dimensions CM session maintenance failed: " + e.getMessage());
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces per operation deadlines on Dimensions CM calls and optionally hedges idempotent reads:
+ * when a read has not answered after the observed 95th percentile latency of its operation, a
+ * duplicate is issued on another session and whichever answers first wins.
+ *
+ * Calls that lose the race or miss their deadline are abandoned, not interrupted: an interrupt could break
+ * a pooled session shared with other callers, so the call is left to finish on its session in the background.
+ */
+final class DimCMLatencyGuard {
+    private static final Log LOG = LogFactory.getLog(DimCMLatencyGuard.class);
+
+    static final String DEFAULT_OPERATION = "default";
+
+    private static final int SAMPLE_SIZE = 128;
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+    private static final long MIN_HEDGE_DELAY = 20;
+    private static final int METRICS_LOG_INTERVAL = 100;
+
+    private static final class OperationStats {
+        private final long[] samples = new long[SAMPLE_SIZE];
+        private int count;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final AtomicLong hedgesFired = new AtomicLong();
+        final AtomicLong hedgesWon = new AtomicLong();
+
+        synchronized void record(long millis) {
+            samples[count++ % SAMPLE_SIZE] = millis;
+        }
+
+        synchronized long p95() {
+            if (count < MIN_SAMPLES_FOR_HEDGING) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, Math.min(count, SAMPLE_SIZE));
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+        }
+    }
+
+    private final Map<String, Long> deadlines;
+    private final boolean hedging;
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private volatile DimCMEventLog eventLog;
+
+    /**
+     * @param deadlines operation name to deadline in milliseconds, {@link #DEFAULT_OPERATION} applies to all others;
+     *                  0 means no deadline
+     * @param hedging   whether idempotent reads are hedged
+     * @param executors   runs the guarded calls
+     */
+    DimCMLatencyGuard(Map<String, Long> deadlines, boolean hedging, DimCMExecutors executors) {
+        this.deadlines = new HashMap<>(deadlines);
+        this.hedging = hedging;
+        this.executor = executors.newCachedPool("DimCM-Call");
+    }
+
+    /**
+     * Parses a comma separated list of operation=milliseconds pairs; a bare number is the default deadline.
+     */
+    static Map<String, Long> parseDeadlines(String value) {
+        Map<String, Long> res = new HashMap<>();
+        if (value == null) {
+            return res;
+        }
+        for (String pair : value.split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] kv = pair.split("=");
+            try {
+                if (kv.length == 1) {
+                    res.put(DEFAULT_OPERATION, Long.parseLong(kv[0].trim()));
+                } else {
+                    res.put(kv[0].trim(), Long.parseLong(kv[1].trim()));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid operation deadline: " + pair);
+            }
+        }
+        return res;
+    }
+
+    void setEventLog(DimCMEventLog eventLog) {
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Runs a call within the deadline of its operation.
+     *
+     * @param hedge duplicate of the call to run on another session, or null if the call must not be hedged
+     */
+    <T> T call(String operation, Callable<T> primary, Callable<T> hedge) {
+        final DimCMEventLog log = eventLog;
+        if (log == null) {
+            return guardedCall(operation, primary, hedge);
+        }
+        final long start = System.nanoTime();
+        try {
+            T result = guardedCall(operation, primary, hedge);
+            log.record(operation, null, start, null);
+            return result;
+        } catch (RuntimeException e) {
+            log.record(operation, null, start, e);
+            throw e;
+        }
+    }
+
+    private <T> T guardedCall(String operation, Callable<T> primary, Callable<T> hedge) {
+        OperationStats opStats = stats.computeIfAbsent(operation, o -> new OperationStats());
+        opStats.calls.incrementAndGet();
+        long deadline = deadlineFor(operation);
+        long hedgeDelay = hedging && hedge != null ? opStats.p95() : -1;
+        long start = System.nanoTime();
+        if (deadline <= 0 && hedgeDelay < 0 || executor.isShutdown()) {
+            return unguardedCall(primary, opStats, start);
+        }
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        try {
+            completion.submit(primary);
+        } catch (RejectedExecutionException e) {
+            // Closed by a reconfiguration while this call was on its way
+            return unguardedCall(primary, opStats, start);
+        }
+        Future<T> hedgeFuture = null;
+        int running = 1;
+        try {
+            Throwable failure = null;
+            while (running > 0) {
+                long remaining = deadline > 0 ? deadline - elapsed(start) : Long.MAX_VALUE;
+                long wait = remaining;
+                if (hedgeFuture == null && hedgeDelay >= 0) {
+                    wait = Math.min(remaining, Math.max(hedgeDelay, MIN_HEDGE_DELAY) - elapsed(start));
+                }
+                Future<T> done = wait > 0 ? completion.poll(wait, TimeUnit.MILLISECONDS) : completion.poll();
+                if (done == null) {
+                    if (hedgeFuture == null && hedgeDelay >= 0 && (deadline <= 0 || elapsed(start) < deadline)
+                            && !executor.isShutdown()) {
+                        hedgeFuture = completion.submit(hedge);
+                        running++;
+                        if (opStats.hedgesFired.incrementAndGet() % METRICS_LOG_INTERVAL == 0) {
+                            LOG.info("Dimensions CM call metrics: " + getMetrics());
+                        }
+                        continue;
+                    }
+                    opStats.timeouts.incrementAndGet();
+                    throw new RuntimeException("Error: Dimensions CM operation " + operation
+                            + " did not complete within " + deadline + " ms");
+                }
+                running--;
+                try {
+                    T result = done.get();
+                    if (done == hedgeFuture) {
+                        opStats.hedgesWon.incrementAndGet();
+                    }
+                    opStats.record(elapsed(start));
+                    return result;
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                }
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new RuntimeException(failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Dimensions CM operation " + operation, e);
+        }
+    }
+
+    private static <T> T unguardedCall(Callable<T> call, OperationStats opStats, long start) {
+        try {
+            return call.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            opStats.record(elapsed(start));
+        }
+    }
+
+    /**
+     * Stops accepting guarded calls; later calls run unguarded on the caller's thread. Abandoned calls
+     * still running are left to finish.
+     */
+    void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns per operation call, timeout and hedging counters.
+     */
+    String getMetrics() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, OperationStats> e : new java.util.TreeMap<>(stats).entrySet()) {
+            OperationStats s = e.getValue();
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.getKey()).append("[calls=").append(s.calls.get())
+                    .append(" p95=").append(s.p95())
+                    .append(" timeouts=").append(s.timeouts.get())
+                    .append(" hedges=").append(s.hedgesFired.get())
+                    .append(" hedgesWon=").append(s.hedgesWon.get()).append(']');
+        }
+        return sb.toString();
+    }
+
+    private long deadlineFor(String operation) {
+        Long deadline = deadlines.get(operation);
+        if (deadline == null) {
+            deadline = deadlines.get(DEFAULT_OPERATION);
+        }
+        return deadline == null ? 0 : deadline;
+    }
+
+    private static long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.util.*;
+
+/**
+ * Transition graph of a request lifecycle, used to find the states a request has to be actioned through
+ * without trying transitions on the server.
+ *
+ * The graph is built from "FROM TAB TO TAB N|O" edge strings (normal or off-normal transition) as kept in
+ * the metadata cache.
+ */
+final class DimCMLifecycleGraph {
+
+    static final char EDGE_SEPARATOR = '\t';
+
+    private final String name;
+    private final Map<String, List<String>> normal = new HashMap<>();
+    private final Map<String, List<String>> all = new HashMap<>();
+
+    DimCMLifecycleGraph(String name, List<String> edges) {
+        this.name = name;
+        for (String edge : edges) {
+            String[] parts = edge.split(String.valueOf(EDGE_SEPARATOR));
+            if (parts.length < 2) {
+                continue;
+            }
+            all.computeIfAbsent(parts[0], s -> new ArrayList<>()).add(parts[1]);
+            if (parts.length < 3 || "N".equals(parts[2])) {
+                normal.computeIfAbsent(parts[0], s -> new ArrayList<>()).add(parts[1]);
+            }
+        }
+    }
+
+    static String edge(String fromState, String toState, boolean isNormal) {
+        return fromState + EDGE_SEPARATOR + toState + EDGE_SEPARATOR + (isNormal ? "N" : "O");
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the states to action a request through to get from one state to another, preferring normal
+     * transitions over off-normal ones.
+     *
+     * @return the states after {@code fromState} up to and including {@code toState}, an empty list if both
+     * are the same, or null if the target cannot be reached
+     */
+    List<String> findPath(String fromState, String toState) {
+        if (fromState.equals(toState)) {
+            return Collections.emptyList();
+        }
+        List<String> path = findPath(normal, fromState, toState);
+        return path != null ? path : findPath(all, fromState, toState);
+    }
+
+    private static List<String> findPath(Map<String, List<String>> graph, String fromState, String toState) {
+        Map<String, String> previous = new HashMap<>();
+        Deque<String> queue = new ArrayDeque<>();
+        previous.put(fromState, null);
+        queue.add(fromState);
+        while (!queue.isEmpty()) {
+            String state = queue.poll();
+            for (String next : graph.getOrDefault(state, Collections.<String>emptyList())) {
+                if (previous.containsKey(next)) {
+                    continue;
+                }
+                previous.put(next, state);
+                if (next.equals(toState)) {
+                    LinkedList<String> path = new LinkedList<>();
+                    for (String s = next; s != null && !s.equals(fromState); s = previous.get(s)) {
+                        path.addFirst(s);
+                    }
+                    return path;
+                }
+                queue.add(next);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name + all;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of Dimensions CM metadata (attribute definitions, catalogues and request states) on top of a
+ * {@link DimCMCacheStore}.
+ *
+ * With the in-process store the cache can be snapshotted, see {@link DimCMInProcessCacheStore}, so that a
+ * restarted plugin starts warm. A shared store outlives the plugin by itself and is not snapshotted.
+ */
+final class DimCMMetadataCache {
+    private static final Log LOG = LogFactory.getLog(DimCMMetadataCache.class);
+
+    private static final int MAX_MISSING_ENTRIES = 10000;
+
+    private static final byte VALUE_STRING = 0;
+    private static final byte VALUE_INT = 1;
+    private static final byte VALUE_LIST = 2;
+
+    // REQUEST_STATE only holds negative results, known request states are kept by DimCMStateCache
+    enum Region {
+        ATTRIBUTE_NUMBER, ATTRIBUTE_VALUES, PRODUCTS, REQUEST_TYPES, PROJECTS, PARTS, ROLE_USERS, REQUEST_STATE,
+        LIFECYCLES, REQUEST_SCHEMAS
+    }
+
+    private final String serverKey;
+    private final long ttlMillis;
+    private final DimCMCacheStore store;
+    private final long negativeTtlMillis;
+    private final Map<String, Long> missing = new ConcurrentHashMap<>();
+
+    DimCMMetadataCache(String server, String dbName, String dbConn, long ttlMillis, long negativeTtlMillis,
+                       DimCMCacheStore store) {
+        this.serverKey = server + "|" + dbName + "@" + dbConn;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = Math.min(negativeTtlMillis, ttlMillis);
+        this.store = store;
+    }
+
+    String getServerKey() {
+        return serverKey;
+    }
+
+    long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<String> getList(Region region, String key, Supplier<List<String>> loader) {
+        return (List<String>) get(region, key, () -> DimCMCatalogue.of(loader.get()));
+    }
+
+    Integer getInt(Region region, String key, Supplier<Integer> loader) {
+        return (Integer) get(region, key, loader::get);
+    }
+
+    void invalidate(Region region, String key) {
+        store.remove(entryKey(region, key));
+    }
+
+    void clear() {
+        store.clear();
+        missing.clear();
+    }
+
+    // ========================================================================
+    // Negative results
+    // ========================================================================
+
+    /**
+     * Returns true if the object was recently looked up on the server and not found.
+     */
+    boolean isMissing(Region region, String key) {
+        Long expiresAt = missing.get(entryKey(region, key));
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt < System.currentTimeMillis()) {
+            missing.remove(entryKey(region, key), expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers for a short time that an object does not exist. Negative results are not persisted.
+     */
+    void markMissing(Region region, String key) {
+        if (negativeTtlMillis <= 0) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if (missing.size() >= MAX_MISSING_ENTRIES) {
+            missing.values().removeIf(expiresAt -> expiresAt < now);
+            if (missing.size() >= MAX_MISSING_ENTRIES) {
+                missing.clear();
+            }
+        }
+        missing.put(entryKey(region, key), now + negativeTtlMillis);
+    }
+
+    private Object get(Region region, String key, Supplier<Object> loader) {
+        DimCMCacheStore.Entry e = lookup(region, key);
+        if (e != null) {
+            return e.value;
+        }
+        Object value = loader.get();
+        if (value != null) {
+            store.put(entryKey(region, key), value, System.currentTimeMillis());
+        }
+        return value;
+    }
+
+    private DimCMCacheStore.Entry lookup(Region region, String key) {
+        DimCMCacheStore.Entry e = store.get(entryKey(region, key));
+        if (e == null) {
+            return null;
+        }
+        // Entries loaded by another node expire with the time they were loaded there
+        if (System.currentTimeMillis() - e.loadedAt > ttlMillis) {
+            // Another node may just have refreshed it
+            store.remove(entryKey(region, key), e.version);
+            return null;
+        }
+        return e;
+    }
+
+    private static String entryKey(Region region, String key) {
+        return region.ordinal() + ":" + (key == null ? "" : key.toUpperCase());
+    }
+
+    // ========================================================================
+    // Persistence
+    // ========================================================================
+
+    /**
+     * Writes the snapshot of the store if anything has changed since the last one, however recently that
+     * was written. Called when the cache is replaced by a new configuration.
+     */
+    void close() {
+        store.close();
+    }
+
+    // ========================================================================
+    // Value serialization, shared by the cache stores
+    // ========================================================================
+
+    @SuppressWarnings("unchecked")
+    static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof List) {
+            List<String> list = (List<String>) value;
+            out.writeByte(VALUE_LIST);
+            out.writeInt(list.size());
+            for (String s : list) {
+                out.writeUTF(s);
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            out.writeUTF(String.valueOf(value));
+        }
+    }
+
+    static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_LIST:
+                int size = in.readInt();
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(in.readUTF());
+                }
+                return DimCMCatalogue.of(list);
+            case VALUE_STRING:
+                return in.readUTF();
+            default:
+                throw new IOException("Unknown cache value type " + type);
+        }
+    }
+}
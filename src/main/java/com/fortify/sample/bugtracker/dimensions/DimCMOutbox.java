@@ -0,0 +1,550 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.fortify.pub.bugtracker.support.UserAuthenticationStore;
+import com.serena.dmclient.api.DimensionsConnectionException;
+import com.serena.dmclient.api.DimensionsNetworkException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable outbox for asynchronous bug filing.
+ *
+ * Submissions are appended to a local journal and acknowledged with a provisional ID. A background drainer
+ * files pending submissions in batches, retrying with an increasing delay, and records the real request ID
+ * in the journal so that the next state sync can hand it back to SSC.
+ *
+ * Credentials are never written to the journal, only the name of the submitting user. Each submission is
+ * filed with the credentials of the user who submitted it, kept in memory; submissions left over from a
+ * previous run are filed once their user files a bug or syncs a queued one again.
+ *
+ * Records are only ever appended. The journal is rewritten once most of its lines are outdated, and resolved
+ * IDs are forgotten after a retention period. Lines that cannot be read are logged, skipped and kept when
+ * the journal is rewritten. Attempts that fail because Dimensions CM cannot be reached are retried without
+ * counting towards the maximum number of attempts.
+ */
+final class DimCMOutbox {
+    private static final Log LOG = LogFactory.getLog(DimCMOutbox.class);
+
+    static final String PROVISIONAL_ID_PREFIX = "PENDING-";
+
+    private static final String RECORD_SUBMIT = "SUBMIT";
+    private static final String RECORD_DONE = "DONE";
+    private static final String RECORD_FAILED = "FAILED";
+
+    private static final long DRAIN_INTERVAL = 10 * 1000L;
+    private static final long MAX_RETRY_DELAY = 30 * 60 * 1000L;
+    private static final long RESOLVED_RETENTION = 30 * 24 * 60 * 60 * 1000L;
+    private static final long CLOSE_TIMEOUT = 60 * 1000L;
+    private static final int MIN_LINES_TO_COMPACT = 1000;
+
+    /**
+     * Files outbox submissions in Dimensions CM.
+     */
+    interface Sink {
+        DimCMClient connect(UserAuthenticationStore credentials);
+
+        String file(DimCMClient cmClient, Map<String, String> params, List<String> instanceIds);
+    }
+
+    private static final class Submission {
+        final String provisionalId;
+        final Map<String, String> params;
+        final List<String> instanceIds;
+        /** Submitting user, null for submissions journaled by older versions */
+        final String username;
+        String encoded;
+        int attempts;
+        int outages;
+        long nextAttempt;
+
+        Submission(String provisionalId, Map<String, String> params, List<String> instanceIds, String username) {
+            this.provisionalId = provisionalId;
+            this.params = params;
+            this.instanceIds = instanceIds;
+            this.username = username;
+        }
+    }
+
+    private static final class Outcome {
+        final String value;
+        final long time;
+
+        Outcome(String value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+
+    private final File journal;
+    private final Sink sink;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    private final Map<String, Submission> pending = new LinkedHashMap<>();
+    private final Map<String, Outcome> resolved = new HashMap<>();
+    private final Map<String, Outcome> failed = new HashMap<>();
+    /** Journal lines that could not be read, kept as they are */
+    private final List<String> unreadable = new ArrayList<>();
+    private int journalLines;
+
+    private final Map<String, UserAuthenticationStore> credentials = new ConcurrentHashMap<>();
+    private ScheduledExecutorService drainer;
+    private boolean closed;
+
+    DimCMOutbox(File journal, Sink sink, int batchSize, int maxAttempts) {
+        this.journal = journal;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        replayJournal();
+    }
+
+    static boolean isProvisionalId(String bugId) {
+        return bugId != null && bugId.startsWith(PROVISIONAL_ID_PREFIX);
+    }
+
+    /**
+     * Journals a submission and returns its provisional ID.
+     */
+    synchronized String submit(Map<String, String> params, List<String> instanceIds, UserAuthenticationStore credentials) {
+        setCredentials(credentials);
+        String provisionalId = PROVISIONAL_ID_PREFIX + UUID.randomUUID().toString().replace("-", "").substring(0, 16).toUpperCase();
+        Submission submission = new Submission(provisionalId, new LinkedHashMap<>(params), new ArrayList<>(instanceIds),
+                credentials.getUserName());
+        submission.encoded = encode(submission);
+        appendRecord(RECORD_SUBMIT, provisionalId, submission.encoded);
+        pending.put(provisionalId, submission);
+        startDrainer();
+        LOG.info("Queued bug for Dimensions CM as " + provisionalId);
+        return provisionalId;
+    }
+
+    /**
+     * What became of a provisional ID.
+     */
+    static final class Resolution {
+        enum Status {
+            PENDING, FILED, FAILED, UNKNOWN
+        }
+
+        final Status status;
+        /** Request ID if filed, error if failed, otherwise null */
+        final String value;
+
+        Resolution(Status status, String value) {
+            this.status = status;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Returns what became of a provisional ID. IDs forgotten after their retention period, or never queued
+     * here, are UNKNOWN.
+     */
+    synchronized Resolution resolve(String provisionalId) {
+        Outcome requestId = resolved.get(provisionalId);
+        if (requestId != null) {
+            return new Resolution(Resolution.Status.FILED, requestId.value);
+        }
+        if (pending.containsKey(provisionalId)) {
+            return new Resolution(Resolution.Status.PENDING, null);
+        }
+        Outcome error = failed.get(provisionalId);
+        return error != null ? new Resolution(Resolution.Status.FAILED, error.value)
+                : new Resolution(Resolution.Status.UNKNOWN, null);
+    }
+
+    /**
+     * Makes the credentials of a user available for filing the submissions of that user.
+     */
+    void setCredentials(UserAuthenticationStore credentials) {
+        if (credentials != null && credentials.getUserName() != null
+                && this.credentials.put(credentials.getUserName(), credentials) == null) {
+            drainSoon();
+        }
+    }
+
+    /**
+     * Drains now rather than at the next interval, e.g. because submissions waiting for their user can be filed.
+     */
+    private synchronized void drainSoon() {
+        if (drainer != null && !pending.isEmpty()) {
+            drainer.execute(this::drain);
+        }
+    }
+
+    /**
+     * Takes over the credentials known to a previous outbox on the same journal.
+     */
+    void copyCredentials(DimCMOutbox previous) {
+        credentials.putAll(previous.credentials);
+    }
+
+    private UserAuthenticationStore getCredentials(Submission s) {
+        if (s.username != null) {
+            return credentials.get(s.username);
+        }
+        Iterator<UserAuthenticationStore> any = credentials.values().iterator();
+        return any.hasNext() ? any.next() : null;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the drainer, waiting for a running batch to finish so that a new outbox on the same journal
+     * does not file it again.
+     */
+    void close() {
+        final ScheduledExecutorService running;
+        synchronized (this) {
+            closed = true;
+            running = drainer;
+            drainer = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            if (!running.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Dimensions CM outbox drainer is still filing after " + CLOSE_TIMEOUT / 1000 + " seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startDrainer() {
+        if (drainer == null && !closed) {
+            drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "DimCM-Outbox-Drainer");
+                t.setDaemon(true);
+                return t;
+            });
+            drainer.scheduleWithFixedDelay(this::drain, 0, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        try {
+            Map<UserAuthenticationStore, List<Submission>> batches = new LinkedHashMap<>();
+            for (Submission s : nextBatch()) {
+                UserAuthenticationStore user = getCredentials(s);
+                // Waits for its user otherwise
+                if (user != null) {
+                    batches.computeIfAbsent(user, k -> new ArrayList<>()).add(s);
+                }
+            }
+            for (Map.Entry<UserAuthenticationStore, List<Submission>> batch : batches.entrySet()) {
+                drain(batch.getKey(), batch.getValue());
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Unexpected error while draining the Dimensions CM outbox", e);
+        }
+    }
+
+    private void drain(UserAuthenticationStore user, List<Submission> batch) {
+        DimCMClient cmClient;
+        try {
+            cmClient = sink.connect(user);
+        } catch (RuntimeException e) {
+            LOG.warn("Dimensions CM not available, " + batch.size() + " queued bugs will be retried: " + e.getMessage());
+            for (Submission s : batch) {
+                scheduleRetry(s, e, false);
+            }
+            return;
+        }
+        for (Submission s : batch) {
+            try {
+                String requestId = sink.file(cmClient, s.params, s.instanceIds);
+                completed(s, requestId);
+            } catch (RuntimeException e) {
+                scheduleRetry(s, e, !isOutage(e));
+            }
+        }
+        synchronized (this) {
+            compactIfOutdated();
+        }
+    }
+
+    private static boolean isOutage(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof DimensionsConnectionException || t instanceof DimensionsNetworkException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized List<Submission> nextBatch() {
+        long now = System.currentTimeMillis();
+        List<Submission> res = new ArrayList<>();
+        for (Submission s : pending.values()) {
+            if (s.nextAttempt <= now) {
+                res.add(s);
+                if (res.size() >= batchSize) {
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
+    private synchronized void completed(Submission s, String requestId) {
+        final long now = System.currentTimeMillis();
+        appendRecord(RECORD_DONE, s.provisionalId, requestId + '\t' + now);
+        pending.remove(s.provisionalId);
+        resolved.put(s.provisionalId, new Outcome(requestId, now));
+        LOG.info("Filed queued bug " + s.provisionalId + " as Dimensions CM Request " + requestId);
+    }
+
+    /**
+     * @param counted false if Dimensions CM could not be reached, which is retried for as long as it takes
+     */
+    private synchronized void scheduleRetry(Submission s, RuntimeException e, boolean counted) {
+        if (!counted) {
+            s.outages++;
+            s.nextAttempt = System.currentTimeMillis() + Math.min(DRAIN_INTERVAL << Math.min(s.outages, 20), MAX_RETRY_DELAY);
+            LOG.debug("Dimensions CM not reachable for queued bug " + s.provisionalId + ": " + e.getMessage());
+            return;
+        }
+        s.attempts++;
+        if (s.attempts >= maxAttempts) {
+            String error = String.valueOf(e.getMessage()).replace('\n', ' ').replace('\t', ' ');
+            final long now = System.currentTimeMillis();
+            appendRecord(RECORD_FAILED, s.provisionalId, error + '\t' + now);
+            pending.remove(s.provisionalId);
+            failed.put(s.provisionalId, new Outcome(error, now));
+            LOG.error("Giving up filing queued bug " + s.provisionalId + " after " + s.attempts + " attempts: " + error);
+            return;
+        }
+        s.nextAttempt = System.currentTimeMillis() + Math.min(DRAIN_INTERVAL << s.attempts, MAX_RETRY_DELAY);
+        LOG.debug("Filing queued bug " + s.provisionalId + " failed (attempt " + s.attempts + "): " + e.getMessage());
+    }
+
+    // ========================================================================
+    // Journal handling
+    // ========================================================================
+
+    private void appendRecord(String type, String provisionalId, String value) {
+        File dir = journal.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Could not create directory " + dir);
+        }
+        final String line = type + '\t' + provisionalId + '\t' + value.replace('\n', ' ') + '\n';
+        // A write torn by a crash leaves the last line unterminated, which must not swallow this record
+        final boolean terminated = !journal.exists() || isTerminated(journal);
+        try (RandomAccessFile out = new RandomAccessFile(journal, "rw")) {
+            out.seek(out.length());
+            out.write(((terminated ? "" : "\n") + line).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write outbox journal " + journal + ": " + e.getMessage(), e);
+        }
+        journalLines++;
+    }
+
+    /**
+     * Rewrites the journal once most of its lines are outdated, so that it neither grows forever nor is
+     * rewritten on every change.
+     */
+    private void compactIfOutdated() {
+        final long expired = System.currentTimeMillis() - RESOLVED_RETENTION;
+        resolved.values().removeIf(o -> o.time < expired);
+        failed.values().removeIf(o -> o.time < expired);
+        final int live = pending.size() + resolved.size() + failed.size() + unreadable.size();
+        if (journalLines >= MIN_LINES_TO_COMPACT && journalLines > 2 * live) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrites the journal with the pending submissions, the outcomes still within their retention and the
+     * lines that could not be read.
+     */
+    private void compact() {
+        File tmp = new File(journal.getPath() + ".tmp");
+        int lines = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (String line : unreadable) {
+                out.write(line + '\n');
+                lines++;
+            }
+            for (Submission s : pending.values()) {
+                out.write(RECORD_SUBMIT + '\t' + s.provisionalId + '\t' + s.encoded + '\n');
+                lines++;
+            }
+            for (Map.Entry<String, Outcome> e : resolved.entrySet()) {
+                out.write(RECORD_DONE + '\t' + e.getKey() + '\t' + e.getValue().value + '\t' + e.getValue().time + '\n');
+                lines++;
+            }
+            for (Map.Entry<String, Outcome> e : failed.entrySet()) {
+                out.write(RECORD_FAILED + '\t' + e.getKey() + '\t' + e.getValue().value + '\t' + e.getValue().time + '\n');
+                lines++;
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not compact outbox journal " + journal + ": " + e.getMessage());
+            return;
+        }
+        if (!tmp.renameTo(journal) && (!journal.delete() || !tmp.renameTo(journal))) {
+            LOG.warn("Could not replace outbox journal " + journal);
+            return;
+        }
+        journalLines = lines;
+    }
+
+    private void replayJournal() {
+        if (!journal.isFile()) {
+            return;
+        }
+        final boolean torn = !isTerminated(journal);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            final long now = System.currentTimeMillis();
+            String line = in.readLine();
+            while (line != null) {
+                final String next = in.readLine();
+                journalLines++;
+                if (!line.isEmpty()) {
+                    try {
+                        if (next == null && torn) {
+                            // Cut short by a crash, it may still parse but carry a truncated value
+                            throw new IllegalArgumentException("Unterminated last line");
+                        }
+                        replayRecord(line, now);
+                    } catch (RuntimeException e) {
+                        LOG.error("Skipping unreadable line " + journalLines + " of outbox journal " + journal + ": " + e.getMessage());
+                        unreadable.add(line);
+                    }
+                }
+                line = next;
+            }
+        } catch (IOException e) {
+            LOG.error("Could not read outbox journal " + journal + ": " + e.getMessage());
+        }
+        if (!pending.isEmpty()) {
+            LOG.info(pending.size() + " queued bugs found in outbox journal " + journal);
+            startDrainer();
+        }
+    }
+
+    private static boolean isTerminated(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() == 0) {
+                return true;
+            }
+            in.seek(in.length() - 1);
+            return in.read() == '\n';
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void replayRecord(String line, long now) {
+        String[] record = line.split("\t", 4);
+        if (record.length < 3) {
+            throw new IllegalArgumentException("Incomplete record");
+        }
+        // Records written by older versions carry no time
+        final long time = record.length > 3 ? parseTime(record[3], now) : now;
+        switch (record[0]) {
+            case RECORD_SUBMIT:
+                Submission submission = decode(record[1], record[2]);
+                submission.encoded = record[2];
+                pending.put(record[1], submission);
+                break;
+            case RECORD_DONE:
+                pending.remove(record[1]);
+                resolved.put(record[1], new Outcome(record[2], time));
+                break;
+            case RECORD_FAILED:
+                pending.remove(record[1]);
+                failed.put(record[1], new Outcome(record[2], time));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record type " + record[0]);
+        }
+    }
+
+    private static long parseTime(String value, long defaultValue) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String encode(Submission s) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(s.params.size());
+            for (Map.Entry<String, String> e : s.params.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeBoolean(e.getValue() != null);
+                if (e.getValue() != null) {
+                    writeLongUTF(out, e.getValue());
+                }
+            }
+            out.writeInt(s.instanceIds.size());
+            for (String id : s.instanceIds) {
+                out.writeUTF(id);
+            }
+            out.writeBoolean(s.username != null);
+            if (s.username != null) {
+                out.writeUTF(s.username);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    private static Submission decode(String provisionalId, String value) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(value)))) {
+            int count = in.readInt();
+            Map<String, String> params = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                params.put(key, in.readBoolean() ? readLongUTF(in) : null);
+            }
+            count = in.readInt();
+            List<String> instanceIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                instanceIds.add(in.readUTF());
+            }
+            // Older records end here
+            String username = in.available() > 0 && in.readBoolean() ? in.readUTF() : null;
+            return new Submission(provisionalId, params, instanceIds, username);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupt outbox record " + provisionalId + ": " + e, e);
+        }
+    }
+
+    // writeUTF is limited to 64KB, descriptions may be longer
+    private static void writeLongUTF(DataOutputStream out, String value) throws IOException {
+        byte[] b = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readLongUTF(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] b = new byte[length];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -74,6 +74,126 @@ final class DimCMPluginConstants {
 	public static final String DIMCM_SSC_STATUS_DESCRIPTION = "The field name of a Dimensions CM text field to updated with SSC status";
 	public static final String DIMCM_SSC_STATUS_DEFAULT_VALUE = "SSC_STATUS";
 
+	public static final String DIMCM_CACHE_DIR_CONFIG_NAME = "dimCmCacheDir";
+	public static final String DIMCM_CACHE_DIR_LABEL = "Cache Directory";
+	public static final String DIMCM_CACHE_DIR_DESCRIPTION = "Directory for the plugin's metadata cache snapshot (defaults to a folder in the temporary directory)";
+	public static final String DIMCM_CACHE_DIR_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_CACHE_TTL_CONFIG_NAME = "dimCmCacheTtl";
+	public static final String DIMCM_CACHE_TTL_LABEL = "Cache Time To Live (minutes)";
+	public static final String DIMCM_CACHE_TTL_DESCRIPTION = "How long cached Dimensions CM metadata and catalogues are reused, 0 disables caching";
+	public static final String DIMCM_CACHE_TTL_DEFAULT_VALUE = "60";
+
+	public static final String DIMCM_SHARED_CACHE_DIR_CONFIG_NAME = "dimCmSharedCacheDir";
+	public static final String DIMCM_SHARED_CACHE_DIR_LABEL = "Shared Cache Directory";
+	public static final String DIMCM_SHARED_CACHE_DIR_DESCRIPTION = "Directory shared by all SSC nodes, e.g. on a network file system, to keep cached Dimensions CM metadata, catalogues and request states in, so that each is loaded from Dimensions CM by one node only. Leave empty to cache in each SSC node separately";
+	public static final String DIMCM_SHARED_CACHE_DIR_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_NEGATIVE_CACHE_TTL_CONFIG_NAME = "dimCmNegativeCacheTtl";
+	public static final String DIMCM_NEGATIVE_CACHE_TTL_LABEL = "Not Found Cache Time To Live (seconds)";
+	public static final String DIMCM_NEGATIVE_CACHE_TTL_DESCRIPTION = "How long products, design parts and requests that were not found are not looked up again, 0 disables";
+	public static final String DIMCM_NEGATIVE_CACHE_TTL_DEFAULT_VALUE = "120";
+
+	public static final String DIMCM_OWNER_CHOICE_LIMIT_CONFIG_NAME = "dimCmOwnerChoiceLimit";
+	public static final String DIMCM_OWNER_CHOICE_LIMIT_LABEL = "Owner Choice Limit";
+	public static final String DIMCM_OWNER_CHOICE_LIMIT_DESCRIPTION = "Maximum number of users offered in the Owner list, longer lists are narrowed down with the Owner Name Starts With choice";
+	public static final String DIMCM_OWNER_CHOICE_LIMIT_DEFAULT_VALUE = "500";
+
+	public static final String DIMCM_ASYNC_FILING_CONFIG_NAME = "dimCmAsyncFiling";
+	public static final String DIMCM_ASYNC_FILING_LABEL = "Asynchronous Filing";
+	public static final String DIMCM_ASYNC_FILING_DESCRIPTION = "Set to true to queue bugs in a local outbox and file them in the background";
+	public static final String DIMCM_ASYNC_FILING_DEFAULT_VALUE = "false";
+
+	public static final String DIMCM_SESSION_POOL_SIZE_CONFIG_NAME = "dimCmSessionPoolSize";
+	public static final String DIMCM_SESSION_POOL_SIZE_LABEL = "Session Pool Size";
+	public static final String DIMCM_SESSION_POOL_SIZE_DESCRIPTION = "Maximum number of Dimensions CM sessions kept open per user";
+	public static final String DIMCM_SESSION_POOL_SIZE_DEFAULT_VALUE = "4";
+
+	public static final String DIMCM_DEADLINES_CONFIG_NAME = "dimCmDeadlines";
+	public static final String DIMCM_DEADLINES_LABEL = "Operation Deadlines (ms)";
+	public static final String DIMCM_DEADLINES_DESCRIPTION = "Comma separated operation=milliseconds pairs (findRequest, queryAttribute, getParts, getAllRequests), a bare number applies to all";
+	public static final String DIMCM_DEADLINES_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_HEDGED_READS_CONFIG_NAME = "dimCmHedgedReads";
+	public static final String DIMCM_HEDGED_READS_LABEL = "Hedged Reads";
+	public static final String DIMCM_HEDGED_READS_DESCRIPTION = "Set to true to repeat slow read calls on a second session after the observed 95th percentile latency";
+	public static final String DIMCM_HEDGED_READS_DEFAULT_VALUE = "false";
+
+	public static final String DIMCM_DESCRIPTION_LIMIT_CONFIG_NAME = "dimCmDescriptionLimit";
+	public static final String DIMCM_DESCRIPTION_LIMIT_LABEL = "Description Size Limit";
+	public static final String DIMCM_DESCRIPTION_LIMIT_DESCRIPTION = "Maximum number of characters of a request description, longer descriptions are attached as a compressed file";
+	public static final String DIMCM_DESCRIPTION_LIMIT_DEFAULT_VALUE = "32000";
+
+	public static final String DIMCM_EVENT_LISTENER_CONFIG_NAME = "dimCmEventListener";
+	public static final String DIMCM_EVENT_LISTENER_LABEL = "Event Listener Port";
+	public static final String DIMCM_EVENT_LISTENER_DESCRIPTION = "[address:]port to listen on for request state change events, leave empty to only poll Dimensions CM; the address defaults to 127.0.0.1";
+	public static final String DIMCM_EVENT_LISTENER_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_EVENT_TOKEN_CONFIG_NAME = "dimCmEventToken";
+	public static final String DIMCM_EVENT_TOKEN_LABEL = "Event Listener Token";
+	public static final String DIMCM_EVENT_TOKEN_DESCRIPTION = "Shared token senders of request state change events must provide, required when the event listener is enabled";
+	public static final String DIMCM_EVENT_TOKEN_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_EVENT_SAFETY_POLL_CONFIG_NAME = "dimCmEventSafetyPoll";
+	public static final String DIMCM_EVENT_SAFETY_POLL_LABEL = "Safety Poll Interval (minutes)";
+	public static final String DIMCM_EVENT_SAFETY_POLL_DESCRIPTION = "When the event listener is enabled, request states older than this are fetched from Dimensions CM again";
+	public static final String DIMCM_EVENT_SAFETY_POLL_DEFAULT_VALUE = "60";
+
+	public static final String DIMCM_REFRESH_TIERS_CONFIG_NAME = "dimCmRefreshTiers";
+	public static final String DIMCM_REFRESH_TIERS_LABEL = "Request State Refresh Tiers (minutes)";
+	public static final String DIMCM_REFRESH_TIERS_DESCRIPTION = "Longest time a known request state is reused before the request is fetched from Dimensions CM again, per tier: hot (RAISED to IN_TEST), warm (COMPLETE) and cold (CLOSED, REJECTED), e.g. hot=5,warm=60,cold=1440. Recently changed requests are refreshed more often. Leave empty to fetch requests on every state sync";
+	public static final String DIMCM_REFRESH_TIERS_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_GROUP_BY_CONFIG_NAME = "dimCmGroupBy";
+	public static final String DIMCM_GROUP_BY_LABEL = "Group Issues By";
+	public static final String DIMCM_GROUP_BY_DESCRIPTION = "Comma separated list of CATEGORY, FILE, PART and SEVERITY. Issues with the same values are filed as one request and later issues join the open request of their group. Leave empty to file every submission as its own request";
+	public static final String DIMCM_GROUP_BY_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_KEEPALIVE_CONFIG_NAME = "dimCmKeepalive";
+	public static final String DIMCM_KEEPALIVE_LABEL = "Session Keepalive (minutes)";
+	public static final String DIMCM_KEEPALIVE_DESCRIPTION = "Idle time after which pooled Dimensions CM sessions are pinged so that the server does not expire them, 0 to disable";
+	public static final String DIMCM_KEEPALIVE_DEFAULT_VALUE = "10";
+
+	public static final String DIMCM_SESSION_MAX_AGE_CONFIG_NAME = "dimCmSessionMaxAge";
+	public static final String DIMCM_SESSION_MAX_AGE_LABEL = "Session Maximum Age (minutes)";
+	public static final String DIMCM_SESSION_MAX_AGE_DESCRIPTION = "Age after which idle pooled Dimensions CM sessions log in again, set below the server session lifetime. 0 for no limit";
+	public static final String DIMCM_SESSION_MAX_AGE_DEFAULT_VALUE = "480";
+
+	public static final String DIMCM_VIRTUAL_THREADS_CONFIG_NAME = "dimCmVirtualThreads";
+	public static final String DIMCM_VIRTUAL_THREADS_LABEL = "Use Virtual Threads";
+	public static final String DIMCM_VIRTUAL_THREADS_DESCRIPTION = "Run parallel Dimensions CM calls on virtual threads when SSC runs on Java 21 or later; platform threads are used otherwise";
+	public static final String DIMCM_VIRTUAL_THREADS_DEFAULT_VALUE = "false";
+
+	public static final String DIMCM_ROUTES_CONFIG_NAME = "dimCmRoutes";
+	public static final String DIMCM_ROUTES_LABEL = "Server Routes";
+	public static final String DIMCM_ROUTES_DESCRIPTION = "Products served by other Dimensions CM servers, as PRODUCT[,PRODUCT]=server[/dbName@dbConn][|replica...] entries separated by ';'. Use * as product for all others. Leave empty to use the server above for everything";
+	public static final String DIMCM_ROUTES_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_SELF_TEST_CONFIG_NAME = "dimCmSelfTest";
+	public static final String DIMCM_SELF_TEST_LABEL = "Performance Self-Test Thresholds (ms)";
+	public static final String DIMCM_SELF_TEST_DESCRIPTION = "When set, testing the configuration also times name resolution, reachability, login and sample queries against Dimensions CM and fails if a stage fails or takes longer than its threshold. Comma separated stage=milliseconds pairs (resolve, reach, login, getProducts, getAttributeDefinitions, getParts, findRequest), a bare number applies to all. Leave empty to only test the login";
+	public static final String DIMCM_SELF_TEST_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_EVENT_LOG_CONFIG_NAME = "dimCmEventLog";
+	public static final String DIMCM_EVENT_LOG_LABEL = "Event Log File";
+	public static final String DIMCM_EVENT_LOG_DESCRIPTION = "File to append one line per plugin operation and Dimensions CM call to, with request ID, duration in microseconds and outcome. Written in the background, so it can stay enabled under load. Leave empty to disable";
+	public static final String DIMCM_EVENT_LOG_DEFAULT_VALUE = "";
+
+	public static final String DIMCM_EVENT_LOG_SAMPLING_CONFIG_NAME = "dimCmEventLogSampling";
+	public static final String DIMCM_EVENT_LOG_SAMPLING_LABEL = "Event Log Sampling";
+	public static final String DIMCM_EVENT_LOG_SAMPLING_DESCRIPTION = "Record one in this many successful operations in the event log; failures are always recorded";
+	public static final String DIMCM_EVENT_LOG_SAMPLING_DEFAULT_VALUE = "1";
+
+	public static final String DIMCM_TRAFFIC_RECORD_CONFIG_NAME = "dimCmTrafficRecord";
+	public static final String DIMCM_TRAFFIC_RECORD_LABEL = "Record Dimensions CM Traffic To";
+	public static final String DIMCM_TRAFFIC_RECORD_DESCRIPTION = "File to record all Dimensions CM API calls to for later replay, with passwords and other secrets removed. Leave empty to disable recording";
+	public static final String DIMCM_TRAFFIC_RECORD_DEFAULT_VALUE = "";
+
+	// Only read from the configuration map by tools, not offered in the SSC configuration
+	public static final String DIMCM_TRAFFIC_REPLAY_CONFIG_NAME = "dimCmTrafficReplay";
+	public static final String DIMCM_TRAFFIC_REPLAY_SPEED_CONFIG_NAME = "dimCmTrafficReplaySpeed";
+	public static final String DIMCM_TRAFFIC_REPLAY_SPEED_DEFAULT_VALUE = "1";
+
 	public static final String DIMCM_USERNAME_CONFIG_NAME = "dimCmUsername";
 	public static final String DIMCM_USERNAME_LABEL = "Dimensions CM User Name";
 	public static final String DIMCM_USERNAME_DESCRIPTION = "Dimensions CM User Name";
@@ -106,6 +226,11 @@ final class DimCMPluginConstants {
 	public static final String OWNER_PARAM_NAME = "owner";
 	public static final String OWNER_LABEL = "Owner";
 	public static final String OWNER_DESCRIPTION = "Name of Owner against which bug needs to be delegated";
+	public static final String OWNER_TRUNCATED_DESCRIPTION = "Name of Owner against which bug needs to be delegated - only the first %d matching users are listed, choose an Owner Name Starts With value to find the others";
+
+	public static final String OWNER_PREFIX_PARAM_NAME = "ownerPrefix";
+	public static final String OWNER_PREFIX_LABEL = "Owner Name Starts With";
+	public static final String OWNER_PREFIX_DESCRIPTION = "Narrows the Owner list down to the users whose name starts with the selected text";
 
 	public static final String OWNER_CAPABILITY_PARAM_NAME = "ownerCapability";
 	public static final String OWNER_CAPABILITY_LABEL = "Owner Capability";
@@ -134,15 +259,81 @@ final class DimCMPluginConstants {
 	// TODO: allow the user to configure states
 	public static final String STATUS_NEW = "RAISED";
 	public static final String STATUS_REOPENED = "UNDER WORK";
+	// Reported for queued bugs that could not be filed, or whose outcome is no longer known
+	public static final String STATUS_FILING_FAILED = "FILING FAILED";
+	public static final String STATUS_UNKNOWN = "UNKNOWN";
 	public enum CLOSED_STATUS { RESOLVED, CLOSED, VERIFIED };
 	public enum NON_REOPENABLE_RESOLUTION { DUPLICATE, REJECTED };
 
 
+    /**
+     * Number of queued bugs filed per outbox drain and attempts before giving up on one.
+     */
+    public static final int OUTBOX_BATCH_SIZE = 20;
+    public static final int OUTBOX_MAX_ATTEMPTS = 10;
+
+    /**
+     * Page size and number of parallel streams used when scanning Dimensions CM change sets.
+     */
+    public static final int CHANGESET_PAGE_SIZE = 500;
+    public static final int CHANGESET_SCAN_THREADS = 4;
+
+    /**
+     * Maximum number of change sets kept per stream in the change set index, the oldest are dropped first.
+     */
+    public static final int CHANGESET_INDEX_MAX_PER_STREAM = 20000;
+
+    /**
+     * Number of request IDs checked with one filtered query when reconciling bug links.
+     */
+    public static final int RECONCILE_CHUNK_SIZE = 200;
+
+    /**
+     * Number of requests delegated with one query when delegating in bulk.
+     */
+    public static final int DELEGATION_BATCH_SIZE = 100;
+
+    /**
+     * Time an unreachable Dimensions CM endpoint is skipped before it is tried again.
+     */
+    public static final long ROUTE_COOL_DOWN_MILLIS = 30 * 1000L;
+
+    /**
+     * Time after which the session pool of a user who made no calls is closed, and how often this is checked.
+     */
+    public static final long SESSION_POOL_IDLE_MILLIS = 30 * 60 * 1000L;
+    public static final long SESSION_POOL_EVICTION_INTERVAL_MILLIS = 60 * 1000L;
+
+    /**
+     * A request unchanged for some time is refreshed after this fraction of that time, within its tier.
+     */
+    public static final int REFRESH_CHANGE_DIVISOR = 10;
+
+    /**
+     * Refresh intervals are shortened by up to this percentage, depending on the request ID.
+     */
+    public static final int REFRESH_JITTER_PERCENT = 20;
+
+    /**
+     * How often request states too old to be answered any more are removed from the state cache.
+     */
+    public static final long STATE_CACHE_SWEEP_INTERVAL_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * Maximum length of a description or other long text written to the log.
+     */
+    public static final int MAX_LOGGED_TEXT_LENGTH = 500;
+
     /**
      * Maximum length for bug summary string.
      */
     public static final int MAX_SUMMARY_LENGTH = 80;
 
+    /**
+     * Number of locks submissions of issue groups are spread over; submissions of one group share a lock.
+     */
+    public static final int GROUP_LOCK_STRIPES = 64;
+
 	private DimCMPluginConstants() {
 		// No implementation.
 	}
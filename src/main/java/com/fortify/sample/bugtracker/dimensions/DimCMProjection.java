@@ -0,0 +1,77 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.SystemAttributes;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable set of request attributes an operation needs.
+ *
+ * Projections of several operations are merged into a single queryAttribute call. An attribute outside
+ * of the projection is fetched on first access through {@link DimCMRequestView}.
+ * Attribute number 0 (an unconfigured field) is ignored.
+ */
+final class DimCMProjection {
+
+    /** Attributes needed to report the state and resolution of a bug. */
+    static final DimCMProjection BUG_STATE = of(SystemAttributes.STATUS);
+
+    /** Attributes needed to action a request along its lifecycle. */
+    static final DimCMProjection LIFECYCLE_STATE = of(SystemAttributes.OBJECT_ID, SystemAttributes.STATUS, SystemAttributes.LIFECYCLE);
+
+    /** Attributes only needed to log a request at debug level. */
+    static final DimCMProjection BUG_SUMMARY = of(SystemAttributes.OBJECT_ID, SystemAttributes.TITLE);
+
+    private final Set<Integer> attributes;
+
+    private DimCMProjection(Set<Integer> attributes) {
+        this.attributes = Collections.unmodifiableSet(attributes);
+    }
+
+    static DimCMProjection of(int... attributes) {
+        Set<Integer> res = new LinkedHashSet<>();
+        for (int attr : attributes) {
+            if (attr != 0) {
+                res.add(attr);
+            }
+        }
+        return new DimCMProjection(res);
+    }
+
+    DimCMProjection merge(DimCMProjection other) {
+        Set<Integer> merged = new LinkedHashSet<>(attributes);
+        merged.addAll(other.attributes);
+        return new DimCMProjection(merged);
+    }
+
+    static DimCMProjection merge(DimCMProjection... projections) {
+        DimCMProjection res = of();
+        for (DimCMProjection p : projections) {
+            res = res.merge(p);
+        }
+        return res;
+    }
+
+    int[] getAttributes() {
+        int[] res = new int[attributes.size()];
+        int i = 0;
+        for (Integer attr : attributes) {
+            res[i++] = attr;
+        }
+        return res;
+    }
+
+    boolean contains(int attribute) {
+        return attributes.contains(attribute);
+    }
+
+    @Override
+    public String toString() {
+        return attributes.toString();
+    }
+}
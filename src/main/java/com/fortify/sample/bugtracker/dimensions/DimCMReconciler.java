@@ -0,0 +1,199 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.Request;
+import com.serena.dmclient.api.SystemAttributes;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Compares bug links known to SSC with the requests in Dimensions CM.
+ *
+ * Links are read as a stream and partitioned by product, taken from the PRODUCT_TYPE_N request ID.
+ * Whenever a partition has collected a chunk of links it is checked with one filtered query on a worker
+ * thread; the number of chunks waiting for a worker is limited, so memory stays bounded regardless of
+ * the number of links.
+ */
+final class DimCMReconciler {
+    private static final Log LOG = LogFactory.getLog(DimCMReconciler.class);
+
+    static final class Link {
+        final String requestId;
+        final String state;
+        final String resolution;
+
+        Link(String requestId, String state, String resolution) {
+            this.requestId = requestId;
+            this.state = state;
+            this.resolution = resolution;
+        }
+    }
+
+    enum Change {
+        MISSING, STATE_CHANGED, RESOLUTION_CHANGED
+    }
+
+    static final class Diff {
+        final Link link;
+        final Change change;
+        final String state;
+        final String resolution;
+
+        Diff(Link link, Change change, String state, String resolution) {
+            this.link = link;
+            this.change = change;
+            this.state = state;
+            this.resolution = resolution;
+        }
+    }
+
+    /**
+     * Receives the differences found; calls are serialized.
+     */
+    interface Sink {
+        void accept(Diff diff);
+    }
+
+    private final Function<String, DimCMClient> connector;
+    private final List<String> products;
+    private final Set<String> knownProducts;
+    private final int solutionFieldId;
+    private final int threads;
+    private final int chunkSize;
+    private final DimCMExecutors executors;
+
+    /**
+     * @param products        known product names, used to split request IDs of products containing underscores
+     * @param solutionFieldId attribute number of the resolution field, 0 to not compare resolutions
+     */
+    DimCMReconciler(Function<String, DimCMClient> connector, Collection<String> products, int solutionFieldId,
+                    int threads, int chunkSize, DimCMExecutors executors) {
+        this.connector = connector;
+        this.products = new ArrayList<>(products);
+        // Longest names first so that PRODUCT_A wins over PRODUCT for PRODUCT_A_TASK_1
+        this.products.sort(Comparator.comparingInt(String::length).reversed());
+        this.knownProducts = new HashSet<>(products);
+        this.solutionFieldId = solutionFieldId;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.executors = executors;
+    }
+
+    /**
+     * Checks all links and reports every difference to the sink.
+     *
+     * @return number of links checked
+     */
+    int reconcile(Iterator<Link> links, Sink sink) throws InterruptedException {
+        final ExecutorService executor = executors.newFixedPool("DimCM-Reconciler", threads);
+        final Semaphore pending = new Semaphore(threads * 2);
+        final AtomicInteger checked = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Map<String, List<Link>> partitions = new HashMap<>();
+        try {
+            while (links.hasNext()) {
+                Link link = links.next();
+                String product = getProduct(link.requestId);
+                List<Link> chunk = partitions.computeIfAbsent(product, p -> new ArrayList<>(chunkSize));
+                chunk.add(link);
+                if (chunk.size() >= chunkSize) {
+                    partitions.remove(product);
+                    submit(executor, pending, product, chunk, sink, checked, failure);
+                }
+            }
+            for (Map.Entry<String, List<Link>> e : partitions.entrySet()) {
+                submit(executor, pending, e.getKey(), e.getValue(), sink, checked, failure);
+            }
+            partitions.clear();
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Reconciliation failed: " + failure.get().getMessage(), failure.get());
+        }
+        return checked.get();
+    }
+
+    private void submit(ExecutorService executor, Semaphore pending, String product, List<Link> chunk, Sink sink,
+                        AtomicInteger checked, AtomicReference<RuntimeException> failure) throws InterruptedException {
+        pending.acquire();
+        executor.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    check(product, chunk, sink);
+                    checked.addAndGet(chunk.size());
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    private void check(String product, List<Link> chunk, Sink sink) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (Link link : chunk) {
+            ids.add(link.requestId);
+        }
+        final int[] attributes = solutionFieldId > 0
+                ? new int[]{SystemAttributes.OBJECT_ID, SystemAttributes.STATUS, solutionFieldId}
+                : new int[]{SystemAttributes.OBJECT_ID, SystemAttributes.STATUS};
+        final List<Request> requests = connector.apply(product).queryRequests(knownProducts.contains(product) ? product : null, ids, attributes);
+        Map<String, Request> found = new HashMap<>();
+        for (Request r : requests) {
+            found.put((String) r.getAttribute(SystemAttributes.OBJECT_ID), r);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Reconciled " + chunk.size() + " links of product " + product + ": " + found.size() + " requests found");
+        }
+        for (Link link : chunk) {
+            Request r = found.get(link.requestId);
+            Diff diff;
+            if (r == null) {
+                diff = new Diff(link, Change.MISSING, null, null);
+            } else {
+                String state = r.getLcState();
+                String resolution = solutionFieldId > 0 ? (String) r.getAttribute(solutionFieldId) : null;
+                if (link.state != null && !link.state.equals(state)) {
+                    diff = new Diff(link, Change.STATE_CHANGED, state, resolution);
+                } else if (solutionFieldId > 0 && !Objects.equals(emptyToNull(link.resolution), emptyToNull(resolution))) {
+                    diff = new Diff(link, Change.RESOLUTION_CHANGED, state, resolution);
+                } else {
+                    continue;
+                }
+            }
+            synchronized (sink) {
+                sink.accept(diff);
+            }
+        }
+    }
+
+    /**
+     * Returns the product of a request ID of the form PRODUCT_TYPE_N.
+     */
+    String getProduct(String requestId) {
+        for (String product : products) {
+            if (requestId.length() > product.length() && requestId.startsWith(product)
+                    && requestId.charAt(product.length()) == '_') {
+                return product;
+            }
+        }
+        int pos = requestId.indexOf('_');
+        return pos > 0 ? requestId.substring(0, pos) : requestId;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+}
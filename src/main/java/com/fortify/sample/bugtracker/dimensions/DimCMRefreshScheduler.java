@@ -0,0 +1,99 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
+
+/**
+ * Decides how long a known request state may be answered from the state cache before the request has to
+ * be fetched from Dimensions CM again.
+ *
+ * Requests are put into tiers by their lifecycle state: requests being worked on are HOT, completed ones
+ * WARM and closed or rejected ones COLD. Each tier has a maximum refresh interval. Within it, a request is
+ * refreshed more often the more recently its state changed, but never more often than the HOT interval,
+ * so a request closed a year ago is rarely polled while one that was just closed is watched closely for
+ * a while. The interval of every request is shortened by a fixed fraction derived from its ID, which
+ * spreads the refreshes of requests filed together over time.
+ */
+final class DimCMRefreshScheduler {
+
+    enum Tier {
+        HOT, WARM, COLD
+    }
+
+    private final Map<Tier, Long> maxIntervals;
+
+    private DimCMRefreshScheduler(Map<Tier, Long> maxIntervals) {
+        this.maxIntervals = maxIntervals;
+    }
+
+    /**
+     * Parses comma separated tier=minutes pairs, e.g. "hot=5,warm=60,cold=1440". A tier that is not given
+     * uses the interval of the next hotter one.
+     *
+     * @return the scheduler, or null if the specification is empty
+     */
+    static DimCMRefreshScheduler parse(String spec) {
+        Map<Tier, Long> minutes = new EnumMap<>(Tier.class);
+        for (String pair : (spec == null ? "" : spec).split(",")) {
+            if (pair.trim().isEmpty()) {
+                continue;
+            }
+            String[] kv = pair.split("=");
+            try {
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException();
+                }
+                long value = Long.parseLong(kv[1].trim());
+                if (value < 0) {
+                    throw new IllegalArgumentException();
+                }
+                minutes.put(Tier.valueOf(kv[0].trim().toUpperCase()), value);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid refresh tier '" + pair.trim() + "', expected tier=minutes with tier one of HOT, WARM, COLD");
+            }
+        }
+        if (minutes.isEmpty()) {
+            return null;
+        }
+        Map<Tier, Long> intervals = new EnumMap<>(Tier.class);
+        long previous = 0;
+        for (Tier tier : Tier.values()) {
+            Long value = minutes.get(tier);
+            // Colder tiers are never refreshed more often than hotter ones
+            previous = Math.max(previous, value == null ? previous : value * 60 * 1000L);
+            intervals.put(tier, previous);
+        }
+        return new DimCMRefreshScheduler(intervals);
+    }
+
+    /**
+     * Returns the maximum refresh interval of a tier, after which no state in it is answered any more.
+     */
+    long getMaxInterval(Tier tier) {
+        return maxIntervals.get(tier);
+    }
+
+    /**
+     * Returns how old a cached state of the given request in the given tier may be.
+     */
+    long getMaxAge(String requestId, Tier tier, DimCMStateCache.State state) {
+        final long hot = maxIntervals.get(Tier.HOT);
+        final long max = maxIntervals.get(tier);
+        final long adaptive = Math.min(max, Math.max(hot, state.getTimeUnchanged() / REFRESH_CHANGE_DIVISOR));
+        // Consecutive request IDs have nearly equal hash codes, so spread them first
+        final double jitter = ((requestId.hashCode() * 0x9E3779B9) >>> 16) / 65536.0 * REFRESH_JITTER_PERCENT / 100;
+        return (long) (adaptive * (1 - jitter));
+    }
+
+    /**
+     * Returns true if the cached state can be answered without fetching the request.
+     */
+    boolean isFresh(String requestId, Tier tier, DimCMStateCache.State state) {
+        return state.getAge() < getMaxAge(requestId, tier, state);
+    }
+}
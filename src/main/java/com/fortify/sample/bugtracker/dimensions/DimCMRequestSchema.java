@@ -0,0 +1,132 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.objects.AttributeDefinition;
+import com.serena.dmclient.objects.ValidSet;
+import com.serena.dmclient.objects.ValidSetRowDetails;
+
+import java.util.*;
+
+/**
+ * User defined attributes of a request type, used to validate new requests before they are sent.
+ *
+ * The schema is kept in the metadata cache as one "NAME TAB NUMBER TAB M|O TAB MAXLENGTH TAB VALUES"
+ * string per attribute, with the valid set values separated by \u001F.
+ */
+final class DimCMRequestSchema {
+
+    private static final char FIELD_SEPARATOR = '\t';
+    private static final char VALUE_SEPARATOR = '\u001F';
+
+    private static final class Attribute {
+        final String name;
+        final int number;
+        final boolean mandatory;
+        final int maxLength;
+        final Set<String> validValues;
+
+        Attribute(String name, int number, boolean mandatory, int maxLength, Set<String> validValues) {
+            this.name = name;
+            this.number = number;
+            this.mandatory = mandatory;
+            this.maxLength = maxLength;
+            this.validValues = validValues;
+        }
+    }
+
+    private final String typeName;
+    private final Map<String, Attribute> byName = new LinkedHashMap<>();
+    private final Map<Integer, Attribute> byNumber = new HashMap<>();
+
+    DimCMRequestSchema(String typeName, List<String> entries) {
+        this.typeName = typeName;
+        for (String entry : entries) {
+            String[] fields = entry.split(String.valueOf(FIELD_SEPARATOR), -1);
+            if (fields.length < 5) {
+                continue;
+            }
+            Set<String> values = null;
+            if (!fields[4].isEmpty()) {
+                values = new HashSet<>(Arrays.asList(fields[4].split(String.valueOf(VALUE_SEPARATOR))));
+            }
+            Attribute attr = new Attribute(fields[0], Integer.parseInt(fields[1]), "M".equals(fields[2]),
+                    Integer.parseInt(fields[3]), values);
+            byName.put(attr.name, attr);
+            byNumber.put(attr.number, attr);
+        }
+    }
+
+    /**
+     * Converts attribute definitions of a request type to cache entries.
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> encode(Iterator<?> definitions) {
+        List<String> res = new ArrayList<>();
+        while (definitions.hasNext()) {
+            AttributeDefinition attr = (AttributeDefinition) definitions.next();
+            // Attributes the server fills in itself need no value from us
+            boolean mandatory = attr.getMandatory() && !attr.getAutoPopulated()
+                    && (attr.getDefaultValue() == null || attr.getDefaultValue().isEmpty());
+            StringBuilder sb = new StringBuilder()
+                    .append(attr.getName()).append(FIELD_SEPARATOR)
+                    .append(attr.getNumber()).append(FIELD_SEPARATOR)
+                    .append(mandatory ? 'M' : 'O').append(FIELD_SEPARATOR)
+                    .append(attr.getMaximumLength()).append(FIELD_SEPARATOR);
+            ValidSet validSet = attr.getValidSet();
+            if (validSet != null) {
+                boolean first = true;
+                for (ValidSetRowDetails v : (List<ValidSetRowDetails>) validSet.getValues()) {
+                    if (!first) {
+                        sb.append(VALUE_SEPARATOR);
+                    }
+                    sb.append(v.getColumnValue(0));
+                    first = false;
+                }
+            }
+            res.add(sb.toString());
+        }
+        return res;
+    }
+
+    /**
+     * Returns the number of an attribute of this request type, or 0 if it is not defined.
+     */
+    int getAttributeNumber(String name) {
+        Attribute attr = byName.get(name.toUpperCase());
+        return attr == null ? 0 : attr.number;
+    }
+
+    /**
+     * Checks attribute values against the request type and returns a message for each problem found.
+     *
+     * @param values attribute values by attribute number
+     */
+    List<String> validate(Map<?, ?> values) {
+        List<String> problems = new ArrayList<>();
+        for (Map.Entry<?, ?> e : values.entrySet()) {
+            if (!(e.getKey() instanceof Integer)) {
+                continue;
+            }
+            Attribute attr = byNumber.get(e.getKey());
+            String value = e.getValue() == null ? "" : e.getValue().toString();
+            if (attr == null) {
+                continue;
+            }
+            if (attr.validValues != null && !value.isEmpty() && !attr.validValues.contains(value)) {
+                problems.add("'" + value + "' is not a valid value of " + attr.name + ", expected one of " + new TreeSet<>(attr.validValues));
+            }
+            if (attr.maxLength > 0 && value.length() > attr.maxLength) {
+                problems.add(attr.name + " is " + value.length() + " characters long, at most " + attr.maxLength + " are allowed");
+            }
+        }
+        for (Attribute attr : byName.values()) {
+            Object value = values.get(attr.number);
+            if (attr.mandatory && (value == null || value.toString().isEmpty())) {
+                problems.add(attr.name + " is mandatory for request type " + typeName);
+            }
+        }
+        return problems;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.Request;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request read through a {@link DimCMProjection}. Attributes outside of the projection are queried from
+ * the server on first access, as guarded reads of the client that fetched the request.
+ */
+final class DimCMRequestView {
+    private final DimCMClient client;
+    private final String requestId;
+    private final Request request;
+    private final DimCMProjection projection;
+    private final Map<Integer, Object> loaded = new HashMap<>();
+
+    DimCMRequestView(DimCMClient client, String requestId, Request request, DimCMProjection projection) {
+        this.client = client;
+        this.requestId = requestId;
+        this.request = request;
+        this.projection = projection;
+    }
+
+    Request getRequest() {
+        return request;
+    }
+
+    String getLcState() {
+        return request.getLcState();
+    }
+
+    Object getAttribute(int attribute) {
+        if (attribute == 0) {
+            return null;
+        }
+        if (projection.contains(attribute)) {
+            return request.getAttribute(attribute);
+        }
+        if (!loaded.containsKey(attribute)) {
+            loaded.put(attribute, client.queryAttribute(requestId, attribute));
+        }
+        return loaded.get(attribute);
+    }
+}
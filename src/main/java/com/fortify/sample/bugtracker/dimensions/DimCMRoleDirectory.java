@@ -0,0 +1,165 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.fortify.sample.bugtracker.dimensions.DimCMClient.ROLE_ASSIGNMENT_SEPARATOR;
+
+/**
+ * Per product index of role to users built from the product role assignments in a single pass.
+ *
+ * The users of each role are kept as a sorted array for prefix searches, so large user populations
+ * never have to be scanned or rendered in full.
+ * An expired product index keeps being served while a single caller refreshes it.
+ */
+final class DimCMRoleDirectory {
+    private static final Log LOG = LogFactory.getLog(DimCMRoleDirectory.class);
+
+    private static final String[] NO_USERS = new String[0];
+
+    private static final class RoleIndex {
+        final Map<String, Set<String>> members;
+        final Map<String, String[]> sorted;
+        final long loadedAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        RoleIndex(Map<String, Set<String>> members, long loadedAt) {
+            this.members = members;
+            this.sorted = new HashMap<>(members.size() * 2);
+            for (Map.Entry<String, Set<String>> e : members.entrySet()) {
+                String[] users = e.getValue().toArray(NO_USERS);
+                Arrays.sort(users);
+                sorted.put(e.getKey(), users);
+            }
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final long ttlMillis;
+    private final Map<String, RoleIndex> products = new ConcurrentHashMap<>();
+
+    DimCMRoleDirectory(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns at most {@code limit} users of a role, in alphabetical order, whose name starts with {@code prefix}.
+     */
+    List<String> findUsers(DimCMClient cmClient, String productName, String roleName, String prefix, int limit) {
+        String[] users = index(cmClient, productName).sorted.get(roleName.toUpperCase());
+        if (users == null) {
+            return Collections.emptyList();
+        }
+        String from = prefix == null ? "" : prefix.toUpperCase();
+        int pos = Arrays.binarySearch(users, from);
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        List<String> res = new ArrayList<>();
+        for (int i = pos; i < users.length && res.size() < limit && users[i].startsWith(from); i++) {
+            res.add(users[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Returns name prefixes splitting the users of a role into groups of at most {@code limit} users each,
+     * as far as their names allow, in alphabetical order. Returns an empty list if all users fit in one group.
+     */
+    List<String> getPrefixes(DimCMClient cmClient, String productName, String roleName, int limit) {
+        String[] users = index(cmClient, productName).sorted.get(roleName.toUpperCase());
+        List<String> res = new ArrayList<>();
+        if (users != null && users.length > limit) {
+            addPrefixes(users, 0, users.length, 1, limit, res);
+        }
+        return res;
+    }
+
+    private static void addPrefixes(String[] users, int from, int to, int length, int limit, List<String> res) {
+        int i = from;
+        while (i < to) {
+            String prefix = users[i].length() <= length ? users[i] : users[i].substring(0, length);
+            int j = i + 1;
+            while (j < to && users[j].startsWith(prefix)) {
+                j++;
+            }
+            if (j - i > limit && prefix.length() == length) {
+                addPrefixes(users, i, j, length + 1, limit, res);
+            } else {
+                res.add(prefix);
+            }
+            i = j;
+        }
+    }
+
+    void invalidate(String productName) {
+        products.remove(productName.toUpperCase());
+    }
+
+    private RoleIndex index(DimCMClient cmClient, String productName) {
+        String key = productName.toUpperCase();
+        RoleIndex current = products.get(key);
+        if (current == null) {
+            return products.computeIfAbsent(key, k -> load(cmClient, productName, null));
+        }
+        if (System.currentTimeMillis() - current.loadedAt > ttlMillis && current.refreshing.compareAndSet(false, true)) {
+            try {
+                RoleIndex refreshed = load(cmClient, productName, current);
+                products.put(key, refreshed);
+                return refreshed;
+            } catch (RuntimeException e) {
+                current.refreshing.set(false);
+                LOG.warn("Could not refresh role directory of " + productName + ", using previous one: " + e.getMessage());
+            }
+        }
+        return current;
+    }
+
+    private RoleIndex load(DimCMClient cmClient, String productName, RoleIndex previous) {
+        if (previous != null) {
+            cmClient.invalidateRoleAssignments(productName);
+        }
+        Map<String, Set<String>> members = new HashMap<>();
+        for (String assignment : cmClient.getRoleAssignments(productName)) {
+            int pos = assignment.indexOf(ROLE_ASSIGNMENT_SEPARATOR);
+            members.computeIfAbsent(assignment.substring(0, pos), r -> new LinkedHashSet<>())
+                    .add(assignment.substring(pos + 1));
+        }
+        if (previous != null) {
+            members = merge(previous.members, members);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Loaded role directory of " + productName + " with " + members.size() + " roles");
+        }
+        return new RoleIndex(members, System.currentTimeMillis());
+    }
+
+    /**
+     * Applies the difference between two role maps while reusing unchanged role sets.
+     */
+    private static Map<String, Set<String>> merge(Map<String, Set<String>> previous, Map<String, Set<String>> latest) {
+        Map<String, Set<String>> res = new HashMap<>(latest.size() * 2);
+        int changed = 0;
+        for (Map.Entry<String, Set<String>> e : latest.entrySet()) {
+            Set<String> old = previous.get(e.getKey());
+            if (old != null && old.equals(e.getValue())) {
+                res.put(e.getKey(), old);
+            } else {
+                res.put(e.getKey(), e.getValue());
+                changed++;
+            }
+        }
+        changed += previous.size() - previous.keySet().stream().filter(latest::containsKey).count();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Role directory refresh changed " + changed + " roles");
+        }
+        return res;
+    }
+}
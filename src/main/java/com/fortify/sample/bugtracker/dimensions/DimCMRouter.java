@@ -0,0 +1,196 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Maps products and request IDs to the Dimensions CM servers holding them.
+ *
+ * Routes are configured as "KEY[,KEY...]=ENDPOINT[|ENDPOINT...]" entries separated by ';' or new lines,
+ * where a key is a product name (which also matches request IDs starting with "PRODUCT_") or '*' for
+ * everything else, and an endpoint is "server[/dbName@dbConn]" defaulting to the plugin's database.
+ * The first endpoint of a route is its primary, the others are replicas of the same database.
+ *
+ * Reads go to the least loaded healthy endpoint of a route, updates to the primary. An endpoint which
+ * could not be connected to is skipped for a cool down period, during which updates fail over to the
+ * replicas in configured order.
+ */
+final class DimCMRouter {
+    private static final Log LOG = LogFactory.getLog(DimCMRouter.class);
+
+    static final String DEFAULT_ROUTE_KEY = "*";
+
+    static final class Endpoint {
+        final String server;
+        final String dbName;
+        final String dbConn;
+        private volatile long downUntil;
+
+        Endpoint(String server, String dbName, String dbConn) {
+            this.server = server;
+            this.dbName = dbName;
+            this.dbConn = dbConn;
+        }
+
+        String getKey() {
+            return (server + "|" + dbName + "@" + dbConn).toUpperCase();
+        }
+
+        boolean isHealthy() {
+            return downUntil <= System.currentTimeMillis();
+        }
+
+        @Override
+        public String toString() {
+            return server + ":" + dbName + "@" + dbConn;
+        }
+    }
+
+    static final class Route {
+        final List<Endpoint> endpoints;
+
+        Route(List<Endpoint> endpoints) {
+            this.endpoints = Collections.unmodifiableList(endpoints);
+        }
+
+        Endpoint getPrimary() {
+            return endpoints.get(0);
+        }
+    }
+
+    private final Map<String, Route> routes = new HashMap<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private final Route defaultRoute;
+    private final long coolDownMillis;
+
+    /**
+     * @param spec            route configuration, may be empty
+     * @param defaultEndpoint the endpoint of keys without a route and the defaults of partial endpoints
+     */
+    DimCMRouter(String spec, Endpoint defaultEndpoint, long coolDownMillis) {
+        this.coolDownMillis = coolDownMillis;
+        // Route entries naming the same endpoint share its health state
+        final Map<String, Endpoint> endpoints = new HashMap<>();
+        endpoints.put(defaultEndpoint.getKey(), defaultEndpoint);
+        Route fallback = new Route(Collections.singletonList(defaultEndpoint));
+        for (String entry : (spec == null ? "" : spec).split("[;\\r\\n]+")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int pos = entry.indexOf('=');
+            if (pos <= 0 || pos == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid route '" + entry.trim() + "', expected KEY=server[/dbName@dbConn][|...]");
+            }
+            List<Endpoint> routeEndpoints = new ArrayList<>();
+            for (String e : entry.substring(pos + 1).split("\\|")) {
+                Endpoint endpoint = parseEndpoint(e.trim(), defaultEndpoint);
+                routeEndpoints.add(endpoints.computeIfAbsent(endpoint.getKey(), k -> endpoint));
+            }
+            Route route = new Route(routeEndpoints);
+            for (String key : entry.substring(0, pos).split(",")) {
+                key = key.trim().toUpperCase();
+                if (DEFAULT_ROUTE_KEY.equals(key)) {
+                    fallback = route;
+                } else if (!key.isEmpty()) {
+                    routes.put(key, route);
+                }
+            }
+        }
+        this.defaultRoute = fallback;
+        prefixes.addAll(routes.keySet());
+        // Longest first, so that product QLARIUS_WEB wins over QLARIUS for QLARIUS_WEB_CR_1
+        prefixes.sort((a, b) -> b.length() - a.length());
+    }
+
+    private static Endpoint parseEndpoint(String value, Endpoint defaults) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Empty endpoint in route configuration");
+        }
+        int slash = value.indexOf('/');
+        if (slash < 0) {
+            return new Endpoint(value, defaults.dbName, defaults.dbConn);
+        }
+        String database = value.substring(slash + 1);
+        int at = database.indexOf('@');
+        if (at <= 0 || at == database.length() - 1) {
+            throw new IllegalArgumentException("Invalid endpoint '" + value + "', expected server/dbName@dbConn");
+        }
+        return new Endpoint(value.substring(0, slash), database.substring(0, at), database.substring(at + 1));
+    }
+
+    boolean isRouted() {
+        return !routes.isEmpty() || defaultRoute.endpoints.size() > 1;
+    }
+
+    /**
+     * Returns the route of a product or request ID, or the default route for null and unknown keys.
+     */
+    Route getRoute(String key) {
+        if (key == null || routes.isEmpty()) {
+            return defaultRoute;
+        }
+        String upper = key.trim().toUpperCase();
+        Route route = routes.get(upper);
+        if (route != null) {
+            return route;
+        }
+        for (String prefix : prefixes) {
+            if (upper.startsWith(prefix + "_")) {
+                return routes.get(prefix);
+            }
+        }
+        return defaultRoute;
+    }
+
+    /**
+     * Returns one key per configured database, for calls that have to visit all of them: null stands for
+     * the default route, the others are product names.
+     */
+    List<String> getDatabaseKeys() {
+        final Map<String, String> keys = new LinkedHashMap<>();
+        keys.put(defaultRoute.getPrimary().getKey(), null);
+        for (Map.Entry<String, Route> e : new TreeMap<>(routes).entrySet()) {
+            keys.putIfAbsent(e.getValue().getPrimary().getKey(), e.getKey());
+        }
+        return new ArrayList<>(keys.values());
+    }
+
+    /**
+     * Returns the endpoints to try for a product or request ID, best first. Endpoints in their cool down
+     * period come last, so that a call is still attempted if all of them are down.
+     *
+     * @param load number of calls in flight per endpoint
+     */
+    List<Endpoint> getCandidates(String key, boolean readOnly, ToIntFunction<Endpoint> load) {
+        List<Endpoint> healthy = new ArrayList<>();
+        List<Endpoint> down = new ArrayList<>();
+        for (Endpoint e : getRoute(key).endpoints) {
+            (e.isHealthy() ? healthy : down).add(e);
+        }
+        if (readOnly) {
+            // Stable sort, ties keep the configured order
+            healthy.sort(Comparator.comparingInt(load));
+        }
+        healthy.addAll(down);
+        return healthy;
+    }
+
+    void markDown(Endpoint endpoint, Exception cause) {
+        LOG.warn("Dimensions CM endpoint " + endpoint + " is unavailable, avoiding it for " + coolDownMillis / 1000
+                + " seconds: " + cause.getMessage());
+        endpoint.downUntil = System.currentTimeMillis() + coolDownMillis;
+    }
+
+    void markUp(Endpoint endpoint) {
+        if (endpoint.downUntil != 0) {
+            LOG.info("Dimensions CM endpoint " + endpoint + " is available again");
+            endpoint.downUntil = 0;
+        }
+    }
+}
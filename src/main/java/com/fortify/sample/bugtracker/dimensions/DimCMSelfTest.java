@@ -0,0 +1,153 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages of talking to a Dimensions CM server one after another, so that a slow plugin can be
+ * traced to name resolution, the network, the login or the server's metadata and catalogue queries.
+ *
+ * Every stage runs on a fresh, uncached connection, so the timings are those of the server and not of the
+ * plugin's caches.
+ */
+final class DimCMSelfTest {
+
+    static final String RESOLVE = "resolve";
+    static final String REACH = "reach";
+    static final String LOGIN = "login";
+    static final String PRODUCTS = "getProducts";
+    static final String ATTRIBUTES = "getAttributeDefinitions";
+    static final String PARTS = "getParts";
+    static final String REQUEST = "findRequest";
+
+    private static final int REACH_TIMEOUT_MILLIS = 5000;
+
+    static final class Stage {
+        final String name;
+        final long millis;
+        final long threshold;
+        final String error;
+
+        Stage(String name, long millis, long threshold, String error) {
+            this.name = name;
+            this.millis = millis;
+            this.threshold = threshold;
+            this.error = error;
+        }
+
+        boolean isSlow() {
+            return threshold > 0 && millis > threshold;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return name + " FAILED after " + millis + " ms (" + error + ")";
+            }
+            return name + " " + millis + " ms" + (isSlow() ? " > " + threshold + " ms" : "");
+        }
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Long> thresholds;
+    private final List<Stage> stages = new ArrayList<>();
+
+    /**
+     * @param thresholds stage name to the time in milliseconds it should take at most,
+     *                   {@link DimCMLatencyGuard#DEFAULT_OPERATION} applies to all others
+     */
+    DimCMSelfTest(Map<String, Long> thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Runs all stages, stopping at the first one the later stages depend on that fails.
+     *
+     * @param sscField attribute to look up as metadata query, or null to look up the title
+     */
+    List<Stage> run(String username, String password, String dbName, String dbConn, String server, String sscField) {
+        stages.clear();
+        final InetAddress[] address = new InetAddress[1];
+        if (!time(RESOLVE, () -> address[0] = InetAddress.getAllByName(server)[0])) {
+            return getStages();
+        }
+        time(REACH, () -> {
+            if (!address[0].isReachable(REACH_TIMEOUT_MILLIS)) {
+                throw new IllegalStateException("no answer from " + address[0].getHostAddress());
+            }
+        });
+        final DimCMClient client = new DimCMClient();
+        if (!time(LOGIN, () -> client.connect(username, password, dbName, dbConn, server))) {
+            return getStages();
+        }
+        try {
+            final List<String> products = new ArrayList<>();
+            time(PRODUCTS, () -> products.addAll(client.getProducts()));
+            time(ATTRIBUTES, () -> client.getFieldId(sscField == null || sscField.isEmpty() ? "TITLE" : sscField));
+            if (!products.isEmpty()) {
+                final String product = products.get(0);
+                time(PARTS, () -> client.getDesignParts(product));
+                // Whether the request exists does not matter, only the round trip
+                time(REQUEST, () -> client.getRequest(product + "_1"));
+            }
+        } finally {
+            client.disconnect();
+        }
+        return getStages();
+    }
+
+    private boolean time(String name, Step step) {
+        final long start = System.nanoTime();
+        String error = null;
+        try {
+            step.run();
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Long threshold = thresholds.get(name);
+        if (threshold == null) {
+            threshold = thresholds.get(DimCMLatencyGuard.DEFAULT_OPERATION);
+        }
+        stages.add(new Stage(name, millis, threshold == null ? 0 : threshold, error));
+        return error == null;
+    }
+
+    List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Returns true if a stage failed or took longer than its threshold.
+     */
+    boolean hasProblems() {
+        for (Stage stage : stages) {
+            if (stage.error != null || stage.isSlow()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the timings as one line, e.g. "resolve 2 ms, reach 1 ms, login 840 ms > 500 ms, ...".
+     */
+    String getSummary() {
+        StringJoiner sj = new StringJoiner(", ");
+        for (Stage stage : stages) {
+            sj.add(stage.toString());
+        }
+        return sj.toString();
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.DimensionsConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool of Dimensions CM sessions of one user.
+ *
+ * Sessions are shared: callers get the least loaded one and a new session is only opened when all
+ * existing ones are busy and the pool is not full yet. Sessions the client library knows to be expired
+ * are replaced before they are handed out; {@link #maintain} keeps idle sessions alive on the server.
+ *
+ * Logins run outside the pool lock. A replaced session is retired: it is no longer handed out and its
+ * connection is closed once the last call running on it has finished.
+ */
+final class DimCMSessionPool {
+    private static final Log LOG = LogFactory.getLog(DimCMSessionPool.class);
+
+    static final class Session {
+        final DimensionsConnection connection;
+        final long createdAt = System.currentTimeMillis();
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile long lastUsed = createdAt;
+        private volatile boolean retired;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Session(DimensionsConnection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Returns whether the session is usable, asking the server if {@code ping} is set.
+         */
+        boolean isConnected(boolean ping) {
+            try {
+                return connection.getConnectionState(ping) == DimensionsConnection.STATE_CONNECTED;
+            } catch (RuntimeException e) {
+                LOG.debug("Dimensions CM session check failed: " + e.getMessage());
+                return false;
+            }
+        }
+
+        /**
+         * Marks a call running on the session.
+         *
+         * @return false if the session has been retired, the caller must use another one
+         */
+        boolean enter() {
+            inFlight.incrementAndGet();
+            if (retired) {
+                exit();
+                return false;
+            }
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        void exit() {
+            lastUsed = System.currentTimeMillis();
+            if (inFlight.decrementAndGet() == 0 && retired) {
+                closeConnection();
+            }
+        }
+
+        boolean isRetired() {
+            return retired;
+        }
+
+        /**
+         * Stops handing the session out and closes it as soon as no call runs on it.
+         */
+        void retire() {
+            // Set before checking inFlight, enter() checks in the opposite order
+            retired = true;
+            if (inFlight.get() == 0) {
+                closeConnection();
+            }
+        }
+
+        private void closeConnection() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    connection.close();
+                } catch (RuntimeException e) {
+                    LOG.debug("Error while closing Dimensions CM session: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final Supplier<DimensionsConnection> connector;
+    private final int maxSessions;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    // Guarded by this
+    private int opening;
+    private final Set<Session> replacing = new HashSet<>();
+    private boolean closed;
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    DimCMSessionPool(Supplier<DimensionsConnection> connector, int maxSessions) {
+        this.connector = connector;
+        this.maxSessions = Math.max(1, maxSessions);
+    }
+
+    /**
+     * Returns the least loaded session other than {@code exclude}, opening a new one if needed and allowed.
+     * Returns {@code exclude} itself if it is the only session and the pool is full.
+     */
+    Session acquire(Session exclude) {
+        lastAccess = System.currentTimeMillis();
+        while (true) {
+            Session best = null;
+            for (Session s : sessions) {
+                if (s != exclude && (best == null || s.inFlight.get() < best.inFlight.get())) {
+                    best = s;
+                }
+            }
+            if (best != null && !best.isConnected(false)) {
+                best = replace(best);
+            }
+            if (best != null && best.inFlight.get() == 0) {
+                return best;
+            }
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("The Dimensions CM session pool has been closed");
+                }
+                if (sessions.size() + opening < maxSessions) {
+                    opening++;
+                    break;
+                }
+                if (best != null || exclude != null) {
+                    return best != null ? best : exclude;
+                }
+                // Every slot is taken by a login in progress
+                waitForLogin();
+            }
+        }
+        final Session created = open();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Opened Dimensions CM session " + sessions.size() + " of " + maxSessions);
+        }
+        return created;
+    }
+
+    /**
+     * Logs in for a slot reserved by incrementing {@link #opening}, without holding the pool lock.
+     */
+    private Session open() {
+        Session created = null;
+        try {
+            created = new Session(connector.get());
+            return created;
+        } finally {
+            synchronized (this) {
+                opening--;
+                if (created != null) {
+                    sessions.add(created);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void waitForLogin() {
+        try {
+            wait(1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a Dimensions CM session", e);
+        }
+    }
+
+    /**
+     * Opens a new session in place of an expired one. Returns the existing session if that fails, the
+     * caller then gets the original error of its call.
+     */
+    Session replace(Session expired) {
+        synchronized (this) {
+            while (replacing.contains(expired)) {
+                waitForLogin();
+            }
+            if (closed || !sessions.contains(expired)) {
+                // Already replaced by another caller
+                expired = null;
+            } else {
+                replacing.add(expired);
+                opening++;
+            }
+        }
+        if (expired == null) {
+            return acquire(null);
+        }
+        final Session created;
+        try {
+            created = open();
+        } catch (RuntimeException e) {
+            LOG.warn("Could not replace expired Dimensions CM session: " + e.getMessage());
+            return expired;
+        } finally {
+            synchronized (this) {
+                replacing.remove(expired);
+            }
+        }
+        remove(expired);
+        LOG.debug("Replaced expired Dimensions CM session");
+        return created;
+    }
+
+    /**
+     * Pings sessions idle for {@code idleMillis} so that the server does not expire them, and replaces
+     * sessions older than {@code maxAgeMillis} (0 for no limit) before their login runs out. Busy sessions
+     * are left alone.
+     */
+    void maintain(long idleMillis, long maxAgeMillis) {
+        final long now = System.currentTimeMillis();
+        for (Session s : getSessions()) {
+            if (s.inFlight.get() > 0) {
+                continue;
+            }
+            if (maxAgeMillis > 0 && now - s.createdAt >= maxAgeMillis) {
+                LOG.debug("Re-authenticating Dimensions CM session opened " + (now - s.createdAt) / 1000 + " seconds ago");
+                replace(s);
+            } else if (now - s.lastUsed >= idleMillis && s.enter()) {
+                // Tracked like a call, so that nothing closes the session during the ping
+                final boolean connected;
+                try {
+                    connected = s.isConnected(true);
+                } finally {
+                    s.exit();
+                }
+                if (!connected) {
+                    replace(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of calls in flight on all sessions of the pool.
+     */
+    int getLoad() {
+        int load = 0;
+        for (Session s : sessions) {
+            load += s.inFlight.get();
+        }
+        return load;
+    }
+
+    List<Session> getSessions() {
+        return new ArrayList<>(sessions);
+    }
+
+    /**
+     * Returns true if no call runs on the pool and no session was acquired for {@code idleMillis}.
+     */
+    boolean isIdle(long idleMillis) {
+        return getLoad() == 0 && System.currentTimeMillis() - lastAccess >= idleMillis;
+    }
+
+    void remove(Session session) {
+        if (sessions.remove(session)) {
+            session.retire();
+        }
+    }
+
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Session s : getSessions()) {
+            remove(s);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Cache store keeping one file per entry in a directory shared by all SSC nodes, e.g. on a network file
+ * system, so that Dimensions CM metadata loaded by one node is reused by all of them.
+ *
+ * Every write gives the entry a new version, stored at the start of its file. Values read before are kept
+ * in memory and reused as long as the version in the file is unchanged, so a lookup costs reading a few
+ * bytes rather than decoding a whole catalogue. Removing an entry deletes its file, which invalidates it
+ * for all nodes. Expired entries are removed by version: the file is first moved aside, and put back if
+ * another node rewrote it in the meantime. Any directory works, so a local temporary directory can stand in for the shared one.
+ */
+final class DimCMSharedCacheStore implements DimCMCacheStore {
+    private static final Log LOG = LogFactory.getLog(DimCMSharedCacheStore.class);
+
+    private static final int ENTRY_MAGIC = 0x44434d53; // "DCMS"
+    private static final int ENTRY_FORMAT = 1;
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private final File dir;
+    private final Map<String, Entry> read = new ConcurrentHashMap<>();
+
+    DimCMSharedCacheStore(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        this.dir = dir;
+    }
+
+    @Override
+    public Entry get(String key) {
+        final File file = getFile(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != ENTRY_MAGIC || in.readInt() != ENTRY_FORMAT) {
+                return null;
+            }
+            final long version = in.readLong();
+            final Entry known = read.get(key);
+            if (known != null && known.version == version) {
+                return known;
+            }
+            if (!key.equals(in.readUTF())) {
+                // Another key with the same hash
+                return null;
+            }
+            final long loadedAt = in.readLong();
+            final Entry entry = new Entry(DimCMMetadataCache.readValue(in), loadedAt, version);
+            read.put(key, entry);
+            return entry;
+        } catch (FileNotFoundException e) {
+            read.remove(key);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("Ignoring unreadable shared cache entry " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, Object value, long loadedAt) {
+        final File file = getFile(key);
+        final File tmp = new File(dir, file.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        final long version = (System.currentTimeMillis() << 20) | ThreadLocalRandom.current().nextInt(1 << 20);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(ENTRY_MAGIC);
+                out.writeInt(ENTRY_FORMAT);
+                out.writeLong(version);
+                out.writeUTF(key);
+                out.writeLong(loadedAt);
+                DimCMMetadataCache.writeValue(out, value);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            read.put(key, new Entry(value, loadedAt, version));
+        } catch (IOException e) {
+            LOG.warn("Could not write shared cache entry " + file + ": " + e.getMessage());
+            if (tmp.exists() && !tmp.delete()) {
+                LOG.debug("Could not delete " + tmp);
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(String key) {
+        read.remove(key);
+        return getFile(key).delete();
+    }
+
+    @Override
+    public boolean remove(String key, long version) {
+        final File file = getFile(key);
+        final File aside = new File(dir, file.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".del");
+        try {
+            Files.move(file.toPath(), aside.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Already removed, or the file system cannot move atomically and the entry is left to expire again
+            return false;
+        }
+        boolean removed = false;
+        try {
+            if (readVersion(aside) == version) {
+                removed = true;
+                read.remove(key);
+            } else {
+                // Rewritten since it was read: put it back, unless an even newer entry exists by now
+                Files.move(aside.toPath(), file.toPath());
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not restore shared cache entry " + file + ": " + e.getMessage());
+        } finally {
+            if (aside.exists() && !aside.delete()) {
+                LOG.debug("Could not delete " + aside);
+            }
+        }
+        return removed;
+    }
+
+    private static long readVersion(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != ENTRY_MAGIC || in.readInt() != ENTRY_FORMAT) {
+                return -1;
+            }
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Removes the entry files by their modification time, which saves reading every file. Entries rewritten
+     * by another node in the meantime have a newer modification time and are kept.
+     */
+    @Override
+    public int removeOlderThan(long time) {
+        read.values().removeIf(e -> e.loadedAt < time);
+        int removed = 0;
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                final long modified = file.lastModified();
+                if (modified != 0 && modified < time && file.delete()) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        read.clear();
+        final File[] files = dir.listFiles((d, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete() && file.exists()) {
+                    LOG.warn("Could not delete shared cache entry " + file);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        // Every entry is written through
+    }
+
+    @Override
+    public void close() {
+        // Every entry is written through
+    }
+
+    private File getFile(String key) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder(hash.length * 2 + ENTRY_SUFFIX.length());
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return new File(dir, name.append(ENTRY_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
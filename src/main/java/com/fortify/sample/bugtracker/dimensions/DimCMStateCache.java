@@ -0,0 +1,144 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import static com.fortify.sample.bugtracker.dimensions.DimCMPluginConstants.*;
+
+/**
+ * Last known lifecycle state and resolution of requests, fed by state syncs and by lifecycle change events.
+ *
+ * A state is kept only as long as its retention, i.e. as long as it could still be answered instead of
+ * fetching the request. Older states are dropped when read, and all of them every
+ * {@link DimCMPluginConstants#STATE_CACHE_SWEEP_INTERVAL_MILLIS}, so the store holds at most the requests
+ * seen within the longest retention.
+ */
+final class DimCMStateCache {
+
+    private static final String SOURCE_POLL = "P";
+    private static final String SOURCE_EVENT = "E";
+
+    static final class State {
+        final String state;
+        final String resolution;
+        final long updatedAt;
+        /** When the state was first seen, i.e. how long the request has been unchanged */
+        final long changedAt;
+        final boolean fromEvent;
+
+        State(String state, String resolution, long updatedAt, long changedAt, boolean fromEvent) {
+            this.state = state;
+            this.resolution = resolution;
+            this.updatedAt = updatedAt;
+            this.changedAt = changedAt;
+            this.fromEvent = fromEvent;
+        }
+
+        long getAge() {
+            return System.currentTimeMillis() - updatedAt;
+        }
+
+        long getTimeUnchanged() {
+            return System.currentTimeMillis() - changedAt;
+        }
+    }
+
+    private final DimCMCacheStore store;
+    private final AtomicLong nextSweep = new AtomicLong();
+    private volatile ToLongFunction<String> retention = state -> Long.MAX_VALUE;
+    private volatile long maxRetention = Long.MAX_VALUE;
+
+    DimCMStateCache() {
+        this(new DimCMInProcessCacheStore());
+    }
+
+    DimCMStateCache(DimCMCacheStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Sets how long states are kept, by lifecycle state, and the longest of these times. Removes the states
+     * that are older than that right away.
+     */
+    void setRetention(ToLongFunction<String> retention, long maxRetention) {
+        this.retention = retention;
+        this.maxRetention = maxRetention;
+        nextSweep.set(0);
+        sweepIfDue(System.currentTimeMillis());
+    }
+
+    @SuppressWarnings("unchecked")
+    State get(String requestId) {
+        DimCMCacheStore.Entry e = store.get(requestId);
+        if (e == null) {
+            return null;
+        }
+        // Stored as [source, state, changedAt] or [source, state, changedAt, resolution]
+        List<String> value = (List<String>) e.value;
+        final State state;
+        try {
+            state = new State(value.get(1), value.size() > 3 ? value.get(3) : null, e.loadedAt, Long.parseLong(value.get(2)),
+                    SOURCE_EVENT.equals(value.get(0)));
+        } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+            // Written by an older plugin version into a shared store; poll again
+            return null;
+        }
+        if (state.getAge() >= retention.applyAsLong(state.state)) {
+            store.remove(requestId, e.version);
+            return null;
+        }
+        return state;
+    }
+
+    void polled(String requestId, String state, String resolution) {
+        put(requestId, SOURCE_POLL, state, resolution);
+    }
+
+    /**
+     * Records a state change event. The resolution of the previous state is kept if the event carries none.
+     */
+    void changed(String requestId, String state, String resolution) {
+        State previous = get(requestId);
+        if (resolution == null && previous != null) {
+            resolution = previous.resolution;
+        }
+        put(requestId, SOURCE_EVENT, state, resolution);
+    }
+
+    private void put(String requestId, String source, String state, String resolution) {
+        if (state == null) {
+            store.remove(requestId);
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final State previous = get(requestId);
+        final String changedAt = String.valueOf(previous != null && previous.state.equals(state) ? previous.changedAt : now);
+        store.put(requestId, resolution == null ? Arrays.asList(source, state, changedAt)
+                : Arrays.asList(source, state, changedAt, resolution), now);
+        sweepIfDue(now);
+    }
+
+    private void sweepIfDue(long now) {
+        final long due = nextSweep.get();
+        if (now >= due && nextSweep.compareAndSet(due, now + STATE_CACHE_SWEEP_INTERVAL_MILLIS)
+                && maxRetention != Long.MAX_VALUE) {
+            store.removeOlderThan(now - maxRetention);
+        }
+    }
+
+    void remove(String requestId) {
+        store.remove(requestId);
+    }
+
+    /**
+     * Persists all changes of the store, see {@link DimCMCacheStore#close()}.
+     */
+    void close() {
+        store.close();
+    }
+}
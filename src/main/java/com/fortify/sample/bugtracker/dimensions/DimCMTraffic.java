@@ -0,0 +1,612 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.DimensionsObjectFactory;
+import com.serena.dmclient.api.DimensionsResult;
+import com.serena.dmclient.api.RequestDetails;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records the Dimensions API calls made through a {@link DimensionsObjectFactory}, or replays a recording
+ * without a Dimensions CM server.
+ *
+ * The factory and every Dimensions object returned from it are wrapped in dynamic proxies which write each
+ * call (object handle, method, arguments, result and duration) to a compressed file. Arguments and results
+ * of methods dealing with passwords or other secrets are redacted. On replay the proxies answer calls from
+ * the recording, matched by object, method and arguments in recorded order, after the recorded duration
+ * divided by the replay speed (0 answers immediately). Replays are deterministic for single threaded
+ * workloads; concurrent workloads may see answers of identical calls in a different order.
+ *
+ * Starting a recording keeps an existing recording of the same name as name.1, and up to
+ * {@link #MAX_BACKUPS} older ones as name.2 and so on.
+ */
+final class DimCMTraffic implements Closeable {
+    private static final Log LOG = LogFactory.getLog(DimCMTraffic.class);
+
+    private static final int MAGIC = 0x44434d54; // "DCMT"
+    private static final int VERSION = 1;
+
+    private static final byte RECORD_STRING = 1;
+    private static final byte RECORD_CALL = 2;
+    private static final byte RECORD_FAILURE = 3;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_INT = 2;
+    private static final byte VALUE_LONG = 3;
+    private static final byte VALUE_BOOLEAN = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_DATE = 6;
+    private static final byte VALUE_INT_ARRAY = 7;
+    private static final byte VALUE_LIST = 8;
+    private static final byte VALUE_HANDLE = 9;
+    private static final byte VALUE_MAP = 10;
+    private static final byte VALUE_OPAQUE = 11;
+    private static final byte VALUE_RESULT = 12;
+
+    private static final int MAX_BACKUPS = 5;
+
+    private static final Pattern SENSITIVE = Pattern.compile("(?i).*(password|passwd|credential|secret|token).*");
+    private static final String REDACTED = "***";
+    private static final int ROOT_HANDLE = 0;
+
+    private final boolean replay;
+
+    // Recording
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private final AtomicInteger nextHandle = new AtomicInteger(ROOT_HANDLE + 1);
+
+    // Replay
+    private final double speed;
+    private final Map<String, Deque<Call>> calls = new HashMap<>();
+    private final Map<Integer, Object> replayHandles = new ConcurrentHashMap<>();
+
+    private static final class Call {
+        final long nanos;
+        final boolean failed;
+        final Object value;
+
+        Call(long nanos, boolean failed, Object value) {
+            this.nanos = nanos;
+            this.failed = failed;
+            this.value = value;
+        }
+    }
+
+    /** Decoded handle of a recorded Dimensions object. */
+    private static final class Handle {
+        final int id;
+        final String[] interfaces;
+
+        Handle(int id, String[] interfaces) {
+            this.id = id;
+            this.interfaces = interfaces;
+        }
+    }
+
+    private DimCMTraffic(DataOutputStream out) {
+        this.replay = false;
+        this.out = out;
+        this.speed = 0;
+    }
+
+    private DimCMTraffic(double speed) {
+        this.replay = true;
+        this.out = null;
+        this.speed = speed;
+    }
+
+    static DimCMTraffic record(File file) throws IOException {
+        rotate(file);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        LOG.info("Recording Dimensions CM traffic to " + file);
+        return new DimCMTraffic(out);
+    }
+
+    private static void rotate(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        for (int i = MAX_BACKUPS; i > 0; i--) {
+            File from = i == 1 ? file : new File(file.getPath() + "." + (i - 1));
+            File to = new File(file.getPath() + "." + i);
+            if (from.exists() && (to.exists() && !to.delete() || !from.renameTo(to))) {
+                throw new IOException("Could not rotate " + from + " to " + to);
+            }
+        }
+    }
+
+    static DimCMTraffic replay(File file, double speed) throws IOException {
+        DimCMTraffic traffic = new DimCMTraffic(speed);
+        traffic.load(file);
+        LOG.info("Replaying Dimensions CM traffic from " + file + " at speed " + speed);
+        return traffic;
+    }
+
+    boolean isReplay() {
+        return replay;
+    }
+
+    /**
+     * Returns the factory to use: a recording proxy around the given factory, or the replay factory.
+     */
+    DimensionsObjectFactory wrap(DimensionsObjectFactory factory) {
+        if (replay) {
+            return (DimensionsObjectFactory) getReplayHandle(new Handle(ROOT_HANDLE, new String[]{DimensionsObjectFactory.class.getName()}));
+        }
+        return (DimensionsObjectFactory) Proxy.newProxyInstance(DimCMTraffic.class.getClassLoader(),
+                new Class<?>[]{DimensionsObjectFactory.class}, new Recording(ROOT_HANDLE, factory));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            synchronized (this) {
+                out.close();
+            }
+        }
+    }
+
+    // ========================================================================
+    // Recording
+    // ========================================================================
+
+    private final class Recording implements InvocationHandler {
+        final int id;
+        final Object target;
+
+        Recording(int id, Object target) {
+            this.id = id;
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(target, args);
+            }
+            final boolean sensitive = SENSITIVE.matcher(method.getName()).matches();
+            final String argKey = argKey(args, sensitive);
+            final long start = System.nanoTime();
+            Object result;
+            try {
+                result = method.invoke(target, unwrapArgs(args));
+            } catch (InvocationTargetException e) {
+                write(RECORD_FAILURE, id, methodKey(method), argKey, System.nanoTime() - start,
+                        e.getCause().getClass().getName() + ": " + e.getCause().getMessage(), false);
+                throw e.getCause();
+            }
+            final long nanos = System.nanoTime() - start;
+            result = wrapResult(result);
+            write(RECORD_CALL, id, methodKey(method), argKey, nanos, result, sensitive);
+            return result;
+        }
+    }
+
+    private Object wrapResult(Object value) {
+        if (value instanceof List) {
+            List<Object> res = new ArrayList<>();
+            for (Object o : (List<?>) value) {
+                res.add(wrapResult(o));
+            }
+            return res;
+        }
+        Class<?>[] interfaces = proxyInterfaces(value);
+        if (interfaces.length == 0) {
+            return value;
+        }
+        return Proxy.newProxyInstance(DimCMTraffic.class.getClassLoader(), interfaces,
+                new Recording(nextHandle.getAndIncrement(), value));
+    }
+
+    private static Class<?>[] proxyInterfaces(Object value) {
+        if (value == null || value instanceof List || value instanceof Map || value instanceof CharSequence
+                || value instanceof Number || value instanceof Boolean || value instanceof Date || isRecording(value)) {
+            return new Class<?>[0];
+        }
+        Set<Class<?>> res = new LinkedHashSet<>();
+        for (Class<?> c = value.getClass(); c != null; c = c.getSuperclass()) {
+            for (Class<?> i : c.getInterfaces()) {
+                collectInterfaces(i, res);
+            }
+        }
+        return res.toArray(new Class<?>[0]);
+    }
+
+    private static boolean isRecording(Object value) {
+        return Proxy.isProxyClass(value.getClass()) && Proxy.getInvocationHandler(value) instanceof Recording;
+    }
+
+    private static void collectInterfaces(Class<?> i, Set<Class<?>> res) {
+        if (Modifier.isPublic(i.getModifiers()) && (i.getName().startsWith("com.serena.") || i == Iterator.class)) {
+            res.add(i);
+        }
+        for (Class<?> parent : i.getInterfaces()) {
+            collectInterfaces(parent, res);
+        }
+    }
+
+    /**
+     * Replaces recording proxies in arguments by the objects they wrap, as the Dimensions API implementation
+     * expects its own classes.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object[] unwrapArgs(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] res = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            res[i] = unwrap(args[i]);
+            if (res[i] instanceof RequestDetails && ((RequestDetails) res[i]).getRelatedParts() != null) {
+                RequestDetails details = (RequestDetails) res[i];
+                details.setRelatedParts((List) unwrap(details.getRelatedParts()));
+            }
+        }
+        return res;
+    }
+
+    private static Object unwrap(Object value) {
+        if (value instanceof List) {
+            List<Object> res = new ArrayList<>();
+            for (Object o : (List<?>) value) {
+                res.add(unwrap(o));
+            }
+            return res;
+        }
+        if (value != null && isRecording(value)) {
+            return ((Recording) Proxy.getInvocationHandler(value)).target;
+        }
+        return value;
+    }
+
+    private synchronized void write(byte type, int handle, String methodKey, String argKey, long nanos, Object value,
+                                    boolean redact) {
+        try {
+            int method = stringId(methodKey);
+            int args = stringId(argKey);
+            out.writeByte(type);
+            out.writeInt(handle);
+            out.writeInt(method);
+            out.writeInt(args);
+            out.writeLong(nanos);
+            writeValue(value, redact);
+        } catch (IOException e) {
+            LOG.warn("Could not record Dimensions CM traffic: " + e.getMessage());
+        }
+    }
+
+    private int stringId(String s) throws IOException {
+        Integer id = strings.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.put(s, id);
+            out.writeByte(RECORD_STRING);
+            writeString(out, s);
+        }
+        return id;
+    }
+
+    private void writeValue(Object value, boolean redact) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (redact && !(value instanceof Boolean)) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, REDACTED);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Date) {
+            out.writeByte(VALUE_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof int[]) {
+            out.writeByte(VALUE_INT_ARRAY);
+            out.writeInt(((int[]) value).length);
+            for (int i : (int[]) value) {
+                out.writeInt(i);
+            }
+        } else if (value instanceof List) {
+            out.writeByte(VALUE_LIST);
+            out.writeInt(((List<?>) value).size());
+            for (Object o : (List<?>) value) {
+                writeValue(o, false);
+            }
+        } else if (value instanceof Map) {
+            out.writeByte(VALUE_MAP);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                writeValue(e.getKey(), false);
+                writeValue(e.getValue(), false);
+            }
+        } else if (value instanceof DimensionsResult) {
+            // A class, not an interface, so it cannot be proxied on replay
+            out.writeByte(VALUE_RESULT);
+            writeValue(((DimensionsResult) value).getMessage(), false);
+            writeValue(((DimensionsResult) value).getResultList(), false);
+        } else if (isRecording(value)) {
+            out.writeByte(VALUE_HANDLE);
+            out.writeInt(((Recording) Proxy.getInvocationHandler(value)).id);
+            Class<?>[] interfaces = value.getClass().getInterfaces();
+            out.writeByte(interfaces.length);
+            for (Class<?> i : interfaces) {
+                writeString(out, i.getName());
+            }
+        } else {
+            out.writeByte(VALUE_OPAQUE);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    // ========================================================================
+    // Replay
+    // ========================================================================
+
+    private final class Replaying implements InvocationHandler {
+        final int id;
+
+        Replaying(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return id;
+                    default:
+                        return "Replay#" + id;
+                }
+            }
+            final String key = callKey(id, methodKey(method), argKey(args, SENSITIVE.matcher(method.getName()).matches()));
+            Call call;
+            synchronized (calls) {
+                Deque<Call> queue = calls.get(key);
+                call = queue == null ? null : queue.poll();
+            }
+            if (call == null) {
+                throw new IllegalStateException("No recorded answer for " + method.getName() + " on object " + id);
+            }
+            if (speed > 0) {
+                TimeUnit.NANOSECONDS.sleep((long) (call.nanos / speed));
+            }
+            if (call.failed) {
+                throw replayedFailure((String) call.value);
+            }
+            return toReplayValue(call.value, method.getReturnType());
+        }
+    }
+
+    private Object toReplayValue(Object value, Class<?> type) {
+        if (value instanceof Handle) {
+            return getReplayHandle((Handle) value);
+        }
+        if (value instanceof List) {
+            List<Object> res = new ArrayList<>();
+            for (Object o : (List<?>) value) {
+                res.add(toReplayValue(o, Object.class));
+            }
+            return res;
+        }
+        if (value instanceof DimensionsResult && ((DimensionsResult) value).getResultList() != null) {
+            DimensionsResult result = (DimensionsResult) value;
+            result.setList((List<?>) toReplayValue(result.getResultList(), List.class));
+            return result;
+        }
+        if (value instanceof Long && type == Date.class) {
+            return new Date((Long) value);
+        }
+        return value;
+    }
+
+    private Object getReplayHandle(Handle handle) {
+        return replayHandles.computeIfAbsent(handle.id, id -> {
+            List<Class<?>> interfaces = new ArrayList<>();
+            for (String name : handle.interfaces) {
+                try {
+                    interfaces.add(Class.forName(name, false, DimCMTraffic.class.getClassLoader()));
+                } catch (ClassNotFoundException e) {
+                    LOG.debug("Ignoring unknown interface " + name + " in replay");
+                }
+            }
+            return Proxy.newProxyInstance(DimCMTraffic.class.getClassLoader(), interfaces.toArray(new Class<?>[0]),
+                    new Replaying(id));
+        });
+    }
+
+    private static RuntimeException replayedFailure(String description) {
+        int pos = description.indexOf(": ");
+        String className = pos > 0 ? description.substring(0, pos) : description;
+        String message = pos > 0 ? description.substring(pos + 2) : null;
+        try {
+            Class<?> c = Class.forName(className);
+            if (RuntimeException.class.isAssignableFrom(c)) {
+                return (RuntimeException) c.getConstructor(String.class).newInstance(message);
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // fall through
+        }
+        return new RuntimeException(description);
+    }
+
+    private void load(File file) throws IOException {
+        List<String> table = new ArrayList<>();
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a Dimensions CM traffic recording");
+            }
+            int type;
+            while ((type = in.read()) != -1) {
+                if (type == RECORD_STRING) {
+                    table.add(readString(in));
+                    continue;
+                }
+                int handle = in.readInt();
+                String method = table.get(in.readInt());
+                String args = table.get(in.readInt());
+                long nanos = in.readLong();
+                Object value = readValue(in, table);
+                calls.computeIfAbsent(callKey(handle, method, args), k -> new ArrayDeque<>())
+                        .add(new Call(nanos, type == RECORD_FAILURE, value));
+                count++;
+            }
+        } catch (EOFException e) {
+            LOG.warn("Recording " + file + " is truncated, replaying the first " + count + " calls");
+        }
+    }
+
+    private static Object readValue(DataInputStream in, List<String> table) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+            case VALUE_OPAQUE:
+                return readString(in);
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_LONG:
+            case VALUE_DATE:
+                return in.readLong();
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_INT_ARRAY:
+                int[] ints = new int[in.readInt()];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = in.readInt();
+                }
+                return ints;
+            case VALUE_LIST:
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, table));
+                }
+                return list;
+            case VALUE_MAP:
+                int entries = in.readInt();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(readValue(in, table), readValue(in, table));
+                }
+                return map;
+            case VALUE_RESULT:
+                DimensionsResult result = new DimensionsResult((String) readValue(in, table));
+                Object resultList = readValue(in, table);
+                if (resultList != null) {
+                    result.setList((List<?>) resultList);
+                }
+                return result;
+            case VALUE_HANDLE:
+                int id = in.readInt();
+                String[] interfaces = new String[in.readByte()];
+                for (int i = 0; i < interfaces.length; i++) {
+                    interfaces[i] = readString(in);
+                }
+                return new Handle(id, interfaces);
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    // ========================================================================
+    // Helpers
+    // ========================================================================
+
+    private static String callKey(int handle, String methodKey, String argKey) {
+        return handle + "|" + methodKey + "|" + argKey;
+    }
+
+    private static String methodKey(Method method) {
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        for (Class<?> p : method.getParameterTypes()) {
+            sb.append(p.getSimpleName()).append(',');
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String argKey(Object[] args, boolean redact) {
+        if (args == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Object arg : args) {
+            appendArg(sb, arg, redact);
+            sb.append(',');
+        }
+        return sb.toString();
+    }
+
+    private static void appendArg(StringBuilder sb, Object arg, boolean redact) {
+        if (arg == null) {
+            sb.append("null");
+        } else if (redact) {
+            sb.append(REDACTED);
+        } else if (arg instanceof String || arg instanceof Number || arg instanceof Boolean || arg instanceof Enum) {
+            sb.append(arg);
+        } else if (arg instanceof int[]) {
+            sb.append(Arrays.toString((int[]) arg));
+        } else if (arg instanceof Class) {
+            sb.append(((Class<?>) arg).getName());
+        } else if (arg instanceof List) {
+            sb.append('[');
+            for (Object o : (List<?>) arg) {
+                appendArg(sb, o, false);
+                sb.append(' ');
+            }
+            sb.append(']');
+        } else if (Proxy.isProxyClass(arg.getClass())) {
+            InvocationHandler h = Proxy.getInvocationHandler(arg);
+            sb.append('#').append(h instanceof Recording ? ((Recording) h).id : h instanceof Replaying ? ((Replaying) h).id : -1);
+        } else {
+            // Filters, details and other value objects have no stable string form
+            sb.append(arg.getClass().getSimpleName());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
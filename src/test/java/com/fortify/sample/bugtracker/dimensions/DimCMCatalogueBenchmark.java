@@ -0,0 +1,70 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap used by cached catalogues as plain string lists and as {@link DimCMCatalogue}s.
+ *
+ * Usage: DimCMCatalogueBenchmark [products] [parts per product] [projects per product]
+ *
+ * Run with a fixed heap (e.g. -Xms1g -Xmx1g) so that the measurements are not disturbed by heap resizing.
+ */
+final class DimCMCatalogueBenchmark {
+
+    private DimCMCatalogueBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        final int products = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        final int parts = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        final int projects = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        System.out.println(products + " products with " + parts + " parts and " + projects + " projects each");
+        long lists = measure(products, parts, projects, false);
+        long catalogues = measure(products, parts, projects, true);
+        System.out.println("ArrayList<String>: " + lists / 1024 + " KB");
+        System.out.println("DimCMCatalogue:    " + catalogues / 1024 + " KB ("
+                + (lists > 0 ? 100 - catalogues * 100 / lists : 0) + "% less)");
+    }
+
+    private static long measure(int products, int parts, int projects, boolean compact) {
+        final long before = usedHeap();
+        final List<List<String>> retained = new ArrayList<>();
+        for (int p = 0; p < products; p++) {
+            final String product = "PRODUCT_" + p;
+            List<String> partNames = new ArrayList<>();
+            for (int i = 0; i < parts; i++) {
+                partNames.add(product + ":" + "COMPONENT_" + i + ".A;1");
+            }
+            List<String> projectNames = new ArrayList<>();
+            for (int i = 0; i < projects; i++) {
+                projectNames.add("MAINLINE_" + product + "_STREAM_" + i);
+            }
+            retained.add(compact ? DimCMCatalogue.of(partNames) : partNames);
+            retained.add(compact ? DimCMCatalogue.of(projectNames) : projectNames);
+        }
+        final long used = usedHeap() - before;
+        // Keep the lists reachable until measured
+        if (retained.size() != products * 2) {
+            throw new IllegalStateException();
+        }
+        return used;
+    }
+
+    private static long usedHeap() {
+        final Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
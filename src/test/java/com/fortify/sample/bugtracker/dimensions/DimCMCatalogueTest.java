@@ -0,0 +1,61 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DimCMCatalogueTest {
+
+    private static final List<String> NAMES = Arrays.asList("QLARIUS:PART.A;1", "QLARIUS:PART.B;1", "PAYROLL:PART.A;1",
+            "plain", "Ünïcödé", "QLARIUS:PART.A;1", "");
+
+    @Test
+    public void keepsEntriesAndOrder() {
+        DimCMCatalogue catalogue = DimCMCatalogue.of(NAMES);
+
+        assertEquals(NAMES, catalogue);
+        assertEquals(NAMES, new ArrayList<>(catalogue));
+        assertEquals(NAMES.hashCode(), catalogue.hashCode());
+        assertSame(catalogue, DimCMCatalogue.of(catalogue));
+        assertTrue(DimCMCatalogue.of(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void findsEntriesWithoutDecoding() {
+        DimCMCatalogue catalogue = DimCMCatalogue.of(NAMES);
+
+        assertTrue(catalogue.contains("PAYROLL:PART.A;1"));
+        assertFalse(catalogue.contains("PAYROLL:PART.B;1"));
+        assertFalse(catalogue.contains("UNKNOWN:PART.A;1"));
+        assertFalse(catalogue.contains(42));
+        assertEquals(0, catalogue.indexOf("QLARIUS:PART.A;1"));
+        assertEquals(5, catalogue.lastIndexOf("QLARIUS:PART.A;1"));
+        assertEquals(4, catalogue.indexOf("Ünïcödé"));
+        assertEquals(6, catalogue.indexOf(""));
+        assertEquals(-1, catalogue.indexOf(null));
+    }
+
+    @Test
+    public void findsEntriesIgnoringCase() {
+        DimCMCatalogue catalogue = DimCMCatalogue.of(NAMES);
+
+        assertTrue(catalogue.containsIgnoreCase("qlarius:part.b;1"));
+        assertTrue(catalogue.containsIgnoreCase("PLAIN"));
+        assertTrue(catalogue.containsIgnoreCase("üNÏCÖDÉ"));
+        assertFalse(catalogue.containsIgnoreCase("qlarius:part.c;1"));
+        assertFalse(catalogue.containsIgnoreCase("plai"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexOutOfRange() {
+        DimCMCatalogue.of(NAMES).get(NAMES.size());
+    }
+}
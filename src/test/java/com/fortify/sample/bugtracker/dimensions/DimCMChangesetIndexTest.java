@@ -0,0 +1,28 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DimCMChangesetIndexTest {
+
+    @Test
+    public void blankBoundsLeaveTheRangeOpen() {
+        assertEquals(Long.MIN_VALUE, DimCMChangesetIndex.parseBound(null, Long.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, DimCMChangesetIndex.parseBound("  ", Long.MAX_VALUE));
+        assertEquals(4711L, DimCMChangesetIndex.parseBound(" 4711 ", Long.MIN_VALUE));
+    }
+
+    @Test
+    public void invalidBoundIsReportedWithTheValue() {
+        try {
+            DimCMChangesetIndex.parseBound("abc123", Long.MIN_VALUE);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("abc123"));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class DimCMDescriptionBuilderTest {
+
+    @Test
+    public void shortDescriptionIsKeptAsIs() {
+        DimCMDescriptionBuilder builder = new DimCMDescriptionBuilder(1000);
+        builder.append("first ").append(null).append("second");
+
+        assertEquals("first second", builder.build());
+        assertNull(builder.getOverflowFile());
+    }
+
+    @Test
+    public void descriptionNeverExceedsTheLimit() throws IOException {
+        DimCMDescriptionBuilder builder = new DimCMDescriptionBuilder(1000);
+        try {
+            builder.append(StringUtils.repeat("a", 990)).append(StringUtils.repeat("b", 25));
+
+            String description = builder.build();
+            assertEquals(1000, description.length());
+            assertTrue(description.startsWith("aaa"));
+            assertTrue(description.endsWith(DimCMDescriptionBuilder.OVERFLOW_FILE_NAME + ")"));
+            assertEquals(StringUtils.repeat("a", 990) + StringUtils.repeat("b", 25), read(builder.getOverflowFile()));
+        } finally {
+            builder.discard();
+        }
+    }
+
+    @Test
+    public void textOverflowingInOneAppendIsCut() throws IOException {
+        DimCMDescriptionBuilder builder = new DimCMDescriptionBuilder(200);
+        try {
+            String text = StringUtils.repeat("0123456789", 100);
+            builder.append(text);
+
+            assertEquals(200, builder.build().length());
+            assertEquals(text, read(builder.getOverflowFile()));
+        } finally {
+            builder.discard();
+        }
+        assertFalse(builder.getOverflowFile().exists());
+    }
+
+    @Test
+    public void abbreviateStaysWithinTheLimit() {
+        assertEquals("short", DimCMDescriptionBuilder.abbreviate("short", 10));
+        String text = StringUtils.repeat("x", 100);
+        assertEquals(50, DimCMDescriptionBuilder.abbreviate(text, 50).length());
+        assertTrue(DimCMDescriptionBuilder.abbreviate(text, 50).endsWith("(100 characters)"));
+        assertEquals("xxxxx", DimCMDescriptionBuilder.abbreviate(text, 5));
+    }
+
+    private static String read(File file) throws IOException {
+        try (Reader in = new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8)) {
+            StringWriter out = new StringWriter();
+            char[] buffer = new char[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class DimCMEventListenerTest {
+
+    private static final String TOKEN = "s3cret";
+
+    private DimCMStateCache states;
+    private DimCMEventListener listener;
+
+    @Before
+    public void startListener() throws IOException {
+        states = new DimCMStateCache();
+        listener = new DimCMEventListener("127.0.0.1", 0, TOKEN, states, DimCMExecutors.PLATFORM);
+    }
+
+    @After
+    public void stopListener() {
+        listener.close();
+    }
+
+    @Test
+    public void recordsEventWithValidToken() throws IOException {
+        assertEquals("OK", DimCMEventListener.send("127.0.0.1", listener.getPort(), TOKEN, "P_BUG_1", "CLOSED", "Fixed"));
+
+        DimCMStateCache.State state = states.get("P_BUG_1");
+        assertEquals("CLOSED", state.state);
+        assertEquals("Fixed", state.resolution);
+        assertTrue(state.fromEvent);
+    }
+
+    @Test
+    public void rejectsEventWithInvalidOrMissingToken() throws IOException {
+        assertEquals("ERROR invalid token", DimCMEventListener.send("127.0.0.1", listener.getPort(), "wrong", "P_BUG_1", "CLOSED", null));
+        assertEquals("ERROR invalid token", DimCMEventListener.send("127.0.0.1", listener.getPort(), null, "P_BUG_1", "CLOSED", null));
+        assertNull(states.get("P_BUG_1"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesToListenWithoutToken() throws IOException {
+        new DimCMEventListener("127.0.0.1", 0, "", new DimCMStateCache(), DimCMExecutors.PLATFORM);
+    }
+
+    @Test
+    public void answersEveryLineOfAConnection() throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", listener.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            out.write(TOKEN + "\tP_BUG_1\tRAISED\r\n");
+            out.write("\n");
+            out.write(TOKEN + "\tP_BUG_2\n");
+            out.write(TOKEN + "\tP_BUG_3\t" + StringUtils.repeat("x", 5000) + "\n");
+            out.write(TOKEN + "\tP_BUG_4\tUNDER_WORK\n");
+            out.flush();
+            socket.shutdownOutput();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("OK", in.readLine());
+            assertEquals("ERROR expected requestId and state", in.readLine());
+            assertEquals("ERROR line too long", in.readLine());
+            assertEquals("OK", in.readLine());
+            assertNull(in.readLine());
+        }
+        assertEquals("RAISED", states.get("P_BUG_1").state);
+        assertNull(states.get("P_BUG_3"));
+        assertEquals("UNDER_WORK", states.get("P_BUG_4").state);
+    }
+
+    @Test
+    public void keepsPreviousResolutionIfEventHasNone() throws IOException {
+        DimCMEventListener.send("127.0.0.1", listener.getPort(), TOKEN, "P_BUG_1", "COMPLETE", "Fixed");
+        DimCMEventListener.send("127.0.0.1", listener.getPort(), TOKEN, "P_BUG_1", "CLOSED", null);
+
+        assertEquals("CLOSED", states.get("P_BUG_1").state);
+        assertEquals("Fixed", states.get("P_BUG_1").resolution);
+    }
+
+    @Test
+    public void readLineKeepsOnlyWhatIsNeededToRecogniseOverlongLines() throws IOException {
+        StringBuilder line = new StringBuilder();
+        Reader in = new StringReader(StringUtils.repeat("y", 10000) + "\nnext\r\n");
+
+        assertTrue(DimCMEventListener.readLine(in, line));
+        assertEquals(4097, line.length());
+        assertTrue(DimCMEventListener.readLine(in, line));
+        assertEquals("next", line.toString());
+        assertFalse(DimCMEventListener.readLine(in, line));
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DimCMEventLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesOneLinePerEvent() throws IOException {
+        File file = new File(folder.getRoot(), "events.log");
+        DimCMEventLog log = new DimCMEventLog(file, 1);
+        log.record("fileBug", "P_BUG_1", System.nanoTime(), null);
+        log.record("fetchBugDetails", null, System.nanoTime(), new IllegalStateException("boom"));
+        log.close();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        String[] ok = lines.get(0).split("\t");
+        assertEquals(6, ok.length);
+        assertEquals("fileBug", ok[1]);
+        assertEquals("P_BUG_1", ok[2]);
+        assertEquals("OK", ok[4]);
+        assertEquals("-", ok[5]);
+        String[] failed = lines.get(1).split("\t");
+        assertEquals("-", failed[2]);
+        assertEquals("FAILED", failed[4]);
+        assertEquals("IllegalStateException", failed[5]);
+    }
+
+    @Test
+    public void samplingAlwaysKeepsFailures() throws IOException {
+        File file = new File(folder.getRoot(), "events.log");
+        DimCMEventLog log = new DimCMEventLog(file, Integer.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            log.record("fetchBugDetails", "P_BUG_" + i, System.nanoTime(), null);
+        }
+        log.record("fileBug", "P_BUG_X", System.nanoTime(), new RuntimeException());
+        log.close();
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.size() < 100);
+        assertTrue(lines.get(lines.size() - 1).contains("\tP_BUG_X\t"));
+        assertEquals(0, log.getDropped());
+    }
+
+    @Test
+    public void appendsToExistingLog() throws IOException {
+        File file = new File(folder.getRoot(), "events.log");
+        for (int i = 0; i < 2; i++) {
+            DimCMEventLog log = new DimCMEventLog(file, 1);
+            log.record("fileBug", "P_BUG_" + i, System.nanoTime(), null);
+            log.close();
+        }
+        assertEquals(2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+    }
+}
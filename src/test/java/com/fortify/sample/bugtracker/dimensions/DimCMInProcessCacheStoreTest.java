@@ -0,0 +1,74 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DimCMInProcessCacheStoreTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void requestStatesSurviveARestart() throws Exception {
+        File snapshot = new File(folder.getRoot(), "states.cache");
+        DimCMStateCache cache = new DimCMStateCache(new DimCMInProcessCacheStore(snapshot, "server|db@conn/states", Long.MAX_VALUE));
+        cache.polled("P_BUG_1", "RAISED", null);
+        cache.changed("P_BUG_2", "CLOSED", "Fixed");
+        cache.close();
+
+        DimCMStateCache restarted = new DimCMStateCache(new DimCMInProcessCacheStore(snapshot, "server|db@conn/states", Long.MAX_VALUE));
+        assertEquals("RAISED", restarted.get("P_BUG_1").state);
+        assertEquals("Fixed", restarted.get("P_BUG_2").resolution);
+        assertTrue(restarted.get("P_BUG_2").fromEvent);
+    }
+
+    @Test
+    public void snapshotOfAnotherOwnerIsNotLoaded() throws Exception {
+        File snapshot = new File(folder.getRoot(), "metadata.cache");
+        DimCMInProcessCacheStore store = new DimCMInProcessCacheStore(snapshot, "server|db@conn/metadata", DAY);
+        store.put("key", Arrays.asList("a", "b"), System.currentTimeMillis());
+        store.close();
+
+        assertNull(new DimCMInProcessCacheStore(snapshot, "other|db@conn/metadata", DAY).get("key"));
+        assertEquals(Arrays.asList("a", "b"), new DimCMInProcessCacheStore(snapshot, "server|db@conn/metadata", DAY).get("key").value);
+    }
+
+    @Test
+    public void entriesOlderThanTheMaximumAgeAreNotLoaded() throws Exception {
+        File snapshot = new File(folder.getRoot(), "metadata.cache");
+        DimCMInProcessCacheStore store = new DimCMInProcessCacheStore(snapshot, "owner", DAY);
+        long now = System.currentTimeMillis();
+        store.put("old", "value", now - 2 * DAY);
+        store.put("new", "value", now);
+        store.close();
+
+        DimCMInProcessCacheStore reloaded = new DimCMInProcessCacheStore(snapshot, "owner", DAY);
+        assertNull(reloaded.get("old"));
+        assertNotNull(reloaded.get("new"));
+    }
+
+    @Test
+    public void clearedStoreDoesNotReloadTheSnapshot() throws Exception {
+        File snapshot = new File(folder.getRoot(), "metadata.cache");
+        DimCMInProcessCacheStore store = new DimCMInProcessCacheStore(snapshot, "owner", DAY);
+        store.put("key", "value", System.currentTimeMillis());
+        store.close();
+
+        DimCMInProcessCacheStore reloaded = new DimCMInProcessCacheStore(snapshot, "owner", DAY);
+        reloaded.clear();
+        assertNull(reloaded.get("key"));
+        reloaded.close();
+        assertNull(new DimCMInProcessCacheStore(snapshot, "owner", DAY).get("key"));
+    }
+}
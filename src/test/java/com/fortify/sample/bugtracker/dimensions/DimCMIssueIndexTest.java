@@ -0,0 +1,105 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DimCMIssueIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void findsFiledIssuesAfterReload() throws IOException {
+        File file = new File(folder.getRoot(), "issues.idx");
+        DimCMIssueIndex index = new DimCMIssueIndex(file);
+        index.add("P_BUG_1", Arrays.asList("a", "b"));
+        index.flush();
+
+        DimCMIssueIndex reloaded = new DimCMIssueIndex(file);
+        assertEquals("P_BUG_1", reloaded.findExistingRequest(Arrays.asList("a", "b")));
+        assertEquals("P_BUG_1", reloaded.findExistingRequest(Collections.singletonList("b")));
+    }
+
+    @Test
+    public void requiresAllIssuesFiledAsOneRequest() {
+        DimCMIssueIndex index = new DimCMIssueIndex(null);
+        index.add("P_BUG_1", Collections.singletonList("a"));
+        index.add("P_BUG_2", Collections.singletonList("b"));
+
+        assertNull(index.findExistingRequest(Arrays.asList("a", "b")));
+        assertNull(index.findExistingRequest(Arrays.asList("a", "new")));
+        assertNull(index.findExistingRequest(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void removedRequestStaysForgottenAfterReload() throws IOException {
+        File file = new File(folder.getRoot(), "issues.idx");
+        DimCMIssueIndex index = new DimCMIssueIndex(file);
+        index.add("P_BUG_1", Arrays.asList("a", "b"));
+        index.add("P_BUG_2", Collections.singletonList("c"));
+        index.flush();
+        index.removeRequest("P_BUG_1");
+        index.flush();
+
+        DimCMIssueIndex reloaded = new DimCMIssueIndex(file);
+        assertNull(reloaded.findExistingRequest(Collections.singletonList("a")));
+        assertEquals("P_BUG_2", reloaded.findExistingRequest(Collections.singletonList("c")));
+    }
+
+    @Test
+    public void removingARequestKeepsIssuesRefiledElsewhere() throws IOException {
+        File file = new File(folder.getRoot(), "issues.idx");
+        DimCMIssueIndex index = new DimCMIssueIndex(file);
+        index.add("P_BUG_1", Arrays.asList("a", "b"));
+        index.add("P_BUG_2", Collections.singletonList("b"));
+        index.flush();
+
+        DimCMIssueIndex reloaded = new DimCMIssueIndex(file);
+        reloaded.removeRequest("P_BUG_1");
+        assertNull(reloaded.findExistingRequest(Collections.singletonList("a")));
+        assertEquals("P_BUG_2", reloaded.findExistingRequest(Collections.singletonList("b")));
+        reloaded.removeRequest("P_BUG_2");
+        assertNull(reloaded.findExistingRequest(Collections.singletonList("b")));
+    }
+
+    @Test
+    public void compactsFileOnceMostLinesAreOutdated() throws IOException {
+        File file = new File(folder.getRoot(), "issues.idx");
+        DimCMIssueIndex index = new DimCMIssueIndex(file);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add("issue-" + i);
+        }
+        index.add("P_BUG_1", ids);
+        index.add("P_BUG_2", Collections.singletonList("kept"));
+        index.flush();
+        assertEquals(1001, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+
+        index.removeRequest("P_BUG_1");
+        index.flush();
+        assertEquals(Collections.singletonList("kept\tP_BUG_2"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        assertEquals("P_BUG_2", new DimCMIssueIndex(file).findExistingRequest(Collections.singletonList("kept")));
+    }
+
+    @Test
+    public void readsInstanceIdsFromDescription() {
+        assertEquals(Arrays.asList("a1", "b2", "c3"),
+                DimCMIssueIndex.getInstanceIds(null, "Some text\nIssue Ids: a1, b2;c3\n"));
+        assertTrue(DimCMIssueIndex.getInstanceIds(null, "no ids").isEmpty());
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DimCMLatencyGuardTest {
+
+    private DimCMLatencyGuard guard;
+
+    @After
+    public void closeGuard() {
+        if (guard != null) {
+            guard.close();
+        }
+    }
+
+    @Test
+    public void parsesDefaultAndPerOperationDeadlines() {
+        Map<String, Long> expected = new HashMap<>();
+        expected.put(DimCMLatencyGuard.DEFAULT_OPERATION, 5000L);
+        expected.put("fetchRequest", 200L);
+
+        assertEquals(expected, DimCMLatencyGuard.parseDeadlines("5000, fetchRequest=200,"));
+        assertTrue(DimCMLatencyGuard.parseDeadlines(null).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidDeadline() {
+        DimCMLatencyGuard.parseDeadlines("fetchRequest=soon");
+    }
+
+    @Test
+    public void callsWithoutDeadlineRunOnTheCallersThread() {
+        guard = new DimCMLatencyGuard(Collections.<String, Long>emptyMap(), false, DimCMExecutors.PLATFORM);
+        Thread caller = Thread.currentThread();
+
+        assertSame(caller, guard.call("fetchRequest", Thread::currentThread, null));
+    }
+
+    @Test
+    public void callMissingItsDeadlineIsAbandoned() {
+        guard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines("fetchRequest=100"), false, DimCMExecutors.PLATFORM);
+        CountDownLatch release = new CountDownLatch(1);
+        long start = System.nanoTime();
+        try {
+            guard.call("fetchRequest", () -> release.await(10, TimeUnit.SECONDS), null);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("did not complete within 100 ms"));
+        } finally {
+            release.countDown();
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        // Other operations use the default, which is none here
+        assertEquals("fast", guard.call("listProducts", () -> "fast", null));
+        assertTrue(guard.getMetrics().contains("fetchRequest[calls=1 p95=-1 timeouts=1"));
+    }
+
+    @Test
+    public void failureOfTheCallIsRethrown() {
+        guard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines("1000"), false, DimCMExecutors.PLATFORM);
+        try {
+            guard.call("fetchRequest", () -> {
+                throw new IllegalStateException("no such request");
+            }, null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("no such request", e.getMessage());
+        }
+    }
+
+    @Test
+    public void slowReadIsHedgedOnceEnoughLatenciesAreKnown() {
+        guard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines("5000"), true, DimCMExecutors.PLATFORM);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("primary", guard.call("fetchRequest", () -> "primary", () -> "hedge"));
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertEquals("hedge", guard.call("fetchRequest", () -> {
+                release.await(10, TimeUnit.SECONDS);
+                return "primary";
+            }, () -> "hedge"));
+        } finally {
+            release.countDown();
+        }
+        assertTrue(guard.getMetrics(), guard.getMetrics().contains("hedges=1 hedgesWon=1"));
+    }
+
+    @Test
+    public void callsWithoutHedgeAreNotHedged() {
+        guard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines("5000"), true, DimCMExecutors.PLATFORM);
+        for (int i = 0; i < 20; i++) {
+            guard.call("updateRequest", () -> "done", null);
+        }
+        assertEquals("slow", guard.call("updateRequest", () -> {
+            Thread.sleep(100);
+            return "slow";
+        }, null));
+        assertTrue(guard.getMetrics().contains("hedges=0"));
+    }
+
+    @Test
+    public void closedGuardRunsCallsUnguarded() {
+        guard = new DimCMLatencyGuard(DimCMLatencyGuard.parseDeadlines("100"), false, DimCMExecutors.PLATFORM);
+        guard.close();
+        Thread caller = Thread.currentThread();
+
+        assertSame(caller, guard.call("fetchRequest", Thread::currentThread, null));
+    }
+}
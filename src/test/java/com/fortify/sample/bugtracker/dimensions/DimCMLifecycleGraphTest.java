@@ -0,0 +1,50 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class DimCMLifecycleGraphTest {
+
+    private final DimCMLifecycleGraph graph = new DimCMLifecycleGraph("LC_DEFECT", Arrays.asList(
+            DimCMLifecycleGraph.edge("RAISED", "UNDER WORK", true),
+            DimCMLifecycleGraph.edge("UNDER WORK", "IN TEST", true),
+            DimCMLifecycleGraph.edge("IN TEST", "CLOSED", true),
+            DimCMLifecycleGraph.edge("RAISED", "CLOSED", false),
+            DimCMLifecycleGraph.edge("CLOSED", "UNDER WORK", false),
+            "MALFORMED"));
+
+    @Test
+    public void prefersNormalTransitions() {
+        assertEquals(Arrays.asList("UNDER WORK", "IN TEST", "CLOSED"), graph.findPath("RAISED", "CLOSED"));
+    }
+
+    @Test
+    public void fallsBackToOffNormalTransitions() {
+        assertEquals(Collections.singletonList("UNDER WORK"), graph.findPath("CLOSED", "UNDER WORK"));
+        assertEquals(Arrays.asList("UNDER WORK", "IN TEST"), graph.findPath("CLOSED", "IN TEST"));
+    }
+
+    @Test
+    public void sameStateNeedsNoAction() {
+        assertTrue(graph.findPath("IN TEST", "IN TEST").isEmpty());
+    }
+
+    @Test
+    public void unreachableStateHasNoPath() {
+        assertNull(graph.findPath("IN TEST", "RAISED"));
+        assertNull(graph.findPath("UNKNOWN", "CLOSED"));
+    }
+
+    @Test
+    public void edgesWithoutKindAreNormal() {
+        DimCMLifecycleGraph g = new DimCMLifecycleGraph("LC", Arrays.asList("A\tB", "B\tC", DimCMLifecycleGraph.edge("A", "C", false)));
+        assertEquals(Arrays.asList("B", "C"), g.findPath("A", "C"));
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.fortify.pub.bugtracker.support.UserAuthenticationStore;
+import com.serena.dmclient.api.DimensionsNetworkException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DimCMOutboxTest {
+
+    private static final UserAuthenticationStore ADMIN = new UserAuthenticationStore() {
+        @Override
+        public String getUserName() {
+            return "admin";
+        }
+
+        @Override
+        public String getPassword() {
+            return "secret";
+        }
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Files every submission as the next request ID, or fails while {@link #failure} is set.
+     */
+    private static final class RecordingSink implements DimCMOutbox.Sink {
+        final AtomicInteger filed = new AtomicInteger();
+        volatile RuntimeException failure;
+
+        @Override
+        public DimCMClient connect(UserAuthenticationStore credentials) {
+            return null;
+        }
+
+        @Override
+        public String file(DimCMClient cmClient, Map<String, String> params, List<String> instanceIds) {
+            if (failure != null) {
+                throw failure;
+            }
+            return "P_BUG_" + filed.incrementAndGet();
+        }
+    }
+
+    private static void awaitDrained(DimCMOutbox outbox) throws InterruptedException {
+        for (int i = 0; i < 200 && outbox.getPendingCount() > 0; i++) {
+            Thread.sleep(25);
+        }
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void filesSubmissionAndResolvesItAfterReplay() throws Exception {
+        File journal = new File(folder.getRoot(), "outbox.journal");
+        DimCMOutbox outbox = new DimCMOutbox(journal, new RecordingSink(), 20, 10);
+        String id = outbox.submit(Collections.singletonMap("summary", "SQL Injection"), Collections.singletonList("i1"), ADMIN);
+        assertTrue(DimCMOutbox.isProvisionalId(id));
+        awaitDrained(outbox);
+        outbox.close();
+
+        DimCMOutbox.Resolution resolution = new DimCMOutbox(journal, new RecordingSink(), 20, 10).resolve(id);
+        assertEquals(DimCMOutbox.Resolution.Status.FILED, resolution.status);
+        assertEquals("P_BUG_1", resolution.value);
+    }
+
+    @Test
+    public void corruptLineIsSkippedWithoutLosingLaterRecords() throws Exception {
+        File journal = new File(folder.getRoot(), "outbox.journal");
+        RecordingSink down = new RecordingSink();
+        down.failure = new DimensionsNetworkException();
+        DimCMOutbox first = new DimCMOutbox(journal, down, 20, 10);
+        String queued = first.submit(Collections.singletonMap("summary", "XSS"), Collections.singletonList("i1"), ADMIN);
+        first.close();
+        // A damaged record followed by a record that was appended without a newline before it
+        Files.write(journal.toPath(), ("SUBMIT\tPENDING-BAD\tnot base64!\n"
+                + lines(journal).get(0).replace(queued, "PENDING-SECOND")).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        RecordingSink sink = new RecordingSink();
+        DimCMOutbox outbox = new DimCMOutbox(journal, sink, 20, 10);
+        assertEquals(DimCMOutbox.Resolution.Status.PENDING, outbox.resolve(queued).status);
+        // The unterminated last line may be cut short and is not trusted
+        assertEquals(DimCMOutbox.Resolution.Status.UNKNOWN, outbox.resolve("PENDING-SECOND").status);
+        assertEquals(DimCMOutbox.Resolution.Status.UNKNOWN, outbox.resolve("PENDING-BAD").status);
+        outbox.setCredentials(ADMIN);
+        awaitDrained(outbox);
+        outbox.close();
+
+        List<String> lines = lines(journal);
+        assertTrue(lines.contains("SUBMIT\tPENDING-BAD\tnot base64!"));
+        assertTrue(lines.get(lines.size() - 1).startsWith("DONE\t" + queued + "\tP_BUG_1\t"));
+        assertEquals(1, sink.filed.get());
+    }
+
+    @Test
+    public void filingAppendsInsteadOfRewritingTheJournal() throws Exception {
+        File journal = new File(folder.getRoot(), "outbox.journal");
+        RecordingSink down = new RecordingSink();
+        down.failure = new DimensionsNetworkException();
+        DimCMOutbox queue = new DimCMOutbox(journal, down, 20, 10);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(queue.submit(Collections.singletonMap("summary", "Issue " + i), Collections.singletonList("i" + i), ADMIN));
+        }
+        queue.close();
+
+        DimCMOutbox outbox = new DimCMOutbox(journal, new RecordingSink(), 20, 10);
+        outbox.setCredentials(ADMIN);
+        awaitDrained(outbox);
+        outbox.close();
+
+        List<String> lines = lines(journal);
+        assertEquals(10, lines.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(lines.get(i).startsWith("SUBMIT\t" + ids.get(i) + "\t"));
+        }
+    }
+
+    @Test
+    public void compactsJournalOnceOutcomesExpired() throws Exception {
+        File journal = new File(folder.getRoot(), "outbox.journal");
+        StringBuilder expired = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expired.append("DONE\tPENDING-OLD").append(i).append("\tP_BUG_").append(i).append("\t0\n");
+        }
+        Files.write(journal.toPath(), expired.toString().getBytes(StandardCharsets.UTF_8));
+
+        DimCMOutbox outbox = new DimCMOutbox(journal, new RecordingSink(), 20, 10);
+        String id = outbox.submit(Collections.singletonMap("summary", "XSS"), Collections.singletonList("i1"), ADMIN);
+        awaitDrained(outbox);
+        outbox.close();
+
+        List<String> lines = lines(journal);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("DONE\t" + id + "\tP_BUG_1\t"));
+    }
+
+    @Test
+    public void outagesDoNotCountAsAttempts() throws Exception {
+        File journal = new File(folder.getRoot(), "outbox.journal");
+        RecordingSink sink = new RecordingSink();
+        sink.failure = new IllegalStateException("wrapped", new DimensionsNetworkException());
+        DimCMOutbox outbox = new DimCMOutbox(journal, sink, 20, 1);
+        String id = outbox.submit(Collections.singletonMap("summary", "XSS"), Collections.singletonList("i1"), ADMIN);
+        Thread.sleep(300);
+        assertEquals(DimCMOutbox.Resolution.Status.PENDING, outbox.resolve(id).status);
+
+        sink.failure = new IllegalArgumentException("Invalid request type");
+        outbox.close();
+        DimCMOutbox retry = new DimCMOutbox(journal, sink, 20, 1);
+        retry.setCredentials(ADMIN);
+        awaitDrained(retry);
+        retry.close();
+
+        DimCMOutbox.Resolution resolution = retry.resolve(id);
+        assertEquals(DimCMOutbox.Resolution.Status.FAILED, resolution.status);
+        assertEquals("Invalid request type", resolution.value);
+    }
+
+    @Test
+    public void forgottenIdsAreUnknown() {
+        DimCMOutbox outbox = new DimCMOutbox(new File(folder.getRoot(), "outbox.journal"), new RecordingSink(), 20, 10);
+        assertEquals(DimCMOutbox.Resolution.Status.UNKNOWN, outbox.resolve("PENDING-0123456789ABCDEF").status);
+    }
+}
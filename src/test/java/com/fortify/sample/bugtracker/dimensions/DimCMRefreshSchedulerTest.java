@@ -0,0 +1,99 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class DimCMRefreshSchedulerTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    @Test
+    public void emptySpecificationDisablesScheduler() {
+        assertNull(DimCMRefreshScheduler.parse(null));
+        assertNull(DimCMRefreshScheduler.parse(" , "));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownTier() {
+        DimCMRefreshScheduler.parse("hot=5,lukewarm=10");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeInterval() {
+        DimCMRefreshScheduler.parse("hot=-5");
+    }
+
+    @Test
+    public void recentlyChangedRequestsUseHotInterval() {
+        DimCMRefreshScheduler scheduler = DimCMRefreshScheduler.parse("hot=5,warm=60,cold=1440");
+        long now = System.currentTimeMillis();
+        DimCMStateCache.State state = new DimCMStateCache.State("CLOSED", null, now, now, false);
+
+        long maxAge = scheduler.getMaxAge("P_BUG_1", DimCMRefreshScheduler.Tier.COLD, state);
+        assertTrue(maxAge <= 5 * MINUTE);
+        assertTrue(maxAge >= 5 * MINUTE * (100 - DimCMPluginConstants.REFRESH_JITTER_PERCENT) / 100);
+    }
+
+    @Test
+    public void longUnchangedRequestsAreCappedByTheirTier() {
+        DimCMRefreshScheduler scheduler = DimCMRefreshScheduler.parse("hot=5,warm=60,cold=1440");
+        long now = System.currentTimeMillis();
+        DimCMStateCache.State state = new DimCMStateCache.State("CLOSED", null, now, now - 365 * DAY, false);
+
+        assertTrue(scheduler.getMaxAge("P_BUG_1", DimCMRefreshScheduler.Tier.COLD, state) <= 1440 * MINUTE);
+        assertTrue(scheduler.getMaxAge("P_BUG_1", DimCMRefreshScheduler.Tier.COLD, state) > 60 * MINUTE);
+        assertTrue(scheduler.getMaxAge("P_BUG_1", DimCMRefreshScheduler.Tier.WARM, state) <= 60 * MINUTE);
+    }
+
+    @Test
+    public void missingTiersInheritTheHotterInterval() {
+        DimCMRefreshScheduler scheduler = DimCMRefreshScheduler.parse("hot=30,warm=10");
+        long now = System.currentTimeMillis();
+        DimCMStateCache.State state = new DimCMStateCache.State("CLOSED", null, now, now - 365 * DAY, false);
+
+        // warm is raised to hot, cold inherits warm
+        long cold = scheduler.getMaxAge("P_BUG_1", DimCMRefreshScheduler.Tier.COLD, state);
+        assertTrue(cold <= 30 * MINUTE);
+        assertTrue(cold >= 30 * MINUTE * (100 - DimCMPluginConstants.REFRESH_JITTER_PERCENT) / 100);
+    }
+
+    @Test
+    public void stateIsFreshUntilItsMaxAge() {
+        DimCMRefreshScheduler scheduler = DimCMRefreshScheduler.parse("hot=5");
+        long now = System.currentTimeMillis();
+
+        assertTrue(scheduler.isFresh("P_BUG_1", DimCMRefreshScheduler.Tier.HOT,
+                new DimCMStateCache.State("RAISED", null, now, now, false)));
+        assertFalse(scheduler.isFresh("P_BUG_1", DimCMRefreshScheduler.Tier.HOT,
+                new DimCMStateCache.State("RAISED", null, now - 10 * MINUTE, now - 10 * MINUTE, false)));
+    }
+
+    @Test
+    public void stateCacheDropsStatesPastTheirTierMaximum() {
+        DimCMInProcessCacheStore store = new DimCMInProcessCacheStore();
+        DimCMStateCache cache = new DimCMStateCache(store);
+        long now = System.currentTimeMillis();
+        store.put("P_BUG_1", Arrays.asList("P", "RAISED", String.valueOf(now)), now - 10 * MINUTE);
+        store.put("P_BUG_2", Arrays.asList("P", "CLOSED", String.valueOf(now)), now - 10 * MINUTE);
+        store.put("P_BUG_3", Arrays.asList("P", "CLOSED", String.valueOf(now)), now - 2 * DAY);
+
+        DimCMRefreshScheduler scheduler = DimCMRefreshScheduler.parse("hot=5,cold=1440");
+        cache.setRetention(state -> scheduler.getMaxInterval("CLOSED".equals(state)
+                ? DimCMRefreshScheduler.Tier.COLD : DimCMRefreshScheduler.Tier.HOT),
+                scheduler.getMaxInterval(DimCMRefreshScheduler.Tier.COLD));
+
+        // Older than any tier maximum: swept right away
+        assertNull(store.get("P_BUG_3"));
+        // Older than its own tier maximum: dropped when read
+        assertNull(cache.get("P_BUG_1"));
+        assertNull(store.get("P_BUG_1"));
+        assertEquals("CLOSED", cache.get("P_BUG_2").state);
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DimCMRouterTest {
+
+    private static final DimCMRouter.Endpoint DEFAULT = new DimCMRouter.Endpoint("cm-main", "cm_typical", "dim14");
+    private static final String ROUTES = "QLARIUS=cm-a|cm-a2;QLARIUS_WEB=cm-b/web@dim14\nPAYROLL,HR=cm-a";
+
+    @Test
+    public void routesProductsAndRequestIdsByLongestPrefix() {
+        DimCMRouter router = new DimCMRouter(ROUTES, DEFAULT, 60000);
+
+        assertEquals("cm-a", router.getRoute("qlarius").getPrimary().server);
+        assertEquals("cm-a", router.getRoute("QLARIUS_CR_12").getPrimary().server);
+        assertEquals("cm-b", router.getRoute("QLARIUS_WEB_CR_3").getPrimary().server);
+        assertEquals("web", router.getRoute("QLARIUS_WEB_CR_3").getPrimary().dbName);
+        assertEquals("cm-a", router.getRoute("HR_CR_1").getPrimary().server);
+        // Partial endpoints default to the plugin's database
+        assertEquals("cm_typical", router.getRoute("HR_CR_1").getPrimary().dbName);
+        assertSame(DEFAULT, router.getRoute("QLARIUSX_CR_1").getPrimary());
+        assertSame(DEFAULT, router.getRoute(null).getPrimary());
+        assertTrue(router.isRouted());
+    }
+
+    @Test
+    public void emptySpecificationRoutesEverythingToTheDefault() {
+        DimCMRouter router = new DimCMRouter(" ; ", DEFAULT, 60000);
+
+        assertSame(DEFAULT, router.getRoute("QLARIUS_CR_1").getPrimary());
+        assertFalse(router.isRouted());
+        assertEquals(Collections.singletonList(null), router.getDatabaseKeys());
+    }
+
+    @Test
+    public void visitsEveryDatabaseOnce() {
+        DimCMRouter router = new DimCMRouter(ROUTES, DEFAULT, 60000);
+
+        // PAYROLL, HR and QLARIUS share cm-a
+        assertEquals(Arrays.asList(null, "HR", "QLARIUS_WEB"), router.getDatabaseKeys());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidEndpoint() {
+        new DimCMRouter("QLARIUS=cm-a/nodb", DEFAULT, 60000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRouteWithoutEndpoint() {
+        new DimCMRouter("QLARIUS=", DEFAULT, 60000);
+    }
+
+    @Test
+    public void readsGoToTheLeastLoadedEndpointAndUpdatesToThePrimary() {
+        DimCMRouter router = new DimCMRouter("*=cm-1|cm-2|cm-3", DEFAULT, 60000);
+        Map<String, Integer> load = new HashMap<>();
+        load.put("cm-1", 5);
+        load.put("cm-2", 1);
+        load.put("cm-3", 1);
+
+        assertEquals(Arrays.asList("cm-2", "cm-3", "cm-1"), servers(router.getCandidates("ANY_CR_1", true, e -> load.get(e.server))));
+        assertEquals(Arrays.asList("cm-1", "cm-2", "cm-3"), servers(router.getCandidates("ANY_CR_1", false, e -> load.get(e.server))));
+    }
+
+    @Test
+    public void failsOverWhileAnEndpointCoolsDown() throws InterruptedException {
+        DimCMRouter router = new DimCMRouter("QLARIUS=cm-a|cm-a2;PAYROLL=cm-a", DEFAULT, 200);
+        DimCMRouter.Endpoint primary = router.getRoute("QLARIUS").getPrimary();
+
+        router.markDown(primary, new IllegalStateException("connection refused"));
+        assertEquals(Arrays.asList("cm-a2", "cm-a"), servers(router.getCandidates("QLARIUS_CR_1", false, e -> 0)));
+        // Routes naming the same endpoint share its health
+        assertFalse(router.getRoute("PAYROLL").getPrimary().isHealthy());
+        // An endpoint that is down is still tried last
+        assertEquals(Arrays.asList("cm-a"), servers(router.getCandidates("PAYROLL_CR_1", false, e -> 0)));
+
+        Thread.sleep(300);
+        assertEquals(Arrays.asList("cm-a", "cm-a2"), servers(router.getCandidates("QLARIUS_CR_1", false, e -> 0)));
+        router.markDown(primary, new IllegalStateException("connection refused"));
+        router.markUp(primary);
+        assertTrue(primary.isHealthy());
+    }
+
+    private static List<String> servers(List<DimCMRouter.Endpoint> endpoints) {
+        String[] res = new String[endpoints.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = endpoints.get(i).server;
+        }
+        return Arrays.asList(res);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Two stores on one directory stand in for two SSC nodes sharing it.
+ */
+public class DimCMSharedCacheStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DimCMSharedCacheStore node1;
+    private DimCMSharedCacheStore node2;
+
+    @Before
+    public void createStores() throws IOException {
+        node1 = new DimCMSharedCacheStore(folder.getRoot());
+        node2 = new DimCMSharedCacheStore(folder.getRoot());
+    }
+
+    @Test
+    public void entriesWrittenByOneNodeAreReadByTheOther() {
+        node1.put("products", Arrays.asList("P1", "P2:PART.A;1"), 1000L);
+        node1.put("number", 42, 2000L);
+
+        DimCMCacheStore.Entry entry = node2.get("products");
+        assertEquals(Arrays.asList("P1", "P2:PART.A;1"), entry.value);
+        assertEquals(1000L, entry.loadedAt);
+        assertEquals(42, node2.get("number").value);
+        assertNull(node2.get("unknown"));
+    }
+
+    @Test
+    public void rewrittenEntryReplacesValueReadBefore() {
+        node1.put("type", "DEFECT", 1000L);
+        DimCMCacheStore.Entry before = node2.get("type");
+        node1.put("type", "TASK", 2000L);
+
+        DimCMCacheStore.Entry after = node2.get("type");
+        assertEquals("TASK", after.value);
+        assertNotEquals(before.version, after.version);
+    }
+
+    @Test
+    public void removingAnEntryRemovesItForAllNodes() {
+        node1.put("type", "DEFECT", 1000L);
+        assertNotNull(node2.get("type"));
+
+        assertTrue(node2.remove("type"));
+        assertNull(node1.get("type"));
+        assertFalse(node1.remove("type"));
+    }
+
+    @Test
+    public void versionedRemoveKeepsEntryRewrittenByAnotherNode() {
+        node1.put("type", "DEFECT", 1000L);
+        DimCMCacheStore.Entry expired = node1.get("type");
+        node2.put("type", "TASK", 2000L);
+
+        assertFalse(node1.remove("type", expired.version));
+        assertEquals("TASK", node1.get("type").value);
+
+        assertTrue(node1.remove("type", node1.get("type").version));
+        assertNull(node2.get("type"));
+    }
+
+    @Test
+    public void clearRemovesAllEntries() {
+        node1.put("a", "1", 1000L);
+        node1.put("b", "2", 1000L);
+        node2.clear();
+
+        assertNull(node1.get("a"));
+        assertNull(node1.get("b"));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+}
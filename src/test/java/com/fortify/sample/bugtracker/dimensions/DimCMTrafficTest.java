@@ -0,0 +1,143 @@
+/**
+ * (c) Copyright [2020] Micro Focus or one of its affiliates.
+ */
+package com.fortify.sample.bugtracker.dimensions;
+
+import com.serena.dmclient.api.DimensionsObjectFactory;
+import com.serena.dmclient.api.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DimCMTrafficTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DimensionsObjectFactory fakeFactory() {
+        final User user = (User) Proxy.newProxyInstance(DimCMTrafficTest.class.getClassLoader(),
+                new Class<?>[]{User.class}, (proxy, method, args) -> {
+                    if ("getName".equals(method.getName())) {
+                        return "ADMIN";
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return (DimensionsObjectFactory) Proxy.newProxyInstance(DimCMTrafficTest.class.getClassLoader(),
+                new Class<?>[]{DimensionsObjectFactory.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getServerSymbol":
+                            return "value of " + args[0];
+                        case "getServerVersion":
+                            return Arrays.asList("14.5", args[0]);
+                        case "getCurrentUser":
+                            return user;
+                        case "runCommand":
+                            throw new IllegalStateException("Command failed: " + args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void record(File file) throws IOException {
+        try (DimCMTraffic traffic = DimCMTraffic.record(file)) {
+            DimensionsObjectFactory factory = traffic.wrap(fakeFactory());
+            assertEquals("value of A", factory.getServerSymbol("A"));
+            assertEquals("value of B", factory.getServerSymbol("B"));
+            assertEquals(Arrays.asList("14.5", 2), factory.getServerVersion(2));
+            assertEquals("ADMIN", factory.getCurrentUser().getName());
+            try {
+                factory.runCommand("UPDATE");
+                fail();
+            } catch (IllegalStateException e) {
+                assertEquals("Command failed: UPDATE", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void replayAnswersRecordedCallsWithoutTheServer() throws IOException {
+        File file = new File(folder.getRoot(), "traffic.rec");
+        record(file);
+
+        DimCMTraffic traffic = DimCMTraffic.replay(file, 0);
+        assertTrue(traffic.isReplay());
+        DimensionsObjectFactory factory = traffic.wrap(null);
+        // Matched by arguments, not only by order
+        assertEquals("value of B", factory.getServerSymbol("B"));
+        assertEquals("value of A", factory.getServerSymbol("A"));
+        List<?> version = factory.getServerVersion(2);
+        assertEquals(Arrays.asList("14.5", 2), version);
+        User user = factory.getCurrentUser();
+        assertNotNull(user);
+        assertEquals("ADMIN", user.getName());
+    }
+
+    @Test
+    public void replayRethrowsRecordedFailures() throws IOException {
+        File file = new File(folder.getRoot(), "traffic.rec");
+        record(file);
+
+        DimensionsObjectFactory factory = DimCMTraffic.replay(file, 0).wrap(null);
+        try {
+            factory.runCommand("UPDATE");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Command failed: UPDATE", e.getMessage());
+        }
+    }
+
+    @Test
+    public void replayRejectsCallsThatWereNotRecorded() throws IOException {
+        File file = new File(folder.getRoot(), "traffic.rec");
+        record(file);
+
+        DimensionsObjectFactory factory = DimCMTraffic.replay(file, 0).wrap(null);
+        assertEquals("value of A", factory.getServerSymbol("A"));
+        try {
+            // Each recorded answer is given once
+            factory.getServerSymbol("A");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("No recorded answer for getServerSymbol"));
+        }
+        try {
+            factory.getServerSymbol("C");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("No recorded answer for getServerSymbol"));
+        }
+    }
+
+    @Test
+    public void recordingAgainKeepsThePreviousRecording() throws IOException {
+        File file = new File(folder.getRoot(), "traffic.rec");
+        record(file);
+        long first = file.length();
+        record(file);
+
+        File backup = new File(folder.getRoot(), "traffic.rec.1");
+        assertTrue(backup.isFile());
+        assertEquals(first, backup.length());
+        assertEquals("value of A", DimCMTraffic.replay(backup, 0).wrap(null).getServerSymbol("A"));
+        assertEquals("value of A", DimCMTraffic.replay(file, 0).wrap(null).getServerSymbol("A"));
+    }
+
+    @Test(expected = IOException.class)
+    public void replayRejectsFilesThatAreNoRecording() throws IOException {
+        File file = folder.newFile("cache.bin");
+        DimCMInProcessCacheStore store = new DimCMInProcessCacheStore(file, "owner", 60000L);
+        store.put("key", "value", System.currentTimeMillis());
+        store.close();
+
+        DimCMTraffic.replay(file, 0);
+    }
+}